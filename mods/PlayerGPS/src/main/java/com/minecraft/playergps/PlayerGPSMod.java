@@ -2,6 +2,7 @@ package com.minecraft.playergps;
 
 import com.minecraft.playergps.config.PlayerGPSConfig;
 import com.minecraft.playergps.item.PlayerLocatorItem;
+import com.minecraft.playergps.network.PlayerGPSNetwork;
 import com.mojang.logging.LogUtils;
 import net.minecraft.world.item.CreativeModeTabs;
 import net.minecraft.world.item.Item;
@@ -40,6 +41,7 @@ public class PlayerGPSMod {
     }
 
     private void commonSetup(final FMLCommonSetupEvent event) {
+        event.enqueueWork(PlayerGPSNetwork::register);
         LOGGER.info("Player GPS initialized");
     }
 
@@ -0,0 +1,128 @@
+package com.minecraft.playergps.client;
+
+import com.minecraft.playergps.PlayerGPSMod;
+import com.minecraft.playergps.network.LiveTrackingPacket;
+import io.netty.buffer.Unpooled;
+import it.unimi.dsi.fastutil.ints.Int2ObjectLinkedOpenHashMap;
+import net.minecraft.ChatFormatting;
+import net.minecraft.client.Minecraft;
+import net.minecraft.client.gui.Font;
+import net.minecraft.client.gui.GuiGraphics;
+import net.minecraft.client.player.LocalPlayer;
+import net.minecraft.network.FriendlyByteBuf;
+import net.minecraft.network.chat.Component;
+import net.minecraft.util.Mth;
+import net.minecraftforge.api.distmarker.Dist;
+import net.minecraftforge.client.event.ClientPlayerNetworkEvent;
+import net.minecraftforge.client.event.RegisterGuiOverlaysEvent;
+import net.minecraftforge.client.gui.overlay.ForgeGui;
+import net.minecraftforge.eventbus.api.SubscribeEvent;
+import net.minecraftforge.fml.common.Mod;
+
+/**
+ * Client side of live tracking: applies the server's delta packets and draws each target's bearing and
+ * distance relative to the local player every frame.
+ */
+public final class LiveTrackingHud {
+    private static final String[] ARROWS = {"↑", "↗", "→", "↘", "↓", "↙", "←", "↖"};
+    private static final int MARGIN = 4;
+
+    private static final Int2ObjectLinkedOpenHashMap<Target> TARGETS = new Int2ObjectLinkedOpenHashMap<>();
+
+    private static final class Target {
+        final String name;
+        int x;
+        int y;
+        int z;
+
+        Target(String name, int x, int y, int z) {
+            this.name = name;
+            this.x = x;
+            this.y = y;
+            this.z = z;
+        }
+    }
+
+    private LiveTrackingHud() {
+    }
+
+    public static void apply(byte[] payload) {
+        FriendlyByteBuf buf = new FriendlyByteBuf(Unpooled.wrappedBuffer(payload));
+        int flags = buf.readVarInt();
+        if ((flags & LiveTrackingPacket.FLAG_RESET) != 0) {
+            TARGETS.clear();
+        }
+        int removed = buf.readVarInt();
+        for (int i = 0; i < removed; i++) {
+            TARGETS.remove(buf.readVarInt());
+        }
+        int updated = buf.readVarInt();
+        for (int i = 0; i < updated; i++) {
+            int key = buf.readVarInt();
+            int slot = key >>> 1;
+            if ((key & 1) != 0) {
+                String name = buf.readUtf();
+                int x = LiveTrackingPacket.readZigZag(buf);
+                int y = LiveTrackingPacket.readZigZag(buf);
+                int z = LiveTrackingPacket.readZigZag(buf);
+                TARGETS.put(slot, new Target(name, x, y, z));
+            } else {
+                int dx = LiveTrackingPacket.readZigZag(buf);
+                int dy = LiveTrackingPacket.readZigZag(buf);
+                int dz = LiveTrackingPacket.readZigZag(buf);
+                Target target = TARGETS.get(slot);
+                if (target != null) {
+                    target.x += dx;
+                    target.y += dy;
+                    target.z += dz;
+                }
+            }
+        }
+    }
+
+    private static void render(ForgeGui gui, GuiGraphics graphics, float partialTick, int width, int height) {
+        Minecraft minecraft = Minecraft.getInstance();
+        LocalPlayer player = minecraft.player;
+        if (TARGETS.isEmpty() || player == null || minecraft.options.hideGui) {
+            return;
+        }
+        Font font = minecraft.font;
+        int line = 0;
+        graphics.drawString(font, Component.translatable("hud.playergps.live.title").withStyle(ChatFormatting.GOLD),
+                MARGIN, MARGIN, 0xFFFFFF);
+        for (Target target : TARGETS.values()) {
+            double dx = target.x + 0.5 - player.getX();
+            double dy = target.y - player.getY();
+            double dz = target.z + 0.5 - player.getZ();
+            int distance = (int) Math.round(Math.sqrt(dx * dx + dy * dy + dz * dz));
+            float bearing = (float) (Mth.atan2(dz, dx) * Mth.RAD_TO_DEG) - 90.0F;
+            float relative = Mth.wrapDegrees(bearing - player.getYRot());
+            String arrow = ARROWS[Math.floorMod(Math.round(relative / 45.0F), ARROWS.length)];
+            line++;
+            graphics.drawString(font, Component.translatable("hud.playergps.live.entry", arrow, target.name, distance),
+                    MARGIN, MARGIN + line * (font.lineHeight + 1), 0xFFFFFF);
+        }
+    }
+
+    @Mod.EventBusSubscriber(modid = PlayerGPSMod.MODID, value = Dist.CLIENT, bus = Mod.EventBusSubscriber.Bus.MOD)
+    public static final class ModEvents {
+        private ModEvents() {
+        }
+
+        @SubscribeEvent
+        public static void onRegisterOverlays(RegisterGuiOverlaysEvent event) {
+            event.registerAboveAll("live_tracking", LiveTrackingHud::render);
+        }
+    }
+
+    @Mod.EventBusSubscriber(modid = PlayerGPSMod.MODID, value = Dist.CLIENT)
+    public static final class ForgeEvents {
+        private ForgeEvents() {
+        }
+
+        @SubscribeEvent
+        public static void onLoggingOut(ClientPlayerNetworkEvent.LoggingOut event) {
+            TARGETS.clear();
+        }
+    }
+}
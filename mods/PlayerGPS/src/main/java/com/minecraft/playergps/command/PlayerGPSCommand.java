@@ -0,0 +1,84 @@
+package com.minecraft.playergps.command;
+
+import com.minecraft.playergps.PlayerGPSMod;
+import com.minecraft.playergps.tracking.LiveTracking;
+import com.minecraft.playergps.tracking.LocatorReport;
+import com.minecraft.playergps.tracking.PositionHistory;
+import com.mojang.brigadier.CommandDispatcher;
+import com.mojang.brigadier.arguments.IntegerArgumentType;
+import com.mojang.brigadier.arguments.StringArgumentType;
+import net.minecraft.commands.CommandSourceStack;
+import net.minecraft.commands.Commands;
+import net.minecraft.commands.SharedSuggestionProvider;
+import net.minecraft.network.chat.CommonComponents;
+import net.minecraft.network.chat.Component;
+import net.minecraft.network.chat.MutableComponent;
+import net.minecraftforge.event.RegisterCommandsEvent;
+import net.minecraftforge.eventbus.api.SubscribeEvent;
+import net.minecraftforge.fml.common.Mod;
+
+import java.util.UUID;
+
+@Mod.EventBusSubscriber(modid = PlayerGPSMod.MODID)
+public final class PlayerGPSCommand {
+    private static final int DEFAULT_HISTORY_MINUTES = 10;
+    private static final int HISTORY_LINES = 20;
+
+    private PlayerGPSCommand() {
+    }
+
+    @SubscribeEvent
+    public static void onRegisterCommands(RegisterCommandsEvent event) {
+        register(event.getDispatcher());
+    }
+
+    private static void register(CommandDispatcher<CommandSourceStack> dispatcher) {
+        dispatcher.register(Commands.literal("playergps")
+                .then(Commands.literal("page")
+                        .then(Commands.argument("report", IntegerArgumentType.integer(1))
+                                .then(Commands.argument("page", IntegerArgumentType.integer(1))
+                                        .executes(context -> {
+                                            LocatorReport.showPage(context.getSource().getPlayerOrException(),
+                                                    IntegerArgumentType.getInteger(context, "report"),
+                                                    IntegerArgumentType.getInteger(context, "page") - 1);
+                                            return 1;
+                                        }))))
+                .then(Commands.literal("stats")
+                        .requires(source -> source.hasPermission(2))
+                        .executes(context -> {
+                            for (String line : LocatorReport.statsLines()) {
+                                context.getSource().sendSuccess(() -> Component.literal(line), false);
+                            }
+                            for (String line : LiveTracking.statsLines()) {
+                                context.getSource().sendSuccess(() -> Component.literal(line), false);
+                            }
+                            for (String line : PositionHistory.statsLines()) {
+                                context.getSource().sendSuccess(() -> Component.literal(line), false);
+                            }
+                            return 1;
+                        }))
+                .then(Commands.literal("history")
+                        .requires(source -> source.hasPermission(2))
+                        .then(Commands.argument("player", StringArgumentType.word())
+                                .suggests((context, builder) -> SharedSuggestionProvider.suggest(PositionHistory.names(), builder))
+                                .executes(context -> history(context.getSource(), StringArgumentType.getString(context, "player"), DEFAULT_HISTORY_MINUTES))
+                                .then(Commands.argument("minutes", IntegerArgumentType.integer(1, 1440))
+                                        .executes(context -> history(context.getSource(), StringArgumentType.getString(context, "player"),
+                                                IntegerArgumentType.getInteger(context, "minutes")))))));
+    }
+
+    private static int history(CommandSourceStack source, String name, int minutes) {
+        UUID uuid = PositionHistory.find(name);
+        int now = source.getServer().getTickCount();
+        int since = now - minutes * 60 * 20;
+        MutableComponent trail = uuid != null ? PositionHistory.trail(uuid, since, now, HISTORY_LINES) : null;
+        if (trail == null) {
+            source.sendFailure(Component.translatable("message.playergps.history.none", name, minutes));
+            return 0;
+        }
+        int samples = PositionHistory.sampleCount(uuid, since);
+        source.sendSuccess(() -> Component.translatable("message.playergps.history.header", name, minutes, samples)
+                .append(CommonComponents.NEW_LINE).append(trail), false);
+        return samples;
+    }
+}
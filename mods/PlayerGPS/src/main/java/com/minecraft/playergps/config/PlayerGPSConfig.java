@@ -8,16 +8,50 @@ import net.minecraftforge.fml.event.config.ModConfigEvent;
 
 @Mod.EventBusSubscriber(modid = PlayerGPSMod.MODID, bus = Mod.EventBusSubscriber.Bus.MOD)
 public final class PlayerGPSConfig {
+    public enum LocatorMode {
+        ALL,
+        NEAREST,
+        RADIUS
+    }
+
     private static final ForgeConfigSpec.Builder BUILDER = new ForgeConfigSpec.Builder();
     private static final ForgeConfigSpec.BooleanValue INCLUDE_SELF_IN_RESULTS;
     private static final ForgeConfigSpec.IntValue MAX_PLAYERS_TO_DISPLAY;
     private static final ForgeConfigSpec.BooleanValue CONSUME_IN_CREATIVE;
+    private static final ForgeConfigSpec.IntValue SNAPSHOT_REFRESH_TICKS;
+    private static final ForgeConfigSpec.IntValue ENTRIES_PER_PAGE;
+    private static final ForgeConfigSpec.BooleanValue MEASURE_TRAFFIC;
+    private static final ForgeConfigSpec.EnumValue<LocatorMode> MODE;
+    private static final ForgeConfigSpec.IntValue NEAREST_COUNT;
+    private static final ForgeConfigSpec.IntValue SEARCH_RADIUS;
+    private static final ForgeConfigSpec.BooleanValue LIVE_TRACKING;
+    private static final ForgeConfigSpec.IntValue LIVE_UPDATE_INTERVAL;
+    private static final ForgeConfigSpec.IntValue LIVE_MOVE_THRESHOLD;
+    private static final ForgeConfigSpec.IntValue LIVE_MAX_TARGETS;
+    private static final ForgeConfigSpec.IntValue HISTORY_SAMPLE_INTERVAL;
+    private static final ForgeConfigSpec.IntValue HISTORY_LENGTH;
+    private static final ForgeConfigSpec.IntValue HISTORY_MEMORY_MB;
+    private static final ForgeConfigSpec.IntValue LOCATOR_TRAIL_POINTS;
 
     public static final ForgeConfigSpec SPEC;
 
     public static boolean includeSelf = true;
     public static int maxPlayersToDisplay = 0;
     public static boolean consumeInCreative = false;
+    public static int snapshotRefreshTicks = 1;
+    public static int entriesPerPage = 10;
+    public static boolean measureTraffic = false;
+    public static LocatorMode mode = LocatorMode.ALL;
+    public static int nearestCount = 5;
+    public static int searchRadius = 500;
+    public static boolean liveTracking = false;
+    public static int liveUpdateInterval = 5;
+    public static int liveMoveThreshold = 2;
+    public static int liveMaxTargets = 8;
+    public static int historySampleInterval = 100;
+    public static int historyLength = 120;
+    public static int historyMemoryMB = 16;
+    public static int locatorTrailPoints = 5;
 
     static {
         BUILDER.push("player_locator");
@@ -34,6 +68,71 @@ public final class PlayerGPSConfig {
         .comment("If true, the locator is consumed even for players with creative-mode abilities.")
         .define("consumeInCreative", false);
 
+        SNAPSHOT_REFRESH_TICKS = BUILDER
+                .comment("How many ticks the shared, pre-sorted player position snapshot is reused before it is rebuilt.",
+                        "1 rebuilds at most once per tick; larger values trade position freshness for less work when many locators are used.")
+                .defineInRange("snapshotRefreshTicks", 1, 1, 200);
+
+        ENTRIES_PER_PAGE = BUILDER
+                .comment("Players listed per report page. Each page is sent as a single chat message with clickable page controls.")
+                .defineInRange("entriesPerPage", 10, 1, 100);
+
+        MEASURE_TRAFFIC = BUILDER
+                .comment("If true, count the chat packets and bytes sent per locator use, alongside what one message per line would have cost.",
+                        "Shown by /playergps stats. Costs an extra serialization per message, so leave it off outside measurements.")
+                .define("measureTraffic", false);
+
+        MODE = BUILDER
+                .comment("ALL lists every player sorted by dimension and name.",
+                        "NEAREST lists the nearestCount closest players in the user's dimension.",
+                        "RADIUS lists every player within searchRadius blocks in the user's dimension.",
+                        "NEAREST and RADIUS are sorted by distance and answered from a spatial index instead of the full player list.")
+                .defineEnum("mode", LocatorMode.ALL);
+
+        NEAREST_COUNT = BUILDER
+                .comment("How many players NEAREST mode lists.")
+                .defineInRange("nearestCount", 5, 1, 200);
+
+        SEARCH_RADIUS = BUILDER
+                .comment("Search radius in blocks for RADIUS mode.")
+                .defineInRange("searchRadius", 500, 1, 100000);
+
+        LIVE_TRACKING = BUILDER
+                .comment("If true, sneak-using the locator toggles a live HUD of target bearings and distances instead of consuming it.",
+                        "Off by default so sneak-use keeps consuming the locator as before.",
+                        "The HUD is only updated while the locator is held in either hand.")
+                .define("liveTracking", false);
+
+        LIVE_UPDATE_INTERVAL = BUILDER
+                .comment("Ticks between live tracking updates for each tracker.")
+                .defineInRange("liveUpdateInterval", 5, 1, 100);
+
+        LIVE_MOVE_THRESHOLD = BUILDER
+                .comment("Blocks a target must move on any axis before its new position is sent to live trackers.")
+                .defineInRange("liveMoveThreshold", 2, 1, 64);
+
+        LIVE_MAX_TARGETS = BUILDER
+                .comment("Maximum number of targets shown on the live tracking HUD. Follows mode: RADIUS uses searchRadius, otherwise the nearest players.")
+                .defineInRange("liveMaxTargets", 8, 1, 32);
+
+        HISTORY_SAMPLE_INTERVAL = BUILDER
+                .comment("Ticks between position history samples of every online player.")
+                .defineInRange("historySampleInterval", 100, 1, 1200);
+
+        HISTORY_LENGTH = BUILDER
+                .comment("Samples kept per player; older ones are overwritten. Covers historyLength * historySampleInterval ticks (10 minutes by default).",
+                        "Set to 0 to disable position history.")
+                .defineInRange("historyLength", 120, 0, 10000);
+
+        HISTORY_MEMORY_MB = BUILDER
+                .comment("Upper bound for all position history buffers together, in MiB. Each sample takes 16 bytes.",
+                        "When full, the history of the player sampled least recently is dropped for a newcomer.")
+                .defineInRange("historyMemoryMB", 16, 1, 1024);
+
+        LOCATOR_TRAIL_POINTS = BUILDER
+                .comment("Past positions shown when hovering a locator report entry, spread over the recorded history. Set to 0 to disable.")
+                .defineInRange("locatorTrailPoints", 5, 0, 20);
+
         BUILDER.pop();
         SPEC = BUILDER.build();
     }
@@ -46,5 +145,19 @@ public final class PlayerGPSConfig {
         includeSelf = INCLUDE_SELF_IN_RESULTS.get();
         maxPlayersToDisplay = MAX_PLAYERS_TO_DISPLAY.get();
         consumeInCreative = CONSUME_IN_CREATIVE.get();
+        snapshotRefreshTicks = SNAPSHOT_REFRESH_TICKS.get();
+        entriesPerPage = ENTRIES_PER_PAGE.get();
+        measureTraffic = MEASURE_TRAFFIC.get();
+        mode = MODE.get();
+        nearestCount = NEAREST_COUNT.get();
+        searchRadius = SEARCH_RADIUS.get();
+        liveTracking = LIVE_TRACKING.get();
+        liveUpdateInterval = LIVE_UPDATE_INTERVAL.get();
+        liveMoveThreshold = LIVE_MOVE_THRESHOLD.get();
+        liveMaxTargets = LIVE_MAX_TARGETS.get();
+        historySampleInterval = HISTORY_SAMPLE_INTERVAL.get();
+        historyLength = HISTORY_LENGTH.get();
+        historyMemoryMB = HISTORY_MEMORY_MB.get();
+        locatorTrailPoints = LOCATOR_TRAIL_POINTS.get();
     }
 }
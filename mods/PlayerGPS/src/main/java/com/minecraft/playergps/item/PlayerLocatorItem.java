@@ -1,11 +1,12 @@
 package com.minecraft.playergps.item;
 
 import com.minecraft.playergps.config.PlayerGPSConfig;
+import com.minecraft.playergps.tracking.LiveTracking;
+import com.minecraft.playergps.tracking.LocatorReport;
+import com.minecraft.playergps.tracking.PlayerPositionSnapshot;
+import com.minecraft.playergps.tracking.PlayerSpatialIndex;
 import net.minecraft.ChatFormatting;
-import net.minecraft.Util;
-import net.minecraft.core.BlockPos;
 import net.minecraft.network.chat.Component;
-import net.minecraft.resources.ResourceLocation;
 import net.minecraft.server.MinecraftServer;
 import net.minecraft.server.level.ServerPlayer;
 import net.minecraft.world.InteractionHand;
@@ -21,16 +22,11 @@ import net.minecraft.network.chat.MutableComponent;
 
 import org.jetbrains.annotations.Nullable;
 
-import java.util.Comparator;
+import java.util.ArrayList;
 import java.util.List;
 import java.util.UUID;
-import java.util.stream.Collectors;
 
 public class PlayerLocatorItem extends Item {
-    private static final Comparator<ServerPlayer> PLAYER_SORT = Comparator
-            .comparing((ServerPlayer player) -> player.level().dimension().location().toString())
-            .thenComparing(player -> player.getGameProfile().getName());
-
     public PlayerLocatorItem(Properties properties) {
         super(properties);
     }
@@ -39,6 +35,15 @@ public class PlayerLocatorItem extends Item {
     public InteractionResultHolder<ItemStack> use(Level level, Player player, InteractionHand hand) {
         ItemStack stack = player.getItemInHand(hand);
 
+        if (PlayerGPSConfig.liveTracking && player.isShiftKeyDown()) {
+            if (player instanceof ServerPlayer serverPlayer) {
+                boolean enabled = LiveTracking.toggle(serverPlayer);
+                serverPlayer.displayClientMessage(Component.translatable(
+                        enabled ? "message.playergps.live.on" : "message.playergps.live.off"), true);
+            }
+            return InteractionResultHolder.sidedSuccess(stack, level.isClientSide);
+        }
+
         if (level.isClientSide) {
             playClientFeedback(level, player);
         } else if (player instanceof ServerPlayer serverPlayer) {
@@ -55,45 +60,48 @@ public class PlayerLocatorItem extends Item {
             return;
         }
 
+        if (PlayerGPSConfig.mode != PlayerGPSConfig.LocatorMode.ALL) {
+            announceNearbyPlayers(user);
+            return;
+        }
+
         UUID selfId = user.getUUID();
-        List<ServerPlayer> targets = server.getPlayerList().getPlayers().stream()
-                .filter(candidate -> PlayerGPSConfig.includeSelf || !candidate.getUUID().equals(selfId))
-                .sorted(PLAYER_SORT)
-                .collect(Collectors.toList());
+        List<PlayerPositionSnapshot.Entry> entries = PlayerPositionSnapshot.get(server).entries();
+        List<PlayerPositionSnapshot.Entry> targets = PlayerGPSConfig.includeSelf
+                ? entries
+                : entries.stream().filter(entry -> !entry.uuid().equals(selfId)).toList();
 
         if (targets.isEmpty()) {
             user.sendSystemMessage(Component.translatable("message.playergps.locator.empty"));
             return;
         }
 
-        int max = PlayerGPSConfig.maxPlayersToDisplay;
-        boolean limited = max > 0 && targets.size() > max;
-        int displayed = limited ? max : targets.size();
-
-        user.sendSystemMessage(Component.translatable("message.playergps.locator.header", displayed, targets.size()));
+        LocatorReport.open(user, targets);
+    }
 
-        for (int i = 0; i < displayed; i++) {
-            user.sendSystemMessage(buildEntryComponent(targets.get(i)));
+    private void announceNearbyPlayers(ServerPlayer user) {
+        PlayerSpatialIndex.Result result;
+        Component header;
+        if (PlayerGPSConfig.mode == PlayerGPSConfig.LocatorMode.NEAREST) {
+            result = PlayerSpatialIndex.nearest(user, PlayerGPSConfig.nearestCount, PlayerGPSConfig.includeSelf);
+            header = Component.translatable("message.playergps.locator.header.nearest", result.players().size(),
+                    PlayerSpatialIndex.population(user));
+        } else {
+            result = PlayerSpatialIndex.withinRadius(user, PlayerGPSConfig.searchRadius, PlayerGPSConfig.includeSelf);
+            header = Component.translatable("message.playergps.locator.header.radius", result.players().size(),
+                    PlayerGPSConfig.searchRadius);
         }
 
-        if (limited) {
-            user.sendSystemMessage(Component.translatable("message.playergps.locator.truncated", targets.size() - displayed));
+        if (result.players().isEmpty()) {
+            user.sendSystemMessage(Component.translatable("message.playergps.locator.empty"));
+            return;
         }
-    }
 
-    private Component buildEntryComponent(ServerPlayer target) {
-        BlockPos pos = target.blockPosition();
-        ResourceLocation dimensionLocation = target.level().dimension().location();
-        Component dimensionName = Component.translatable(Util.makeDescriptionId("dimension", dimensionLocation));
-
-        return Component.translatable(
-                        "message.playergps.locator.entry",
-                        target.getDisplayName(),
-                        dimensionName,
-                        pos.getX(),
-                        pos.getY(),
-                        pos.getZ())
-                .withStyle(ChatFormatting.GOLD);
+        List<PlayerPositionSnapshot.Entry> targets = new ArrayList<>(result.players().size());
+        for (ServerPlayer target : result.players()) {
+            targets.add(PlayerPositionSnapshot.entryOf(target));
+        }
+        LocatorReport.open(user, targets, result.distances(), header);
     }
 
     private void playClientFeedback(Level level, Player player) {
@@ -0,0 +1,49 @@
+package com.minecraft.playergps.network;
+
+import com.minecraft.playergps.client.LiveTrackingHud;
+import net.minecraft.network.FriendlyByteBuf;
+import net.minecraftforge.api.distmarker.Dist;
+import net.minecraftforge.fml.DistExecutor;
+import net.minecraftforge.network.NetworkEvent;
+
+import java.util.function.Supplier;
+
+/**
+ * One tick's worth of live tracking changes for one client, already encoded by the server.
+ * <p>
+ * Payload layout, all integers as VarInts:
+ * <pre>
+ * flags            bit 0: client drops every target before applying the rest
+ * removed count    followed by that many target slots
+ * updated count    followed by that many updates:
+ *   slot << 1 | 1  new target: name (UTF), zigzag x, y, z
+ *   slot << 1      moved target: zigzag dx, dy, dz from the last position sent for that slot
+ * </pre>
+ */
+public record LiveTrackingPacket(byte[] payload) {
+    public static final int FLAG_RESET = 1;
+
+    public void encode(FriendlyByteBuf buf) {
+        buf.writeBytes(payload);
+    }
+
+    public static LiveTrackingPacket decode(FriendlyByteBuf buf) {
+        byte[] payload = new byte[buf.readableBytes()];
+        buf.readBytes(payload);
+        return new LiveTrackingPacket(payload);
+    }
+
+    public void handle(Supplier<NetworkEvent.Context> context) {
+        DistExecutor.unsafeRunWhenOn(Dist.CLIENT, () -> () -> LiveTrackingHud.apply(payload));
+        context.get().setPacketHandled(true);
+    }
+
+    public static void writeZigZag(FriendlyByteBuf buf, int value) {
+        buf.writeVarInt((value << 1) ^ (value >> 31));
+    }
+
+    public static int readZigZag(FriendlyByteBuf buf) {
+        int value = buf.readVarInt();
+        return (value >>> 1) ^ -(value & 1);
+    }
+}
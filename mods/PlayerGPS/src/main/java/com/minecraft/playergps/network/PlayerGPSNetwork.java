@@ -0,0 +1,35 @@
+package com.minecraft.playergps.network;
+
+import com.minecraft.playergps.PlayerGPSMod;
+import net.minecraft.resources.ResourceLocation;
+import net.minecraft.server.level.ServerPlayer;
+import net.minecraftforge.network.NetworkDirection;
+import net.minecraftforge.network.NetworkRegistry;
+import net.minecraftforge.network.PacketDistributor;
+import net.minecraftforge.network.simple.SimpleChannel;
+
+public final class PlayerGPSNetwork {
+    private static final String PROTOCOL_VERSION = "1";
+
+    public static final SimpleChannel CHANNEL = NetworkRegistry.newSimpleChannel(
+            new ResourceLocation(PlayerGPSMod.MODID, "main"),
+            () -> PROTOCOL_VERSION,
+            PROTOCOL_VERSION::equals,
+            PROTOCOL_VERSION::equals);
+
+    private PlayerGPSNetwork() {
+    }
+
+    public static void register() {
+        int id = 0;
+        CHANNEL.messageBuilder(LiveTrackingPacket.class, id++, NetworkDirection.PLAY_TO_CLIENT)
+                .encoder(LiveTrackingPacket::encode)
+                .decoder(LiveTrackingPacket::decode)
+                .consumerMainThread(LiveTrackingPacket::handle)
+                .add();
+    }
+
+    public static void sendTo(ServerPlayer player, Object message) {
+        CHANNEL.send(PacketDistributor.PLAYER.with(() -> player), message);
+    }
+}
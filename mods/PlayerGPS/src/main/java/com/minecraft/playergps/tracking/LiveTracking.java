@@ -0,0 +1,241 @@
+package com.minecraft.playergps.tracking;
+
+import com.minecraft.playergps.PlayerGPSMod;
+import com.minecraft.playergps.config.PlayerGPSConfig;
+import com.minecraft.playergps.item.PlayerLocatorItem;
+import com.minecraft.playergps.network.LiveTrackingPacket;
+import com.minecraft.playergps.network.PlayerGPSNetwork;
+import io.netty.buffer.Unpooled;
+import net.minecraft.network.FriendlyByteBuf;
+import net.minecraft.server.MinecraftServer;
+import net.minecraft.server.level.ServerPlayer;
+import net.minecraftforge.event.TickEvent;
+import net.minecraftforge.event.entity.player.PlayerEvent;
+import net.minecraftforge.event.server.ServerStoppedEvent;
+import net.minecraftforge.eventbus.api.SubscribeEvent;
+import net.minecraftforge.fml.common.Mod;
+
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+/**
+ * Server side of the live tracking HUD. A tracker is updated every liveUpdateInterval ticks, only while it
+ * holds a locator, and receives at most one packet per update carrying the targets that appeared, vanished
+ * or moved at least liveMoveThreshold blocks since they were last sent. Bearings and distances are worked
+ * out on the client from its own position, so the tracker moving costs no traffic.
+ */
+@Mod.EventBusSubscriber(modid = PlayerGPSMod.MODID)
+public final class LiveTracking {
+    private static final Map<UUID, Tracker> TRACKERS = new HashMap<>();
+    /** Reused across updates; only the finished payload is copied out */
+    private static final FriendlyByteBuf UPDATED = new FriendlyByteBuf(Unpooled.buffer());
+    private static final FriendlyByteBuf REMOVED = new FriendlyByteBuf(Unpooled.buffer());
+    private static final FriendlyByteBuf PAYLOAD = new FriendlyByteBuf(Unpooled.buffer());
+
+    private static long updates;
+    private static long updateNanos;
+    private static long packetsSent;
+    private static long bytesSent;
+
+    private static final class Tracker {
+        final int phase;
+        final Map<UUID, Sent> sent = new HashMap<>();
+        int nextSlot;
+        boolean active;
+
+        Tracker(UUID uuid) {
+            this.phase = uuid.hashCode() & Integer.MAX_VALUE;
+        }
+    }
+
+    private static final class Sent {
+        final int slot;
+        int x;
+        int y;
+        int z;
+        boolean seen;
+
+        Sent(int slot, int x, int y, int z) {
+            this.slot = slot;
+            this.x = x;
+            this.y = y;
+            this.z = z;
+        }
+    }
+
+    private LiveTracking() {
+    }
+
+    /** Turns live tracking on or off for the player. Returns the new state. */
+    public static boolean toggle(ServerPlayer player) {
+        Tracker tracker = TRACKERS.remove(player.getUUID());
+        if (tracker != null) {
+            if (tracker.active) {
+                send(player, reset());
+            }
+            return false;
+        }
+        TRACKERS.put(player.getUUID(), new Tracker(player.getUUID()));
+        return true;
+    }
+
+    @SubscribeEvent
+    public static void onServerTick(TickEvent.ServerTickEvent event) {
+        if (event.phase != TickEvent.Phase.END || TRACKERS.isEmpty()) {
+            return;
+        }
+        MinecraftServer server = event.getServer();
+        int interval = PlayerGPSConfig.liveUpdateInterval;
+        int tick = server.getTickCount();
+        Iterator<Map.Entry<UUID, Tracker>> it = TRACKERS.entrySet().iterator();
+        while (it.hasNext()) {
+            Map.Entry<UUID, Tracker> entry = it.next();
+            Tracker tracker = entry.getValue();
+            // Spread trackers over the interval instead of updating all of them on the same tick
+            if ((tick + tracker.phase) % interval != 0) {
+                continue;
+            }
+            ServerPlayer player = server.getPlayerList().getPlayer(entry.getKey());
+            if (player == null) {
+                it.remove();
+                continue;
+            }
+            if (!holdsLocator(player)) {
+                if (tracker.active) {
+                    tracker.active = false;
+                    tracker.sent.clear();
+                    tracker.nextSlot = 0;
+                    send(player, reset());
+                }
+                continue;
+            }
+            long start = System.nanoTime();
+            byte[] payload = update(player, tracker);
+            updateNanos += System.nanoTime() - start;
+            updates++;
+            if (payload != null) {
+                send(player, payload);
+            }
+        }
+    }
+
+    private static boolean holdsLocator(ServerPlayer player) {
+        return player.getMainHandItem().getItem() instanceof PlayerLocatorItem
+                || player.getOffhandItem().getItem() instanceof PlayerLocatorItem;
+    }
+
+    /** Encodes what changed since the last update, or returns null if nothing did. */
+    private static byte[] update(ServerPlayer player, Tracker tracker) {
+        PlayerSpatialIndex.Result result = PlayerGPSConfig.mode == PlayerGPSConfig.LocatorMode.RADIUS
+                ? PlayerSpatialIndex.withinRadius(player, PlayerGPSConfig.searchRadius, false)
+                : PlayerSpatialIndex.nearest(player, PlayerGPSConfig.liveMaxTargets, false);
+        List<ServerPlayer> targets = result.players();
+        int count = Math.min(targets.size(), PlayerGPSConfig.liveMaxTargets);
+        int threshold = PlayerGPSConfig.liveMoveThreshold;
+
+        FriendlyByteBuf updated = UPDATED;
+        updated.clear();
+        int updatedCount = 0;
+        for (int i = 0; i < count; i++) {
+            ServerPlayer target = targets.get(i);
+            int x = target.getBlockX();
+            int y = target.getBlockY();
+            int z = target.getBlockZ();
+            Sent sent = tracker.sent.get(target.getUUID());
+            if (sent == null) {
+                sent = new Sent(tracker.nextSlot++, x, y, z);
+                tracker.sent.put(target.getUUID(), sent);
+                updated.writeVarInt(sent.slot << 1 | 1);
+                updated.writeUtf(target.getGameProfile().getName());
+                LiveTrackingPacket.writeZigZag(updated, x);
+                LiveTrackingPacket.writeZigZag(updated, y);
+                LiveTrackingPacket.writeZigZag(updated, z);
+                updatedCount++;
+            } else if (Math.abs(x - sent.x) >= threshold || Math.abs(y - sent.y) >= threshold
+                    || Math.abs(z - sent.z) >= threshold) {
+                updated.writeVarInt(sent.slot << 1);
+                LiveTrackingPacket.writeZigZag(updated, x - sent.x);
+                LiveTrackingPacket.writeZigZag(updated, y - sent.y);
+                LiveTrackingPacket.writeZigZag(updated, z - sent.z);
+                sent.x = x;
+                sent.y = y;
+                sent.z = z;
+                updatedCount++;
+            }
+            sent.seen = true;
+        }
+
+        FriendlyByteBuf removed = REMOVED;
+        removed.clear();
+        int removedCount = 0;
+        Iterator<Sent> it = tracker.sent.values().iterator();
+        while (it.hasNext()) {
+            Sent sent = it.next();
+            if (!sent.seen) {
+                removed.writeVarInt(sent.slot);
+                removedCount++;
+                it.remove();
+            }
+            sent.seen = false;
+        }
+
+        boolean first = !tracker.active;
+        tracker.active = true;
+        if (!first && updatedCount == 0 && removedCount == 0) {
+            return null;
+        }
+        FriendlyByteBuf out = PAYLOAD;
+        out.clear();
+        out.writeVarInt(first ? LiveTrackingPacket.FLAG_RESET : 0);
+        out.writeVarInt(removedCount);
+        out.writeBytes(removed);
+        out.writeVarInt(updatedCount);
+        out.writeBytes(updated);
+        byte[] payload = new byte[out.readableBytes()];
+        out.readBytes(payload);
+        return payload;
+    }
+
+    private static byte[] reset() {
+        // flags, removed count, updated count
+        return new byte[] {LiveTrackingPacket.FLAG_RESET, 0, 0};
+    }
+
+    private static void send(ServerPlayer player, byte[] payload) {
+        PlayerGPSNetwork.sendTo(player, new LiveTrackingPacket(payload));
+        packetsSent++;
+        bytesSent += payload.length;
+    }
+
+    public static List<String> statsLines() {
+        int active = 0;
+        for (Tracker tracker : TRACKERS.values()) {
+            if (tracker.active) {
+                active++;
+            }
+        }
+        return List.of(
+                String.format("live: trackers=%d holding=%d updates=%d (%.1f us per tracker update)",
+                        TRACKERS.size(), active, updates, updates == 0 ? 0.0 : updateNanos / 1000.0 / updates),
+                String.format("live: packets=%d bytes=%d (%.1f bytes per packet, %.2f packets per update)",
+                        packetsSent, bytesSent, packetsSent == 0 ? 0.0 : (double) bytesSent / packetsSent,
+                        updates == 0 ? 0.0 : (double) packetsSent / updates));
+    }
+
+    @SubscribeEvent
+    public static void onPlayerLogout(PlayerEvent.PlayerLoggedOutEvent event) {
+        TRACKERS.remove(event.getEntity().getUUID());
+    }
+
+    @SubscribeEvent
+    public static void onServerStopped(ServerStoppedEvent event) {
+        TRACKERS.clear();
+        updates = 0;
+        updateNanos = 0;
+        packetsSent = 0;
+        bytesSent = 0;
+    }
+}
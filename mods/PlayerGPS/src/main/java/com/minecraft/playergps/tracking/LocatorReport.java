@@ -0,0 +1,248 @@
+package com.minecraft.playergps.tracking;
+
+import com.minecraft.playergps.PlayerGPSMod;
+import com.minecraft.playergps.config.PlayerGPSConfig;
+import io.netty.buffer.Unpooled;
+import net.minecraft.ChatFormatting;
+import net.minecraft.network.FriendlyByteBuf;
+import net.minecraft.network.chat.ClickEvent;
+import net.minecraft.network.chat.CommonComponents;
+import net.minecraft.network.chat.Component;
+import net.minecraft.network.chat.HoverEvent;
+import net.minecraft.network.chat.MutableComponent;
+import net.minecraft.network.chat.Style;
+import net.minecraft.network.protocol.game.ClientboundSystemChatPacket;
+import net.minecraft.server.level.ServerPlayer;
+import net.minecraftforge.event.entity.player.PlayerEvent;
+import net.minecraftforge.event.server.ServerStoppedEvent;
+import net.minecraftforge.eventbus.api.SubscribeEvent;
+import net.minecraftforge.fml.common.Mod;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+/**
+ * A locator result split into pages, each sent as a single chat packet.
+ * The last report per player is kept so the page controls can serve later pages without re-reading positions.
+ */
+@Mod.EventBusSubscriber(modid = PlayerGPSMod.MODID)
+public final class LocatorReport {
+    private static final Map<UUID, LocatorReport> REPORTS = new HashMap<>();
+    private static int nextId;
+
+    private static long uses;
+    private static long pagesSent;
+    private static long packetsSent;
+    private static long bytesSent;
+    private static long perLinePackets;
+    private static long perLineBytes;
+
+    private final int id;
+    private final int tick;
+    private final List<PlayerPositionSnapshot.Entry> targets;
+    @Nullable
+    private final int[] distances;
+    private final Component header;
+    private final int displayed;
+    private final int pageSize;
+    private final Component[] pages;
+
+    private LocatorReport(int id, int tick, List<PlayerPositionSnapshot.Entry> targets, @Nullable int[] distances,
+                          Component header, int displayed, int pageSize) {
+        this.id = id;
+        this.tick = tick;
+        this.targets = targets;
+        this.distances = distances;
+        this.header = header;
+        this.displayed = displayed;
+        this.pageSize = pageSize;
+        this.pages = new Component[Math.max(1, (displayed + pageSize - 1) / pageSize)];
+    }
+
+    /** Builds a report of every target sorted by dimension and name, remembers it for the user and sends its first page. */
+    public static void open(ServerPlayer user, List<PlayerPositionSnapshot.Entry> targets) {
+        int displayed = limit(targets.size());
+        open(user, new LocatorReport(++nextId, user.server.getTickCount(), targets, null,
+                Component.translatable("message.playergps.locator.header", displayed, targets.size()),
+                displayed, PlayerGPSConfig.entriesPerPage));
+    }
+
+    /** Same as {@link #open(ServerPlayer, List)} for a distance-sorted spatial query result. */
+    public static void open(ServerPlayer user, List<PlayerPositionSnapshot.Entry> targets, int[] distances, Component header) {
+        open(user, new LocatorReport(++nextId, user.server.getTickCount(), targets, distances, header, limit(targets.size()),
+                PlayerGPSConfig.entriesPerPage));
+    }
+
+    private static int limit(int size) {
+        int max = PlayerGPSConfig.maxPlayersToDisplay;
+        return max > 0 && size > max ? max : size;
+    }
+
+    private static void open(ServerPlayer user, LocatorReport report) {
+        REPORTS.put(user.getUUID(), report);
+        uses++;
+        if (PlayerGPSConfig.measureTraffic) {
+            report.measurePerLine();
+        }
+        report.send(user, 0);
+    }
+
+    /** Sends a page of the user's last report, if the clicked control still belongs to it. */
+    public static void showPage(ServerPlayer user, int reportId, int page) {
+        LocatorReport report = REPORTS.get(user.getUUID());
+        if (report == null || report.id != reportId) {
+            user.sendSystemMessage(Component.translatable("message.playergps.locator.expired")
+                    .withStyle(ChatFormatting.GRAY));
+            return;
+        }
+        report.send(user, Math.max(0, Math.min(page, report.pages.length - 1)));
+    }
+
+    private void send(ServerPlayer user, int page) {
+        Component message = page(page);
+        user.sendSystemMessage(message);
+        pagesSent++;
+        if (PlayerGPSConfig.measureTraffic) {
+            packetsSent++;
+            bytesSent += encodedSize(message);
+        }
+    }
+
+    private Component page(int page) {
+        Component cached = pages[page];
+        if (cached != null) {
+            return cached;
+        }
+        MutableComponent message = header.copy();
+        int from = page * pageSize;
+        int to = Math.min(displayed, from + pageSize);
+        for (int i = from; i < to; i++) {
+            message.append(CommonComponents.NEW_LINE).append(entry(i));
+        }
+        if (page == pages.length - 1 && displayed < targets.size()) {
+            message.append(CommonComponents.NEW_LINE)
+                    .append(Component.translatable("message.playergps.locator.truncated", targets.size() - displayed));
+        }
+        if (pages.length > 1) {
+            message.append(CommonComponents.NEW_LINE).append(navigation(page));
+        }
+        pages[page] = message;
+        return message;
+    }
+
+    private Component navigation(int page) {
+        MutableComponent line = Component.empty();
+        if (page > 0) {
+            line.append(control("message.playergps.locator.previous", page - 1)).append(CommonComponents.SPACE);
+        }
+        line.append(Component.translatable("message.playergps.locator.page", page + 1, pages.length)
+                .withStyle(ChatFormatting.GRAY));
+        if (page < pages.length - 1) {
+            line.append(CommonComponents.SPACE).append(control("message.playergps.locator.next", page + 1));
+        }
+        return line;
+    }
+
+    private Component control(String key, int page) {
+        return Component.translatable(key).withStyle(Style.EMPTY
+                .withColor(ChatFormatting.AQUA)
+                .withClickEvent(new ClickEvent(ClickEvent.Action.RUN_COMMAND, "/playergps page " + id + " " + (page + 1)))
+                .withHoverEvent(new HoverEvent(HoverEvent.Action.SHOW_TEXT,
+                        Component.translatable("message.playergps.locator.page_hover", page + 1))));
+    }
+
+    private Component entry(int index) {
+        PlayerPositionSnapshot.Entry target = targets.get(index);
+        MutableComponent line = line(index, target);
+        if (PlayerGPSConfig.locatorTrailPoints > 0) {
+            int since = tick - PlayerGPSConfig.historyLength * PlayerGPSConfig.historySampleInterval;
+            MutableComponent trail = PositionHistory.trail(target.uuid(), since, tick, PlayerGPSConfig.locatorTrailPoints);
+            if (trail != null) {
+                line.withStyle(style -> style.withHoverEvent(new HoverEvent(HoverEvent.Action.SHOW_TEXT,
+                        Component.translatable("message.playergps.history.trail").append(CommonComponents.NEW_LINE).append(trail))));
+            }
+        }
+        return line;
+    }
+
+    private MutableComponent line(int index, PlayerPositionSnapshot.Entry target) {
+        if (distances != null) {
+            return Component.translatable(
+                            "message.playergps.locator.entry.distance",
+                            target.displayName(),
+                            target.dimensionName(),
+                            target.x(),
+                            target.y(),
+                            target.z(),
+                            distances[index])
+                    .withStyle(ChatFormatting.GOLD);
+        }
+        return Component.translatable(
+                        "message.playergps.locator.entry",
+                        target.displayName(),
+                        target.dimensionName(),
+                        target.x(),
+                        target.y(),
+                        target.z())
+                .withStyle(ChatFormatting.GOLD);
+    }
+
+    /** What the old one-message-per-line report would have cost for the same result. */
+    private void measurePerLine() {
+        perLinePackets++;
+        perLineBytes += encodedSize(header);
+        for (int i = 0; i < displayed; i++) {
+            perLinePackets++;
+            perLineBytes += encodedSize(entry(i));
+        }
+        if (displayed < targets.size()) {
+            perLinePackets++;
+            perLineBytes += encodedSize(Component.translatable("message.playergps.locator.truncated", targets.size() - displayed));
+        }
+    }
+
+    private static int encodedSize(Component message) {
+        FriendlyByteBuf buf = new FriendlyByteBuf(Unpooled.buffer());
+        try {
+            new ClientboundSystemChatPacket(message, false).write(buf);
+            return buf.readableBytes();
+        } finally {
+            buf.release();
+        }
+    }
+
+    public static List<String> statsLines() {
+        if (!PlayerGPSConfig.measureTraffic) {
+            return List.of(String.format("uses=%d pages=%d (enable measureTraffic for packet/byte counts)", uses, pagesSent));
+        }
+        return List.of(
+                String.format("uses=%d pages=%d cachedReports=%d", uses, pagesSent, REPORTS.size()),
+                String.format("paged: packets=%d bytes=%d (%.1f packets, %.0f bytes per use)",
+                        packetsSent, bytesSent, perUse(packetsSent), perUse(bytesSent)),
+                String.format("per-line equivalent: packets=%d bytes=%d (%.1f packets, %.0f bytes per use)",
+                        perLinePackets, perLineBytes, perUse(perLinePackets), perUse(perLineBytes)));
+    }
+
+    private static double perUse(long total) {
+        return uses == 0 ? 0.0 : (double) total / uses;
+    }
+
+    @SubscribeEvent
+    public static void onPlayerLogout(PlayerEvent.PlayerLoggedOutEvent event) {
+        REPORTS.remove(event.getEntity().getUUID());
+    }
+
+    @SubscribeEvent
+    public static void onServerStopped(ServerStoppedEvent event) {
+        REPORTS.clear();
+        uses = 0;
+        pagesSent = 0;
+        packetsSent = 0;
+        bytesSent = 0;
+        perLinePackets = 0;
+        perLineBytes = 0;
+    }
+}
@@ -0,0 +1,100 @@
+package com.minecraft.playergps.tracking;
+
+import com.minecraft.playergps.PlayerGPSMod;
+import com.minecraft.playergps.config.PlayerGPSConfig;
+import net.minecraft.Util;
+import net.minecraft.core.BlockPos;
+import net.minecraft.network.chat.Component;
+import net.minecraft.resources.ResourceKey;
+import net.minecraft.server.MinecraftServer;
+import net.minecraft.server.level.ServerPlayer;
+import net.minecraft.world.level.Level;
+import net.minecraftforge.event.server.ServerStoppedEvent;
+import net.minecraftforge.eventbus.api.SubscribeEvent;
+import net.minecraftforge.fml.common.Mod;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+/**
+ * Immutable, pre-sorted view of every online player's position, shared by all locator uses.
+ * Built lazily on request and reused for snapshotRefreshTicks ticks. Server thread only.
+ */
+@Mod.EventBusSubscriber(modid = PlayerGPSMod.MODID)
+public final class PlayerPositionSnapshot {
+    private static final Comparator<Entry> ORDER = Comparator
+            .comparing((Entry entry) -> entry.dimensionKey)
+            .thenComparing(entry -> entry.name);
+
+    private static final Map<ResourceKey<Level>, Component> DIMENSION_NAMES = new HashMap<>();
+
+    @Nullable
+    private static PlayerPositionSnapshot current;
+
+    public record Entry(UUID uuid, String name, Component displayName, ResourceKey<Level> dimension,
+                        String dimensionKey, Component dimensionName, int x, int y, int z) {
+        public BlockPos blockPos() {
+            return new BlockPos(x, y, z);
+        }
+    }
+
+    private final int builtTick;
+    private final List<Entry> entries;
+
+    private PlayerPositionSnapshot(int builtTick, List<Entry> entries) {
+        this.builtTick = builtTick;
+        this.entries = entries;
+    }
+
+    public static PlayerPositionSnapshot get(MinecraftServer server) {
+        int tick = server.getTickCount();
+        PlayerPositionSnapshot snapshot = current;
+        if (snapshot == null || tick - snapshot.builtTick >= PlayerGPSConfig.snapshotRefreshTicks) {
+            snapshot = build(server, tick);
+            current = snapshot;
+        }
+        return snapshot;
+    }
+
+    private static PlayerPositionSnapshot build(MinecraftServer server, int tick) {
+        List<ServerPlayer> players = server.getPlayerList().getPlayers();
+        List<Entry> entries = new ArrayList<>(players.size());
+        for (ServerPlayer player : players) {
+            entries.add(entryOf(player));
+        }
+        entries.sort(ORDER);
+        return new PlayerPositionSnapshot(tick, List.copyOf(entries));
+    }
+
+    public static Entry entryOf(ServerPlayer player) {
+        ResourceKey<Level> dimension = player.level().dimension();
+        BlockPos pos = player.blockPosition();
+        return new Entry(player.getUUID(), player.getGameProfile().getName(), player.getDisplayName(),
+                dimension, dimension.location().toString(), dimensionName(dimension),
+                pos.getX(), pos.getY(), pos.getZ());
+    }
+
+    public static Component dimensionName(ResourceKey<Level> dimension) {
+        return DIMENSION_NAMES.computeIfAbsent(dimension,
+                key -> Component.translatable(Util.makeDescriptionId("dimension", key.location())));
+    }
+
+    public List<Entry> entries() {
+        return entries;
+    }
+
+    public int builtTick() {
+        return builtTick;
+    }
+
+    @SubscribeEvent
+    public static void onServerStopped(ServerStoppedEvent event) {
+        current = null;
+        DIMENSION_NAMES.clear();
+    }
+}
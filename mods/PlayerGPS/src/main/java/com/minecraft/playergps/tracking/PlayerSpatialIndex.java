@@ -0,0 +1,270 @@
+package com.minecraft.playergps.tracking;
+
+import com.minecraft.playergps.PlayerGPSMod;
+import it.unimi.dsi.fastutil.longs.Long2ObjectMap;
+import it.unimi.dsi.fastutil.longs.Long2ObjectOpenHashMap;
+import net.minecraft.resources.ResourceKey;
+import net.minecraft.server.level.ServerPlayer;
+import net.minecraft.world.level.ChunkPos;
+import net.minecraft.world.level.Level;
+import net.minecraftforge.event.TickEvent;
+import net.minecraftforge.event.entity.player.PlayerEvent;
+import net.minecraftforge.event.server.ServerStoppedEvent;
+import net.minecraftforge.eventbus.api.SubscribeEvent;
+import net.minecraftforge.fml.LogicalSide;
+import net.minecraftforge.fml.common.Mod;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+/**
+ * Per-dimension hash grid of online players, keyed by cells of CELL_CHUNKS x CELL_CHUNKS chunks.
+ * Players are re-filed only when they cross a cell border or change dimension, so nearest-K and radius
+ * queries visit the cells around the origin instead of scanning and sorting the whole player list.
+ * Server thread only.
+ */
+@Mod.EventBusSubscriber(modid = PlayerGPSMod.MODID)
+public final class PlayerSpatialIndex {
+    private static final int CELL_CHUNKS = 8;
+    private static final int CELL_SHIFT = 4 + Integer.numberOfTrailingZeros(CELL_CHUNKS);
+    private static final int CELL_SIZE = 1 << CELL_SHIFT;
+
+    private static final Map<ResourceKey<Level>, Long2ObjectOpenHashMap<List<ServerPlayer>>> CELLS = new HashMap<>();
+    private static final Map<UUID, Tracked> TRACKED = new HashMap<>();
+
+    private static final class Tracked {
+        ServerPlayer player;
+        ResourceKey<Level> dimension;
+        long cell;
+
+        Tracked(ServerPlayer player, ResourceKey<Level> dimension, long cell) {
+            this.player = player;
+            this.dimension = dimension;
+            this.cell = cell;
+        }
+    }
+
+    /** Players found by a query, nearest first, with their distances in blocks. */
+    public record Result(List<ServerPlayer> players, int[] distances) {
+    }
+
+    private PlayerSpatialIndex() {
+    }
+
+    /** The k players nearest to origin in its dimension. */
+    public static Result nearest(ServerPlayer origin, int k, boolean includeSelf) {
+        Long2ObjectOpenHashMap<List<ServerPlayer>> cells = cells(origin);
+        Nearest nearest = new Nearest(k);
+        if (cells == null || k <= 0) {
+            return nearest.result();
+        }
+        int cx = cell(origin.getBlockX());
+        int cz = cell(origin.getBlockZ());
+        for (int ring = 0; ; ring++) {
+            // Once a ring would cover more cells than are occupied, walking the occupied cells is cheaper
+            if ((2L * ring + 1) * (2L * ring + 1) > cells.size()) {
+                for (Long2ObjectMap.Entry<List<ServerPlayer>> entry : cells.long2ObjectEntrySet()) {
+                    long key = entry.getLongKey();
+                    int dx = Math.abs(ChunkPos.getX(key) - cx);
+                    int dz = Math.abs(ChunkPos.getZ(key) - cz);
+                    if (Math.max(dx, dz) >= ring) {
+                        nearest.offerAll(origin, entry.getValue(), includeSelf);
+                    }
+                }
+                return nearest.result();
+            }
+            for (int x = cx - ring; x <= cx + ring; x++) {
+                boolean edge = x == cx - ring || x == cx + ring;
+                for (int z = cz - ring; z <= cz + ring; z += edge || ring == 0 ? 1 : 2 * ring) {
+                    List<ServerPlayer> players = cells.get(ChunkPos.asLong(x, z));
+                    if (players != null) {
+                        nearest.offerAll(origin, players, includeSelf);
+                    }
+                }
+            }
+            // Anything beyond this ring is at least ring * CELL_SIZE blocks away horizontally
+            double bound = (double) ring * CELL_SIZE;
+            if (nearest.full() && nearest.worstSq() <= bound * bound) {
+                return nearest.result();
+            }
+        }
+    }
+
+    /** Every player within radius blocks of origin in its dimension. */
+    public static Result withinRadius(ServerPlayer origin, int radius, boolean includeSelf) {
+        Long2ObjectOpenHashMap<List<ServerPlayer>> cells = cells(origin);
+        Nearest found = new Nearest(Integer.MAX_VALUE);
+        if (cells == null) {
+            return found.result();
+        }
+        double radiusSq = (double) radius * radius;
+        int minX = cell(origin.getBlockX() - radius);
+        int maxX = cell(origin.getBlockX() + radius);
+        int minZ = cell(origin.getBlockZ() - radius);
+        int maxZ = cell(origin.getBlockZ() + radius);
+        if ((long) (maxX - minX + 1) * (maxZ - minZ + 1) > cells.size()) {
+            for (Long2ObjectMap.Entry<List<ServerPlayer>> entry : cells.long2ObjectEntrySet()) {
+                long key = entry.getLongKey();
+                int x = ChunkPos.getX(key);
+                int z = ChunkPos.getZ(key);
+                if (x >= minX && x <= maxX && z >= minZ && z <= maxZ) {
+                    found.offerWithin(origin, entry.getValue(), includeSelf, radiusSq);
+                }
+            }
+        } else {
+            for (int x = minX; x <= maxX; x++) {
+                for (int z = minZ; z <= maxZ; z++) {
+                    List<ServerPlayer> players = cells.get(ChunkPos.asLong(x, z));
+                    if (players != null) {
+                        found.offerWithin(origin, players, includeSelf, radiusSq);
+                    }
+                }
+            }
+        }
+        return found.result();
+    }
+
+    /** Number of indexed players in the dimension of the given player. */
+    public static int population(ServerPlayer player) {
+        int count = 0;
+        Long2ObjectOpenHashMap<List<ServerPlayer>> cells = cells(player);
+        if (cells != null) {
+            for (List<ServerPlayer> players : cells.values()) {
+                count += players.size();
+            }
+        }
+        return count;
+    }
+
+    private static Long2ObjectOpenHashMap<List<ServerPlayer>> cells(ServerPlayer player) {
+        return CELLS.get(player.level().dimension());
+    }
+
+    private static int cell(int block) {
+        return block >> CELL_SHIFT;
+    }
+
+    /** Keeps the closest candidates in ascending distance order by insertion. */
+    private static final class Nearest {
+        private final int limit;
+        private final List<ServerPlayer> players = new ArrayList<>();
+        private double[] distancesSq = new double[8];
+
+        Nearest(int limit) {
+            this.limit = limit;
+        }
+
+        boolean full() {
+            return players.size() >= limit;
+        }
+
+        double worstSq() {
+            return distancesSq[players.size() - 1];
+        }
+
+        void offerAll(ServerPlayer origin, List<ServerPlayer> candidates, boolean includeSelf) {
+            for (ServerPlayer candidate : candidates) {
+                if (includeSelf || candidate != origin) {
+                    offer(candidate, origin.distanceToSqr(candidate));
+                }
+            }
+        }
+
+        void offerWithin(ServerPlayer origin, List<ServerPlayer> candidates, boolean includeSelf, double radiusSq) {
+            for (ServerPlayer candidate : candidates) {
+                double distanceSq = origin.distanceToSqr(candidate);
+                if ((includeSelf || candidate != origin) && distanceSq <= radiusSq) {
+                    offer(candidate, distanceSq);
+                }
+            }
+        }
+
+        private void offer(ServerPlayer player, double distanceSq) {
+            int size = players.size();
+            if (size >= limit && distanceSq >= distancesSq[size - 1]) {
+                return;
+            }
+            int at = size;
+            while (at > 0 && distancesSq[at - 1] > distanceSq) {
+                at--;
+            }
+            if (size >= limit) {
+                players.remove(size - 1);
+                size--;
+            } else if (size == distancesSq.length) {
+                distancesSq = Arrays.copyOf(distancesSq, size * 2);
+            }
+            System.arraycopy(distancesSq, at, distancesSq, at + 1, size - at);
+            distancesSq[at] = distanceSq;
+            players.add(at, player);
+        }
+
+        Result result() {
+            int[] distances = new int[players.size()];
+            for (int i = 0; i < distances.length; i++) {
+                distances[i] = (int) Math.round(Math.sqrt(distancesSq[i]));
+            }
+            return new Result(players, distances);
+        }
+    }
+
+    @SubscribeEvent
+    public static void onPlayerTick(TickEvent.PlayerTickEvent event) {
+        if (event.phase != TickEvent.Phase.END || event.side != LogicalSide.SERVER
+                || !(event.player instanceof ServerPlayer player)) {
+            return;
+        }
+        ResourceKey<Level> dimension = player.level().dimension();
+        long cell = ChunkPos.asLong(cell(player.getBlockX()), cell(player.getBlockZ()));
+        Tracked tracked = TRACKED.get(player.getUUID());
+        if (tracked == null) {
+            file(player, dimension, cell);
+            TRACKED.put(player.getUUID(), new Tracked(player, dimension, cell));
+        } else if (tracked.player != player || tracked.cell != cell || tracked.dimension != dimension) {
+            // Respawning replaces the ServerPlayer instance, so that also counts as a move
+            unfile(tracked);
+            file(player, dimension, cell);
+            tracked.player = player;
+            tracked.dimension = dimension;
+            tracked.cell = cell;
+        }
+    }
+
+    @SubscribeEvent
+    public static void onPlayerLogout(PlayerEvent.PlayerLoggedOutEvent event) {
+        Tracked tracked = TRACKED.remove(event.getEntity().getUUID());
+        if (tracked != null) {
+            unfile(tracked);
+        }
+    }
+
+    private static void file(ServerPlayer player, ResourceKey<Level> dimension, long cell) {
+        CELLS.computeIfAbsent(dimension, key -> new Long2ObjectOpenHashMap<>())
+                .computeIfAbsent(cell, key -> new ArrayList<>(2))
+                .add(player);
+    }
+
+    private static void unfile(Tracked tracked) {
+        Long2ObjectOpenHashMap<List<ServerPlayer>> cells = CELLS.get(tracked.dimension);
+        if (cells == null) {
+            return;
+        }
+        List<ServerPlayer> players = cells.get(tracked.cell);
+        if (players != null) {
+            players.remove(tracked.player);
+            if (players.isEmpty()) {
+                cells.remove(tracked.cell);
+            }
+        }
+    }
+
+    @SubscribeEvent
+    public static void onServerStopped(ServerStoppedEvent event) {
+        CELLS.clear();
+        TRACKED.clear();
+    }
+}
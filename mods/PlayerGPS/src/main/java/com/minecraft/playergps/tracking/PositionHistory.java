@@ -0,0 +1,268 @@
+package com.minecraft.playergps.tracking;
+
+import com.minecraft.playergps.PlayerGPSMod;
+import com.minecraft.playergps.config.PlayerGPSConfig;
+import it.unimi.dsi.fastutil.objects.Reference2IntOpenHashMap;
+import net.minecraft.ChatFormatting;
+import net.minecraft.network.chat.CommonComponents;
+import net.minecraft.network.chat.Component;
+import net.minecraft.network.chat.MutableComponent;
+import net.minecraft.resources.ResourceKey;
+import net.minecraft.server.MinecraftServer;
+import net.minecraft.server.level.ServerPlayer;
+import net.minecraft.world.level.Level;
+import net.minecraftforge.event.TickEvent;
+import net.minecraftforge.event.server.ServerStoppedEvent;
+import net.minecraftforge.eventbus.api.SubscribeEvent;
+import net.minecraftforge.fml.common.Mod;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+/**
+ * Samples every online player's position each historySampleInterval ticks into a per-player ring buffer.
+ * A buffer is one int array holding historyLength samples of {x, z, tick, y << 16 | dimension}, allocated
+ * once when a player is first seen, so sampling itself allocates nothing. The bytes held by all buffers are
+ * capped by historyMemoryMB; when full, the buffer sampled least recently (normally an offline player's) is
+ * reused, or dropped if historyLength has changed since it was allocated.
+ * History of offline players is kept until evicted or the server stops. Server thread only.
+ */
+@Mod.EventBusSubscriber(modid = PlayerGPSMod.MODID)
+public final class PositionHistory {
+    private static final int STRIDE = 4;
+    private static final int BYTES_PER_SAMPLE = STRIDE * Integer.BYTES;
+
+    private static final Map<UUID, Track> TRACKS = new HashMap<>();
+    private static final List<ResourceKey<Level>> DIMENSIONS = new ArrayList<>();
+    private static final Reference2IntOpenHashMap<ResourceKey<Level>> DIMENSION_IDS = new Reference2IntOpenHashMap<>();
+
+    static {
+        DIMENSION_IDS.defaultReturnValue(-1);
+    }
+
+    private static long samples;
+    private static long evictions;
+    /** Bytes held by the sample arrays of all tracks */
+    private static long allocatedBytes;
+
+    private static final class Track {
+        UUID owner;
+        String name;
+        final int[] data;
+        /** Index of the next sample to write */
+        int head;
+        int count;
+        int lastTick;
+
+        Track(UUID owner, String name, int capacity) {
+            this.owner = owner;
+            this.name = name;
+            this.data = new int[capacity * STRIDE];
+        }
+
+        int capacity() {
+            return data.length / STRIDE;
+        }
+
+        long bytes() {
+            return (long) data.length * Integer.BYTES;
+        }
+    }
+
+    @FunctionalInterface
+    public interface SampleVisitor {
+        /** Return false to stop visiting. */
+        boolean visit(int tick, ResourceKey<Level> dimension, int x, int y, int z);
+    }
+
+    private PositionHistory() {
+    }
+
+    @SubscribeEvent
+    public static void onServerTick(TickEvent.ServerTickEvent event) {
+        if (event.phase != TickEvent.Phase.END || PlayerGPSConfig.historyLength <= 0) {
+            return;
+        }
+        MinecraftServer server = event.getServer();
+        int tick = server.getTickCount();
+        if (tick % PlayerGPSConfig.historySampleInterval != 0) {
+            return;
+        }
+        List<ServerPlayer> players = server.getPlayerList().getPlayers();
+        for (int i = 0; i < players.size(); i++) {
+            ServerPlayer player = players.get(i);
+            Track track = TRACKS.get(player.getUUID());
+            if (track == null) {
+                track = claim(player, tick);
+                if (track == null) {
+                    continue;
+                }
+            }
+            int at = track.head * STRIDE;
+            track.data[at] = player.getBlockX();
+            track.data[at + 1] = player.getBlockZ();
+            track.data[at + 2] = tick;
+            track.data[at + 3] = player.getBlockY() << 16 | dimensionId(player.level().dimension());
+            track.head = (track.head + 1) % track.capacity();
+            track.count = Math.min(track.count + 1, track.capacity());
+            track.lastTick = tick;
+            samples++;
+        }
+    }
+
+    /**
+     * A buffer for a newly seen player: a fresh one while under the memory cap, otherwise the stalest one.
+     * Buffers still being sampled are never taken, so players beyond the cap go unrecorded rather than thrash.
+     */
+    @Nullable
+    private static Track claim(ServerPlayer player, int tick) {
+        int capacity = PlayerGPSConfig.historyLength;
+        long bytes = (long) capacity * BYTES_PER_SAMPLE;
+        long budget = (long) PlayerGPSConfig.historyMemoryMB * 1024 * 1024;
+        while (allocatedBytes + bytes > budget) {
+            Track stalest = stalest(tick);
+            if (stalest == null) {
+                return null;
+            }
+            TRACKS.remove(stalest.owner);
+            evictions++;
+            if (stalest.capacity() == capacity) {
+                stalest.owner = player.getUUID();
+                stalest.name = player.getGameProfile().getName();
+                stalest.head = 0;
+                stalest.count = 0;
+                TRACKS.put(stalest.owner, stalest);
+                return stalest;
+            }
+            // Allocated for a different historyLength; free it and make room for a buffer of the current size
+            allocatedBytes -= stalest.bytes();
+        }
+        Track track = new Track(player.getUUID(), player.getGameProfile().getName(), capacity);
+        allocatedBytes += track.bytes();
+        TRACKS.put(track.owner, track);
+        return track;
+    }
+
+    /** The track sampled least recently, or null if every track was sampled within the last interval. */
+    @Nullable
+    private static Track stalest(int tick) {
+        Track stalest = null;
+        for (Track candidate : TRACKS.values()) {
+            if (stalest == null || candidate.lastTick < stalest.lastTick) {
+                stalest = candidate;
+            }
+        }
+        if (stalest == null || stalest.lastTick >= tick - PlayerGPSConfig.historySampleInterval) {
+            return null;
+        }
+        return stalest;
+    }
+
+    private static int dimensionId(ResourceKey<Level> dimension) {
+        int id = DIMENSION_IDS.getInt(dimension);
+        if (id < 0) {
+            id = DIMENSIONS.size();
+            DIMENSIONS.add(dimension);
+            DIMENSION_IDS.put(dimension, id);
+        }
+        return id;
+    }
+
+    /**
+     * Visits the samples of a player taken at or after sinceTick, newest first.
+     * Returns false if nothing has been recorded for the player.
+     */
+    public static boolean forEachSample(UUID uuid, int sinceTick, SampleVisitor visitor) {
+        Track track = TRACKS.get(uuid);
+        if (track == null || track.count == 0) {
+            return false;
+        }
+        int capacity = track.capacity();
+        for (int i = 1; i <= track.count; i++) {
+            int at = Math.floorMod(track.head - i, capacity) * STRIDE;
+            int tick = track.data[at + 2];
+            if (tick < sinceTick) {
+                break;
+            }
+            int packed = track.data[at + 3];
+            if (!visitor.visit(tick, DIMENSIONS.get(packed & 0xFFFF), track.data[at], packed >> 16, track.data[at + 1])) {
+                break;
+            }
+        }
+        return true;
+    }
+
+    /** Number of samples held for a player taken at or after sinceTick. */
+    public static int sampleCount(UUID uuid, int sinceTick) {
+        int[] count = new int[1];
+        forEachSample(uuid, sinceTick, (tick, dimension, x, y, z) -> {
+            count[0]++;
+            return true;
+        });
+        return count[0];
+    }
+
+    /**
+     * Up to maxPoints of a player's samples since sinceTick, newest first and evenly spread over the window,
+     * one per line. Null if nothing was recorded in the window.
+     */
+    @Nullable
+    public static MutableComponent trail(UUID uuid, int sinceTick, int nowTick, int maxPoints) {
+        int count = sampleCount(uuid, sinceTick);
+        if (count == 0 || maxPoints <= 0) {
+            return null;
+        }
+        int step = (count + maxPoints - 1) / maxPoints;
+        MutableComponent lines = Component.empty();
+        int[] index = new int[1];
+        forEachSample(uuid, sinceTick, (tick, dimension, x, y, z) -> {
+            if (index[0]++ % step == 0) {
+                if (index[0] > 1) {
+                    lines.append(CommonComponents.NEW_LINE);
+                }
+                lines.append(Component.translatable("message.playergps.history.entry", (nowTick - tick) / 20,
+                        PlayerPositionSnapshot.dimensionName(dimension), x, y, z).withStyle(ChatFormatting.GRAY));
+            }
+            return true;
+        });
+        return lines;
+    }
+
+    /** The UUID of a tracked player by name (case-insensitive), including offline players. */
+    @Nullable
+    public static UUID find(String name) {
+        for (Track track : TRACKS.values()) {
+            if (track.name.equalsIgnoreCase(name)) {
+                return track.owner;
+            }
+        }
+        return null;
+    }
+
+    public static List<String> names() {
+        List<String> names = new ArrayList<>(TRACKS.size());
+        for (Track track : TRACKS.values()) {
+            names.add(track.name);
+        }
+        return names;
+    }
+
+    public static List<String> statsLines() {
+        return List.of(String.format("history: players=%d samples=%d evictions=%d memory=%.1f/%dKiB",
+                TRACKS.size(), samples, evictions, allocatedBytes / 1024.0, PlayerGPSConfig.historyMemoryMB * 1024));
+    }
+
+    @SubscribeEvent
+    public static void onServerStopped(ServerStoppedEvent event) {
+        TRACKS.clear();
+        DIMENSIONS.clear();
+        DIMENSION_IDS.clear();
+        samples = 0;
+        evictions = 0;
+        allocatedBytes = 0;
+    }
+}
@@ -0,0 +1,385 @@
+package com.minecraft.randomspawn;
+
+import com.mojang.authlib.GameProfile;
+import com.mojang.logging.LogUtils;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.ChannelOutboundHandlerAdapter;
+import io.netty.channel.ChannelPromise;
+import io.netty.channel.embedded.EmbeddedChannel;
+import io.netty.util.ReferenceCountUtil;
+import net.minecraft.core.BlockPos;
+import net.minecraft.gametest.framework.GameTest;
+import net.minecraft.gametest.framework.GameTestHelper;
+import net.minecraft.network.Connection;
+import net.minecraft.network.ConnectionProtocol;
+import net.minecraft.network.protocol.PacketFlow;
+import net.minecraft.server.MinecraftServer;
+import net.minecraft.server.level.ServerLevel;
+import net.minecraft.server.level.ServerPlayer;
+import net.minecraft.util.RandomSource;
+import net.minecraftforge.common.MinecraftForge;
+import net.minecraftforge.event.level.ChunkEvent;
+import net.minecraftforge.gametest.GameTestHolder;
+import net.minecraftforge.gametest.PrefixGameTestTemplate;
+import org.slf4j.Logger;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+import java.util.UUID;
+import java.util.function.Consumer;
+
+/**
+ * 初回参加が集中したときの負荷試験 (GameTest、{@code ./gradlew runGameTestServer} で実行)。
+ * 偽の接続を持つプレイヤー N 人を {@code PlayerList#placeNewPlayer} から数ティックに分けて参加させ、
+ * 初回参加 → リスポーン → 退出 → 再参加 (既存プレイヤー) の順に流す。
+ * 試験中の全ティックの平均 MSPT と最悪値、新規に生成されたチャンク数、JSON バックアップへの書き込み数を集計し、
+ * いずれかが上限 (システムプロパティ randomspawn.loadtest.*) を超えたら失敗する。
+ * 送信パケットは捨てるため通信は発生しない。
+ * <p>
+ * {@link #searchScaling} は合否を付けない計測で、並列評価の候補数 K ごとに探索の実時間を測り、
+ * CPU コア数とワールド生成のワーカー数を添えて {@value #SCALING_FILE} に 1 行ずつ追記する。
+ * {@code -XX:ActiveProcessorCount=N} を変えて繰り返し実行すると、コア数に対する伸び方が 1 つの表にまとまる。
+ */
+@GameTestHolder("randomspawn")
+@PrefixGameTestTemplate(false)
+public final class RandomSpawnLoadTest {
+    private static final Logger LOGGER = LogUtils.getLogger();
+    private static final String PROPERTY_PREFIX = "randomspawn.loadtest.";
+    private static final String SCALING_PREFIX = "randomspawn.scaling.";
+    private static final String SCALING_FILE = "randomspawn_search_scaling.csv";
+
+    private RandomSpawnLoadTest() {}
+
+    @GameTest(template = "empty", timeoutTicks = 20 * 60 * 5)
+    public static void loginStorm(GameTestHelper helper) {
+        LoginStorm storm = new LoginStorm(helper, Budgets.fromSystemProperties());
+        helper.onEachTick(storm::tick);
+    }
+
+    @GameTest(template = "empty", timeoutTicks = 20 * 60 * 10)
+    public static void searchScaling(GameTestHelper helper) {
+        SearchScaling scaling = new SearchScaling(helper,
+                Math.max(1, Integer.getInteger(SCALING_PREFIX + "searches", 16)),
+                parseBatches(System.getProperty(SCALING_PREFIX + "batches", "1,2,4,8,16")));
+        helper.onEachTick(scaling::tick);
+    }
+
+    private static int[] parseBatches(String value) {
+        return Arrays.stream(value.split(","))
+                .map(String::trim)
+                .filter(s -> !s.isEmpty())
+                .mapToInt(Integer::parseInt)
+                .filter(k -> k >= 1)
+                .toArray();
+    }
+
+    /**
+     * 1 ティックに 1 回、K を固定した同期探索を行う。生成済みのチャンクが後の K ほど有利にならないよう、
+     * K は 1 回ごとに順番に切り替える。
+     */
+    private static final class SearchScaling {
+        private final GameTestHelper helper;
+        private final ServerLevel level;
+        private final int[] batches;
+        private final long[][] nanos;
+        private final int[] found;
+        private final RandomSource random = RandomSource.create();
+        private int round;
+        private int index;
+        private boolean done;
+
+        SearchScaling(GameTestHelper helper, int searches, int[] batches) {
+            this.helper = helper;
+            this.level = helper.getLevel();
+            this.batches = batches.length > 0 ? batches : new int[]{1};
+            this.nanos = new long[this.batches.length][searches];
+            this.found = new int[this.batches.length];
+        }
+
+        void tick() {
+            if (done) {
+                return;
+            }
+            SpawnSettings settings = SpawnSettings.get();
+            long start = System.nanoTime();
+            BlockPos pos = RandomSpawnHandler.findSafeSpawn(level, random, null, settings.maxTries(), settings, batches[index]);
+            nanos[index][round] = System.nanoTime() - start;
+            if (pos != null) {
+                found[index]++;
+            }
+            if (++index == batches.length) {
+                index = 0;
+                if (++round == nanos[0].length) {
+                    done = true;
+                    finish();
+                }
+            }
+        }
+
+        private void finish() {
+            int cores = Runtime.getRuntime().availableProcessors();
+            int workers = SpawnBatchSize.workerThreads();
+            List<String> rows = new ArrayList<>();
+            for (int i = 0; i < batches.length; i++) {
+                long[] samples = nanos[i].clone();
+                Arrays.sort(samples);
+                double mean = Arrays.stream(samples).average().orElse(0.0) / 1_000_000.0;
+                double p50 = samples[samples.length / 2] / 1_000_000.0;
+                double p90 = samples[Math.min(samples.length - 1, samples.length * 9 / 10)] / 1_000_000.0;
+                double max = samples[samples.length - 1] / 1_000_000.0;
+                rows.add(String.format(Locale.ROOT, "%d,%d,%d,%d,%d,%.2f,%.2f,%.2f,%.2f",
+                        cores, workers, batches[i], samples.length, found[i], mean, p50, p90, max));
+                LOGGER.info("[RandomSpawn] search scaling: cores={} workers={} k={} searches={} found={} mean={}ms p50={}ms p90={}ms max={}ms",
+                        cores, workers, batches[i], samples.length, found[i],
+                        String.format(Locale.ROOT, "%.2f", mean), String.format(Locale.ROOT, "%.2f", p50),
+                        String.format(Locale.ROOT, "%.2f", p90), String.format(Locale.ROOT, "%.2f", max));
+            }
+            Path file = level.getServer().getServerDirectory().toPath().resolve(SCALING_FILE);
+            try {
+                if (!Files.exists(file)) {
+                    Files.writeString(file, "cores,workers,k,searches,found,meanMs,p50Ms,p90Ms,maxMs\n", StandardCharsets.UTF_8);
+                }
+                Files.write(file, rows, StandardCharsets.UTF_8, StandardOpenOption.APPEND);
+            } catch (IOException e) {
+                LOGGER.error("[RandomSpawn] Failed to write {}", file, e);
+            }
+            helper.succeed();
+        }
+    }
+
+    /**
+     * @param players        参加させる人数
+     * @param perTick        1 ティックに参加/リスポーン/退出させる人数
+     * @param maxAvgMspt     平均ティック時間の上限 (ms)
+     * @param maxTickMs      最も重かった 1 ティックの上限 (ms)
+     * @param maxChunkGenerations 新規生成チャンク数の上限
+     * @param maxJsonWrites  JSON バックアップへの書き込み (ジャーナル追記 + 本体の書き直し) の上限
+     */
+    private record Budgets(int players, int perTick, double maxAvgMspt, double maxTickMs,
+                           int maxChunkGenerations, int maxJsonWrites) {
+        static Budgets fromSystemProperties() {
+            int players = Math.max(1, Integer.getInteger(PROPERTY_PREFIX + "players", 64));
+            return new Budgets(
+                    players,
+                    Math.max(1, Integer.getInteger(PROPERTY_PREFIX + "perTick", 8)),
+                    Double.parseDouble(System.getProperty(PROPERTY_PREFIX + "maxAvgMspt", "50")),
+                    Double.parseDouble(System.getProperty(PROPERTY_PREFIX + "maxTickMs", "1000")),
+                    Integer.getInteger(PROPERTY_PREFIX + "maxChunkGenerations", players * 500),
+                    // 初回参加で 1 人 1 件。リスポーンと再参加では書かない
+                    Integer.getInteger(PROPERTY_PREFIX + "maxJsonWrites", players + players / 512 + 1));
+        }
+    }
+
+    private enum Phase { FIRST_JOIN, RESPAWN, LOGOUT, RETURNING, FINISH, DONE }
+
+    private static final class LoginStorm {
+        /** 段階の間に空けるティック数 (参加後の視界チャンクの生成もこの間に計測される) */
+        private static final int SETTLE_TICKS = 40;
+
+        private final GameTestHelper helper;
+        private final MinecraftServer server;
+        private final ServerLevel level;
+        private final Budgets budgets;
+        private final GameProfile[] profiles;
+        private final ServerPlayer[] players;
+        /** 初回参加で割り当てられたスポーン ({@link BlockPos#asLong})。未割り当ては Long.MIN_VALUE */
+        private final long[] assigned;
+        private final Consumer<ChunkEvent.Load> chunkListener = this::onChunkLoad;
+        private final long appendsBefore = SpawnMetrics.BACKUP_APPENDS.sum();
+        private final long compactionsBefore = SpawnMetrics.BACKUP_COMPACTIONS.sum();
+        private final long searchLoadsBefore = SpawnMetrics.CHUNK_LOADS.sum();
+        private final long teleportsBefore = SpawnMetrics.TELEPORTS.sum();
+        /** 初回参加の後の保存データ変更数。以降の段階で増えてはいけない */
+        private long storageChangesAfterJoin;
+        private Phase phase = Phase.FIRST_JOIN;
+        private int cursor;
+        private int settle;
+        private boolean started;
+        private int chunkGenerations;
+        private int ticks;
+        private long tickNanos;
+        private long worstTickNanos;
+
+        LoginStorm(GameTestHelper helper, Budgets budgets) {
+            this.helper = helper;
+            this.level = helper.getLevel();
+            this.server = level.getServer();
+            this.budgets = budgets;
+            this.profiles = new GameProfile[budgets.players()];
+            this.players = new ServerPlayer[budgets.players()];
+            this.assigned = new long[budgets.players()];
+            for (int i = 0; i < profiles.length; i++) {
+                profiles[i] = new GameProfile(UUID.randomUUID(), "loadtest" + i);
+            }
+        }
+
+        void tick() {
+            if (started) {
+                recordPreviousTick();
+            } else {
+                started = true;
+                MinecraftForge.EVENT_BUS.addListener(chunkListener);
+            }
+            if (settle > 0) {
+                settle--;
+                return;
+            }
+            switch (phase) {
+                case FIRST_JOIN -> {
+                    for (int n = 0; n < budgets.perTick() && cursor < players.length; n++, cursor++) {
+                        players[cursor] = connect(profiles[cursor]);
+                    }
+                    if (cursor == players.length) {
+                        recordAssignedSpawns();
+                        next(Phase.RESPAWN);
+                    }
+                }
+                case RESPAWN -> {
+                    for (int n = 0; n < budgets.perTick() && cursor < players.length; n++, cursor++) {
+                        players[cursor] = server.getPlayerList().respawn(players[cursor], false);
+                    }
+                    if (cursor == players.length) {
+                        next(Phase.LOGOUT);
+                    }
+                }
+                case LOGOUT -> {
+                    for (int n = 0; n < budgets.perTick() && cursor < players.length; n++, cursor++) {
+                        server.getPlayerList().remove(players[cursor]);
+                        players[cursor] = null;
+                    }
+                    if (cursor == players.length) {
+                        next(Phase.RETURNING);
+                    }
+                }
+                case RETURNING -> {
+                    for (int n = 0; n < budgets.perTick() && cursor < players.length; n++, cursor++) {
+                        players[cursor] = connect(profiles[cursor]);
+                    }
+                    if (cursor == players.length) {
+                        next(Phase.FINISH);
+                    }
+                }
+                case FINISH -> finish();
+                case DONE -> {
+                }
+            }
+        }
+
+        private void next(Phase phase) {
+            this.phase = phase;
+            this.cursor = 0;
+            this.settle = SETTLE_TICKS;
+        }
+
+        /** 実行中のティックの 1 つ前のティックの所要時間を記録する */
+        private void recordPreviousTick() {
+            long nanos = server.tickTimes[Math.floorMod(server.getTickCount() - 1, server.tickTimes.length)];
+            ticks++;
+            tickNanos += nanos;
+            worstTickNanos = Math.max(worstTickNanos, nanos);
+        }
+
+        private void onChunkLoad(ChunkEvent.Load event) {
+            if (event.getLevel() == level && event.isNewChunk()) {
+                chunkGenerations++;
+            }
+        }
+
+        private void recordAssignedSpawns() {
+            RandomSpawnStorage storage = RandomSpawnStorage.get(level);
+            for (int i = 0; i < profiles.length; i++) {
+                RandomSpawnStorage.BlockPosData pos = storage.getSpawn(profiles[i].getId());
+                assigned[i] = pos != null ? BlockPos.asLong(pos.x, pos.y, pos.z) : Long.MIN_VALUE;
+            }
+            storageChangesAfterJoin = SpawnMetrics.STORAGE_CHANGES.sum();
+        }
+
+        /**
+         * 接続先のないプレイヤーを参加させる。送信パケットはチャンネルの出口で捨てる。
+         */
+        private ServerPlayer connect(GameProfile profile) {
+            ServerPlayer player = new ServerPlayer(server, level, profile);
+            Connection connection = new Connection(PacketFlow.SERVERBOUND);
+            EmbeddedChannel channel = new EmbeddedChannel(connection);
+            channel.attr(Connection.ATTRIBUTE_PROTOCOL).set(ConnectionProtocol.PLAY);
+            channel.pipeline().addFirst(new ChannelOutboundHandlerAdapter() {
+                @Override
+                public void write(ChannelHandlerContext ctx, Object msg, ChannelPromise promise) {
+                    ReferenceCountUtil.release(msg);
+                    promise.setSuccess();
+                }
+            });
+            server.getPlayerList().placeNewPlayer(connection, player);
+            return player;
+        }
+
+        private void finish() {
+            phase = Phase.DONE;
+            MinecraftForge.EVENT_BUS.unregister(chunkListener);
+            for (int i = 0; i < players.length; i++) {
+                if (players[i] != null) {
+                    server.getPlayerList().remove(players[i]);
+                    players[i] = null;
+                }
+            }
+            RandomSpawnJsonBackup.awaitPendingWrites();
+
+            RandomSpawnStorage storage = RandomSpawnStorage.get(level);
+            int missing = 0;
+            int moved = 0;
+            for (int i = 0; i < profiles.length; i++) {
+                RandomSpawnStorage.BlockPosData pos = storage.getSpawn(profiles[i].getId());
+                if (assigned[i] == Long.MIN_VALUE) {
+                    missing++;
+                } else if (pos == null || BlockPos.asLong(pos.x, pos.y, pos.z) != assigned[i]) {
+                    moved++;
+                }
+            }
+            long jsonWrites = SpawnMetrics.BACKUP_APPENDS.sum() - appendsBefore
+                    + SpawnMetrics.BACKUP_COMPACTIONS.sum() - compactionsBefore;
+            long laterStorageChanges = SpawnMetrics.STORAGE_CHANGES.sum() - storageChangesAfterJoin;
+            double avgMspt = ticks > 0 ? tickNanos / (double) ticks / 1_000_000.0 : 0.0;
+            double worstMs = worstTickNanos / 1_000_000.0;
+
+            String summary = String.format(
+                    "players=%d perTick=%d ticks=%d avgMspt=%.2f worstTick=%.2fms chunkGenerations=%d searchChunkLoads=%d jsonWrites=%d teleports=%d missingSpawns=%d movedSpawns=%d laterStorageChanges=%d",
+                    budgets.players(), budgets.perTick(), ticks, avgMspt, worstMs, chunkGenerations,
+                    SpawnMetrics.CHUNK_LOADS.sum() - searchLoadsBefore, jsonWrites,
+                    SpawnMetrics.TELEPORTS.sum() - teleportsBefore, missing, moved, laterStorageChanges);
+            LOGGER.info("[RandomSpawn] login storm: {}", summary);
+
+            List<String> failures = new ArrayList<>();
+            if (avgMspt > budgets.maxAvgMspt()) {
+                failures.add(String.format("avg MSPT %.2f > %.2f", avgMspt, budgets.maxAvgMspt()));
+            }
+            if (worstMs > budgets.maxTickMs()) {
+                failures.add(String.format("worst tick %.2fms > %.2fms", worstMs, budgets.maxTickMs()));
+            }
+            if (chunkGenerations > budgets.maxChunkGenerations()) {
+                failures.add("chunk generations " + chunkGenerations + " > " + budgets.maxChunkGenerations());
+            }
+            if (jsonWrites > budgets.maxJsonWrites()) {
+                failures.add("JSON writes " + jsonWrites + " > " + budgets.maxJsonWrites());
+            }
+            if (missing > 0) {
+                failures.add(missing + " players got no spawn on first join");
+            }
+            // 既存プレイヤーの再参加とリスポーンでは、割り当て済みのスポーンを変えず保存もしない
+            if (moved > 0 || laterStorageChanges > 0) {
+                failures.add(moved + " spawns moved and " + laterStorageChanges + " storage writes after first join");
+            }
+            if (failures.isEmpty()) {
+                helper.succeed();
+            } else {
+                helper.fail(String.join("; ", failures) + " (" + summary + ")");
+            }
+        }
+    }
+}
@@ -0,0 +1,137 @@
+package com.minecraft.randomspawn;
+
+import com.google.gson.Gson;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Random;
+import java.util.UUID;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+/**
+ * JSON バックアップを 1k/10k/100k 件で測る。一時ディレクトリに本体を作ってから開く。
+ * <ul>
+ *     <li>save: 1 件の登録と、そのジャーナル追記が書き込みスレッドで終わるまで
+ *     (512 件ごとのまとめ直しもここに入るため、p99 に本体の書き直しが現れる)</li>
+ *     <li>loadByUuid / loadByName: 参加時の参照</li>
+ *     <li>openAndClose: 起動時の読み込みと停止時の書き直し</li>
+ * </ul>
+ */
+@State(Scope.Thread)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class SpawnJsonBackupBenchmark {
+    private static final int LOOKUPS = 4096;
+    private static final String DIMENSION = "minecraft:overworld";
+
+    @Param({"1000", "10000", "100000"})
+    public int entries;
+
+    private Path dir;
+    private Path primary;
+    /** openAndClose 用の複製。監視中の本体を書き換えないよう別ディレクトリに置く */
+    private Path copy;
+    private RandomSpawnJsonBackup.Store store;
+    private final UUID[] uuids = new UUID[LOOKUPS];
+    private final String[] names = new String[LOOKUPS];
+    private int cursor;
+    private int writes;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        dir = Files.createTempDirectory("randomspawn-jmh");
+        primary = dir.resolve("randomspawn_spawns.json");
+        Random random = new Random(entries);
+        Map<String, RandomSpawnJsonBackup.SpawnEntry> data = new LinkedHashMap<>();
+        for (int i = 0; i < entries; i++) {
+            UUID uuid = new UUID(random.nextLong(), random.nextLong());
+            String name = "Player" + i;
+            data.put(uuid.toString(), new RandomSpawnJsonBackup.SpawnEntry(
+                    random.nextInt(8001) - 4000, 60 + random.nextInt(40), random.nextInt(8001) - 4000, DIMENSION, name));
+            if (i < LOOKUPS) {
+                uuids[i] = uuid;
+                names[i] = name.toLowerCase(Locale.ROOT);
+            }
+        }
+        for (int i = entries; i < LOOKUPS; i++) {
+            uuids[i] = uuids[i % entries];
+            names[i] = names[i % entries];
+        }
+        try (Writer writer = Files.newBufferedWriter(primary, StandardCharsets.UTF_8)) {
+            new Gson().toJson(data, writer);
+        }
+        copy = Files.createDirectories(dir.resolve("copy")).resolve(primary.getFileName());
+        Files.copy(primary, copy);
+        store = RandomSpawnJsonBackup.Store.open(null, primary);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        store.close();
+        try (Stream<Path> files = Files.walk(dir)) {
+            for (Path file : (Iterable<Path>) files.sorted(Comparator.reverseOrder())::iterator) {
+                Files.deleteIfExists(file);
+            }
+        }
+    }
+
+    private int next() {
+        cursor = (cursor + 1) & (LOOKUPS - 1);
+        return cursor;
+    }
+
+    @Benchmark
+    public void save() throws InterruptedException, ExecutionException {
+        int i = next();
+        writes++;
+        store.put(uuids[i], new RandomSpawnJsonBackup.SpawnEntry(writes % 8001 - 4000, 64, i, DIMENSION, names[i]));
+        store.awaitWrites();
+    }
+
+    @Benchmark
+    public RandomSpawnJsonBackup.SpawnEntry loadByUuid() {
+        int i = next();
+        return store.lookup(uuids[i], null);
+    }
+
+    /** 大文字小文字が異なる名前での参照 (UUID 索引には載っていない UUID で引く) */
+    @Benchmark
+    public RandomSpawnJsonBackup.SpawnEntry loadByName() {
+        int i = next();
+        return store.lookup(new UUID(i, i), names[i]);
+    }
+
+    @Benchmark
+    @OutputTimeUnit(TimeUnit.MILLISECONDS)
+    public int openAndClose() throws IOException {
+        RandomSpawnJsonBackup.Store opened = RandomSpawnJsonBackup.Store.open(null, copy);
+        int size = opened.data.size();
+        opened.close();
+        return size;
+    }
+}
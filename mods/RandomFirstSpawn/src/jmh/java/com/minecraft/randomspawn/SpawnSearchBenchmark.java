@@ -0,0 +1,301 @@
+package com.minecraft.randomspawn;
+
+import net.minecraft.core.BlockPos;
+import net.minecraft.server.level.ServerPlayer;
+import net.minecraft.util.RandomSource;
+import org.jetbrains.annotations.Nullable;
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 候補探索のうちワールドに依存しない部分 (地形インデックス、平坦判定、距離判定、Poisson-disk 抽選) を合成地形で測る。
+ * バイオーム・流体・ブロック形状の判定は実ワールドが必要なため対象外。
+ *
+ * <p>findSafeSpawn は本番と同じ {@link RandomSpawnHandler#drawCandidate} と {@link RandomSpawnHandler#evaluate} を
+ * 合成地形の {@link SpawnSearchWorld} に対して呼び、候補 1 件を返すまでを 1 操作とする (並列評価なしの {@link RandomSpawnHandler#findSafeSpawn} に相当)。
+ * 条件は {@link SpawnConstraints#searchChecks} (平坦さと距離) を本番と同じ {@link SpawnPipeline} で評価する。
+ * 抽選方式と割り当て済みスポーン数 (100/1k/10k) ごとに測り、引いた候補数と見つかった回数を
+ * 補助カウンタ tries / successes として出す (tries ÷ successes が 1 件あたりの試行回数)。
+ * isFarFromOthers は割り当て済みスポーンが 1k/10k/100k 件ある保存データに対して測る。
+ */
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class SpawnSearchBenchmark {
+    private static final int RANGE = 1024;
+    private static final int MIN_DISTANCE = 128;
+    private static final int HEIGHT_LIMIT = 4;
+    private static final int MAX_TRIES = 20;
+    private static final int ONLINE_PLAYERS = 50;
+    private static final int POINTS = 4096;
+    private static final long SEED = 20240601L;
+
+    /** 合成地形と、判定に使う候補座標の列 */
+    @State(Scope.Thread)
+    public static class Terrain {
+        SyntheticTerrain indexed;
+        /** 同じ高さマップで地形インデックスが空のもの (常に 7x7 の高さを読む経路) */
+        SyntheticTerrain unindexed;
+        final int[] xs = new int[POINTS];
+        final int[] ys = new int[POINTS];
+        final int[] zs = new int[POINTS];
+        int cursor;
+
+        @Setup(Level.Trial)
+        public void setUp() {
+            indexed = new SyntheticTerrain(RANGE, SEED, true);
+            unindexed = new SyntheticTerrain(RANGE, SEED, false);
+            RandomSource random = RandomSource.create(SEED);
+            for (int i = 0; i < POINTS; i++) {
+                xs[i] = random.nextInt(RANGE * 2 + 1) - RANGE;
+                zs[i] = random.nextInt(RANGE * 2 + 1) - RANGE;
+                ys[i] = indexed.height(xs[i], zs[i]);
+            }
+        }
+
+        int next() {
+            cursor = (cursor + 1) & (POINTS - 1);
+            return cursor;
+        }
+    }
+
+    /**
+     * 探索 1 回分の状態。割り当て済みスポーンは実際の探索で埋めておく。
+     * 範囲に収まらなくなって探索が失敗するようになったら、残りは距離を無視して一様に置く (埋まりきったマップを測るため)
+     */
+    @State(Scope.Thread)
+    public static class Search {
+        @Param({"UNIFORM", "POISSON"})
+        public Config.SamplingMode samplingMode;
+
+        @Param({"100", "1000", "10000"})
+        public int assigned;
+
+        SyntheticWorld world;
+        SpawnPipeline<SyntheticWorld> pipeline;
+        SpawnSettings settings;
+        SpawnSampler sampler;
+        RandomSource random;
+        int[] assignedXs;
+        int[] assignedZs;
+        /** 直前の {@link #search} で引いた候補数 */
+        int lastTries;
+
+        @Setup(Level.Trial)
+        public void setUp(Terrain terrain) {
+            world = new SyntheticWorld(terrain.indexed, new SpawnSpatialIndex(MIN_DISTANCE), new RandomSpawnStorage());
+            pipeline = new SpawnPipeline<>(SpawnConstraints.<SyntheticWorld>searchChecks());
+            settings = new SpawnSettings(RANGE, MIN_DISTANCE, MAX_TRIES, HEIGHT_LIMIT, false, 0, 0, false, false,
+                    samplingMode, 0, 0, 0, 0, false, 0, 1);
+            random = RandomSource.create(SEED);
+            assignedXs = new int[assigned];
+            assignedZs = new int[assigned];
+            boolean full = false;
+            for (int i = 0; i < assigned; i++) {
+                long found = full ? Long.MIN_VALUE : search(this);
+                int x;
+                int z;
+                if (found != Long.MIN_VALUE) {
+                    x = BlockPos.getX(found);
+                    z = BlockPos.getZ(found);
+                } else {
+                    full = true;
+                    x = random.nextInt(RANGE * 2 + 1) - RANGE;
+                    z = random.nextInt(RANGE * 2 + 1) - RANGE;
+                }
+                world.storage.setSpawn(new UUID(SEED, i), x, terrain.indexed.height(x, z), z);
+                assignedXs[i] = x;
+                assignedZs[i] = z;
+            }
+            for (int i = 0; i < ONLINE_PLAYERS; i++) {
+                int x = random.nextInt(RANGE * 2 + 1) - RANGE;
+                int z = random.nextInt(RANGE * 2 + 1) - RANGE;
+                world.live.add(x, terrain.indexed.height(x, z), z);
+            }
+        }
+
+        /** 弾いた点の状態が積み重ならないよう、計測の繰り返しごとに点集合を作り直す */
+        @Setup(Level.Iteration)
+        public void resetSampler() {
+            if (samplingMode != Config.SamplingMode.POISSON) {
+                sampler = null;
+                return;
+            }
+            sampler = new SpawnSampler(0, 0, RANGE, MIN_DISTANCE, SEED);
+            // 保存データの点集合と同じく、割り当て済みスポーンを占有済みにする
+            for (int i = 0; i < assigned; i++) {
+                sampler.occupy(assignedXs[i], assignedZs[i]);
+            }
+        }
+    }
+
+    /** 割り当て済みスポーンを entries 件持つ保存データ。最低距離の 2 倍の格子に散らして置く */
+    @State(Scope.Thread)
+    public static class Assigned {
+        @Param({"1000", "10000", "100000"})
+        public int entries;
+
+        RandomSpawnStorage storage;
+        SpawnSpatialIndex live;
+        final int[] xs = new int[POINTS];
+        final int[] zs = new int[POINTS];
+        int cursor;
+
+        @Setup(Level.Trial)
+        public void setUp() {
+            RandomSource random = RandomSource.create(SEED);
+            int spacing = MIN_DISTANCE * 2;
+            int perRow = (int) Math.ceil(Math.sqrt(entries));
+            int half = perRow * spacing / 2;
+            storage = new RandomSpawnStorage();
+            for (int i = 0; i < entries; i++) {
+                int x = (i % perRow) * spacing - half + random.nextInt(spacing / 2);
+                int z = (i / perRow) * spacing - half + random.nextInt(spacing / 2);
+                storage.setSpawn(new UUID(random.nextLong(), random.nextLong()), x, 64, z);
+            }
+            live = new SpawnSpatialIndex(MIN_DISTANCE);
+            for (int i = 0; i < ONLINE_PLAYERS; i++) {
+                live.add(random.nextInt(half * 2 + 1) - half, 64, random.nextInt(half * 2 + 1) - half);
+            }
+            for (int i = 0; i < POINTS; i++) {
+                xs[i] = random.nextInt(half * 2 + 1) - half;
+                zs[i] = random.nextInt(half * 2 + 1) - half;
+            }
+        }
+
+        int next() {
+            cursor = (cursor + 1) & (POINTS - 1);
+            return cursor;
+        }
+    }
+
+    /** 合成地形と保存データで探索が読むワールドを実装する。ワールドボーダーとバイオームの足切りはない */
+    static final class SyntheticWorld implements SpawnSearchWorld {
+        final SyntheticTerrain terrain;
+        final SpawnSpatialIndex live;
+        final RandomSpawnStorage storage;
+
+        SyntheticWorld(SyntheticTerrain terrain, SpawnSpatialIndex live, RandomSpawnStorage storage) {
+            this.terrain = terrain;
+            this.live = live;
+            this.storage = storage;
+        }
+
+        @Override
+        public SpawnTerrainIndex terrain() {
+            return terrain.index();
+        }
+
+        @Override
+        public int height(int x, int z) {
+            return terrain.height(x, z);
+        }
+
+        @Override
+        public void countTry() {
+        }
+
+        @Override
+        public boolean passesPreFilter(int x, int z, SpawnSettings settings) {
+            return true;
+        }
+
+        @Override
+        public SpawnSpatialIndex livePlayers() {
+            return live;
+        }
+
+        @Override
+        public int liveId(@Nullable ServerPlayer player) {
+            return -1;
+        }
+
+        @Override
+        public RandomSpawnStorage storage() {
+            return storage;
+        }
+    }
+
+    /** findSafeSpawn の補助カウンタ。計測の繰り返しごとの合計として出る */
+    @State(Scope.Thread)
+    @AuxCounters(AuxCounters.Type.EVENTS)
+    public static class Tries {
+        public long tries;
+        public long successes;
+
+        @Setup(Level.Iteration)
+        public void reset() {
+            tries = 0;
+            successes = 0;
+        }
+    }
+
+    @Benchmark
+    public long findSafeSpawn(Search search, Tries tries) {
+        long found = search(search);
+        tries.tries += search.lastTries;
+        if (found != Long.MIN_VALUE) {
+            tries.successes++;
+        }
+        return found;
+    }
+
+    @Benchmark
+    public boolean isFlatEnoughIndexed(Terrain terrain) {
+        int i = terrain.next();
+        return RandomSpawnHandler.isFlatEnough(terrain.indexed.index(), terrain.indexed,
+                terrain.xs[i], terrain.ys[i], terrain.zs[i], HEIGHT_LIMIT);
+    }
+
+    @Benchmark
+    public boolean isFlatEnoughHeights(Terrain terrain) {
+        int i = terrain.next();
+        return RandomSpawnHandler.isFlatEnough(terrain.unindexed.index(), terrain.unindexed,
+                terrain.xs[i], terrain.ys[i], terrain.zs[i], HEIGHT_LIMIT);
+    }
+
+    @Benchmark
+    public boolean isFarFromOthers(Assigned assigned) {
+        int i = assigned.next();
+        return RandomSpawnHandler.isFarFromOthers(assigned.live, -1, assigned.storage, null,
+                assigned.xs[i], 64, assigned.zs[i], MIN_DISTANCE);
+    }
+
+    /** 見つかれば {@link BlockPos#asLong} 形式の座標、なければ Long.MIN_VALUE */
+    private static long search(Search search) {
+        SpawnSampler sampler = search.sampler;
+        if (sampler != null) {
+            sampler.beginSearch();
+        }
+        search.lastTries = 0;
+        for (int i = 0; i < MAX_TRIES; i++) {
+            search.lastTries++;
+            RandomSpawnHandler.Candidate candidate = RandomSpawnHandler.drawCandidate(search.world, search.random, sampler,
+                    BlockPos.ZERO, search.settings, false);
+            if (candidate == null) {
+                continue;
+            }
+            BlockPos pos = RandomSpawnHandler.evaluate(search.world, search.pipeline, candidate, null, sampler, search.settings);
+            if (pos != null) {
+                return pos.asLong();
+            }
+        }
+        return Long.MIN_VALUE;
+    }
+}
@@ -0,0 +1,98 @@
+package com.minecraft.randomspawn;
+
+import net.minecraft.nbt.CompoundTag;
+import net.minecraft.nbt.NbtIo;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.Random;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 保存データ (randomspawn_storage.dat) を 1k/10k/100k 件で測る。
+ * save/load は SavedData と同じく NBT の組み立て + gzip 圧縮までを含む。
+ * getSpawn / setSpawn は参加・リスポーン 1 回あたりの参照と更新。
+ */
+@State(Scope.Thread)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class SpawnStorageBenchmark {
+    private static final int LOOKUPS = 4096;
+
+    @Param({"1000", "10000", "100000"})
+    public int entries;
+
+    private RandomSpawnStorage storage;
+    private byte[] saved;
+    private final ByteArrayOutputStream out = new ByteArrayOutputStream();
+    private final UUID[] known = new UUID[LOOKUPS];
+    private int cursor;
+    private int moves;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        Random random = new Random(entries);
+        storage = new RandomSpawnStorage();
+        for (int i = 0; i < entries; i++) {
+            UUID uuid = new UUID(random.nextLong(), random.nextLong());
+            storage.setSpawn(uuid, random.nextInt(8001) - 4000, 60 + random.nextInt(40), random.nextInt(8001) - 4000);
+            if (i < LOOKUPS) {
+                known[i] = uuid;
+            } else if (random.nextInt(i + 1) < LOOKUPS) {
+                known[random.nextInt(LOOKUPS)] = uuid;
+            }
+        }
+        for (int i = entries; i < LOOKUPS; i++) {
+            known[i] = known[i % entries];
+        }
+        saved = save();
+    }
+
+    @Benchmark
+    public byte[] save() throws IOException {
+        CompoundTag root = new CompoundTag();
+        root.put("data", storage.save(new CompoundTag()));
+        out.reset();
+        NbtIo.writeCompressed(root, out);
+        return out.toByteArray();
+    }
+
+    @Benchmark
+    public RandomSpawnStorage load() throws IOException {
+        CompoundTag root = NbtIo.readCompressed(new ByteArrayInputStream(saved));
+        return RandomSpawnStorage.load(root.getCompound("data"));
+    }
+
+    @Benchmark
+    @OutputTimeUnit(TimeUnit.MICROSECONDS)
+    public RandomSpawnStorage.BlockPosData getSpawn() {
+        cursor = (cursor + 1) & (LOOKUPS - 1);
+        return storage.getSpawn(known[cursor]);
+    }
+
+    /** 既存プレイヤーのスポーンを別の座標へ書き換える (空間インデックスの移動を含む) */
+    @Benchmark
+    @OutputTimeUnit(TimeUnit.MICROSECONDS)
+    public void setSpawn() {
+        cursor = (cursor + 1) & (LOOKUPS - 1);
+        moves++;
+        storage.setSpawn(known[cursor], (moves * 31) % 8001 - 4000, 64, (moves * 17) % 8001 - 4000);
+    }
+}
@@ -0,0 +1,85 @@
+package com.minecraft.randomspawn;
+
+/**
+ * ベンチマーク用の合成地形。2 オクターブの値ノイズで作った高さマップを配列に持ち、
+ * 指定があれば範囲内の全チャンクを地形インデックスへ登録する。
+ * 高さは {@link SpawnChunkLoader#height} と同じく足元の Y (地表の 1 つ上)。
+ */
+final class SyntheticTerrain implements SpawnTerrainIndex.HeightSource {
+    static final int MIN_Y = -64;
+    private static final int BASE_Y = 72;
+    /** 7x7 判定とチャンク境界のはみ出し分 */
+    private static final int PADDING = 24;
+
+    private final int origin;
+    private final int side;
+    private final int[] heights;
+    private final SpawnTerrainIndex index = new SpawnTerrainIndex(MIN_Y);
+
+    /**
+     * @param range   中心 (0, 0) からの範囲 (ブロック)
+     * @param indexed true なら全チャンクを地形インデックスに登録する。false なら常に高さを直接読む経路になる
+     */
+    SyntheticTerrain(int range, long seed, boolean indexed) {
+        this.origin = range + PADDING;
+        this.side = origin * 2 + 1;
+        this.heights = new int[side * side];
+        for (int z = 0; z < side; z++) {
+            for (int x = 0; x < side; x++) {
+                int wx = x - origin;
+                int wz = z - origin;
+                // 起伏の大きい丘 (32 ブロック格子) + 細かい凹凸 (8 ブロック格子)
+                double h = noise(seed, wx, wz, 32) * 20.0 + noise(seed + 1, wx, wz, 8) * 3.0;
+                heights[z * side + x] = BASE_Y + (int) Math.round(h);
+            }
+        }
+        if (indexed) {
+            int[] feet = new int[256];
+            for (int cz = Math.floorDiv(-range, 16); cz <= Math.floorDiv(range, 16); cz++) {
+                for (int cx = Math.floorDiv(-range, 16); cx <= Math.floorDiv(range, 16); cx++) {
+                    for (int column = 0; column < 256; column++) {
+                        feet[column] = height((cx << 4) + (column & 15), (cz << 4) + (column >> 4));
+                    }
+                    index.indexHeights(cx, cz, feet);
+                }
+            }
+        }
+    }
+
+    SpawnTerrainIndex index() {
+        return index;
+    }
+
+    @Override
+    public int height(int x, int z) {
+        int ix = Math.max(0, Math.min(side - 1, x + origin));
+        int iz = Math.max(0, Math.min(side - 1, z + origin));
+        return heights[iz * side + ix];
+    }
+
+    /** 格子点のハッシュを smoothstep で補間した [-1, 1] の値ノイズ */
+    private static double noise(long seed, int x, int z, int cell) {
+        int gx = Math.floorDiv(x, cell);
+        int gz = Math.floorDiv(z, cell);
+        double fx = smooth((x - gx * cell) / (double) cell);
+        double fz = smooth((z - gz * cell) / (double) cell);
+        double a = lattice(seed, gx, gz);
+        double b = lattice(seed, gx + 1, gz);
+        double c = lattice(seed, gx, gz + 1);
+        double d = lattice(seed, gx + 1, gz + 1);
+        double top = a + (b - a) * fx;
+        double bottom = c + (d - c) * fx;
+        return top + (bottom - top) * fz;
+    }
+
+    private static double smooth(double t) {
+        return t * t * (3.0 - 2.0 * t);
+    }
+
+    private static double lattice(long seed, int x, int z) {
+        long h = seed ^ (x * 0x9E3779B97F4A7C15L) ^ (z * 0xC2B2AE3D27D4EB4FL);
+        h = (h ^ (h >>> 31)) * 0xBF58476D1CE4E5B9L;
+        h ^= h >>> 29;
+        return (h >>> 11) * 0x1.0p-53 * 2.0 - 1.0;
+    }
+}
@@ -11,6 +11,26 @@ public static ForgeConfigSpec.IntValue MIN_DISTANCE;
 public static ForgeConfigSpec.IntValue MAX_TRIES;
 public static ForgeConfigSpec.IntValue HEIGHT_DIFF_LIMIT;
 public static ForgeConfigSpec.BooleanValue DEBUG_LOGS;
+public static ForgeConfigSpec.IntValue RESERVOIR_SIZE;
+public static ForgeConfigSpec.IntValue RESERVOIR_TRIES_PER_TICK;
+public static ForgeConfigSpec.BooleanValue BIOME_PRE_FILTER;
+public static ForgeConfigSpec.BooleanValue PARTIAL_CHUNK_LOADING;
+public static ForgeConfigSpec.EnumValue<SamplingMode> SAMPLING_MODE;
+public static ForgeConfigSpec.IntValue METRICS_DUMP_MINUTES;
+public static ForgeConfigSpec.IntValue WARM_SPAWN_LIMIT;
+public static ForgeConfigSpec.IntValue WARM_SPAWN_RADIUS;
+public static ForgeConfigSpec.IntValue REVALIDATE_PER_TICK;
+public static ForgeConfigSpec.BooleanValue ASYNC_FIRST_JOIN;
+public static ForgeConfigSpec.IntValue ASYNC_JOIN_TIMEOUT_SECONDS;
+public static ForgeConfigSpec.IntValue SEARCH_BATCH;
+
+/** 候補座標の抽選方法 */
+public enum SamplingMode {
+/** 範囲内から一様に抽選 (従来どおり) */
+UNIFORM,
+/** Poisson-disk 点集合から既存スポーンより最も遠い点を選ぶ */
+POISSON
+}
 
 static {
 ForgeConfigSpec.Builder builder = new ForgeConfigSpec.Builder();
@@ -37,6 +57,54 @@ DEBUG_LOGS = builder
 .comment("デバッグログを有効化 (探索候補や却下理由を出力)")
 .define("debugLogs", false);
 
+RESERVOIR_SIZE = builder
+.comment("事前に検証しておくスポーン地点の保持数 (0 で無効)")
+.defineInRange("reservoirSize", 16, 0, 256);
+
+RESERVOIR_TRIES_PER_TICK = builder
+.comment("補充でチャンクの読み込みを同時に依頼する候補数")
+.defineInRange("reservoirTriesPerTick", 1, 1, 20);
+
+BIOME_PRE_FILTER = builder
+.comment("チャンク読み込み前にバイオームソースで海/川を除外する")
+.define("biomePreFilter", true);
+
+PARTIAL_CHUNK_LOADING = builder
+.comment("候補チャンクは高さマップが確定する段階 (features) までだけ生成し、決定地点のみ FULL にする")
+.define("partialChunkLoading", true);
+
+SAMPLING_MODE = builder
+.comment("候補の抽選方法 (UNIFORM: 一様乱数, POISSON: 既存スポーンから最も遠い Poisson-disk 点)")
+.defineEnum("samplingMode", SamplingMode.UNIFORM);
+
+METRICS_DUMP_MINUTES = builder
+.comment("探索統計を randomspawn_metrics.jsonl に追記する間隔 (分、0 で無効)")
+.defineInRange("metricsDumpMinutes", 0, 0, 1440);
+
+WARM_SPAWN_LIMIT = builder
+.comment("オンラインプレイヤーのスポーン地点のチャンクを読み込んだまま保持する最大人数 (0 で無効)")
+.defineInRange("warmSpawnLimit", 64, 0, 1024);
+
+WARM_SPAWN_RADIUS = builder
+.comment("保持するスポーン地点周辺のチャンク半径 (0 で地点のチャンクのみ、保持チャンク数は最大 人数 x (2r+1)^2)")
+.defineInRange("warmSpawnRadius", 0, 0, 2);
+
+REVALIDATE_PER_TICK = builder
+.comment("足元・頭・足場のブロックが変わった割り当て済みスポーンを、1 ティックあたり何件まで再検証するか (0 で無効)")
+.defineInRange("revalidatePerTick", 8, 0, 256);
+
+ASYNC_FIRST_JOIN = builder
+.comment("初回参加でプールが空のとき、探索をチャンクの非同期読み込みで進め、決まるまでプレイヤーをその場で保護して待たせる")
+.define("asyncFirstJoin", false);
+
+ASYNC_JOIN_TIMEOUT_SECONDS = builder
+.comment("非同期探索の制限時間 (秒)。超えたら共有スポーン地点で代用する")
+.defineInRange("asyncJoinTimeoutSeconds", 10, 1, 60);
+
+SEARCH_BATCH = builder
+.comment("探索で同時にチャンクを依頼する候補数の上限 (1 で従来どおり 1 つずつ)。実際の数は最近の採用率から決める")
+.defineInRange("searchBatch", 1, 1, 32);
+
 builder.pop();
 
 COMMON_CONFIG = builder.build();
@@ -0,0 +1,69 @@
+package com.minecraft.randomspawn;
+
+import it.unimi.dsi.fastutil.objects.Reference2IntOpenHashMap;
+import net.minecraft.server.level.ServerLevel;
+import net.minecraft.server.level.ServerPlayer;
+import net.minecraftforge.event.server.ServerStoppedEvent;
+import net.minecraftforge.eventbus.api.SubscribeEvent;
+import net.minecraftforge.fml.common.Mod;
+import org.jetbrains.annotations.Nullable;
+
+/**
+ * オンラインプレイヤー位置の空間インデックス。ティックごとに最初の問い合わせで作り直し、
+ * 同じティック内の候補判定はすべてこれを使い回す。
+ */
+@Mod.EventBusSubscriber
+public final class LivePlayerIndex {
+    private static final int CELL_SIZE = 256;
+
+    private static final SpawnSpatialIndex INDEX = new SpawnSpatialIndex(CELL_SIZE);
+    private static final Reference2IntOpenHashMap<ServerPlayer> IDS = new Reference2IntOpenHashMap<>();
+    private static ServerLevel builtFor;
+    private static int builtTick = -1;
+
+    static {
+        IDS.defaultReturnValue(-1);
+    }
+
+    private LivePlayerIndex() {}
+
+    /**
+     * self 以外のオンラインプレイヤーが (x, y, z) から半径 radius 未満にいるか。
+     */
+    static boolean anyWithin(ServerLevel level, double x, double y, double z, double radius, @Nullable ServerPlayer self) {
+        return index(level).anyWithin(x, y, z, radius, idOf(self));
+    }
+
+    /** 現在のティックのインデックス (必要なら作り直す) */
+    static SpawnSpatialIndex index(ServerLevel level) {
+        refresh(level);
+        return INDEX;
+    }
+
+    /** {@link #index} 内でのプレイヤーの ID。除外指定に使う。いなければ -1 */
+    static int idOf(@Nullable ServerPlayer player) {
+        return player != null ? IDS.getInt(player) : -1;
+    }
+
+    private static void refresh(ServerLevel level) {
+        int tick = level.getServer().getTickCount();
+        if (builtFor == level && builtTick == tick) {
+            return;
+        }
+        INDEX.clear();
+        IDS.clear();
+        for (ServerPlayer player : level.players()) {
+            IDS.put(player, INDEX.add((int) Math.floor(player.getX()), (int) Math.floor(player.getY()), (int) Math.floor(player.getZ())));
+        }
+        builtFor = level;
+        builtTick = tick;
+    }
+
+    @SubscribeEvent
+    public static void onServerStopped(ServerStoppedEvent event) {
+        INDEX.clear();
+        IDS.clear();
+        builtFor = null;
+        builtTick = -1;
+    }
+}
@@ -0,0 +1,141 @@
+package com.minecraft.randomspawn;
+
+import com.mojang.authlib.GameProfile;
+import com.mojang.brigadier.CommandDispatcher;
+import com.mojang.brigadier.arguments.StringArgumentType;
+import net.minecraft.Util;
+import net.minecraft.commands.CommandSourceStack;
+import net.minecraft.commands.Commands;
+import net.minecraft.network.chat.Component;
+import net.minecraft.server.MinecraftServer;
+import net.minecraft.server.players.GameProfileCache;
+import net.minecraftforge.event.RegisterCommandsEvent;
+import net.minecraftforge.eventbus.api.SubscribeEvent;
+import net.minecraftforge.fml.common.Mod;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.regex.Pattern;
+
+/**
+ * /randomspawn 管理コマンド (権限レベル 2)。
+ * <ul>
+ *     <li>{@code /randomspawn preassign <名前または UUID...>}: 参加予定者のスポーンを事前に一括割り当てする</li>
+ *     <li>{@code /randomspawn stats [reset]}: 探索統計 (却下理由別件数、ヒストグラム) の表示/リセット</li>
+ * </ul>
+ */
+@Mod.EventBusSubscriber
+public final class RandomSpawnCommands {
+    private static final Pattern SEPARATOR = Pattern.compile("[\\s,]+");
+
+    private RandomSpawnCommands() {}
+
+    private record Roster(List<GameProfile> profiles, List<String> unknown) {}
+
+    @SubscribeEvent
+    public static void onRegisterCommands(RegisterCommandsEvent event) {
+        register(event.getDispatcher());
+    }
+
+    private static void register(CommandDispatcher<CommandSourceStack> dispatcher) {
+        dispatcher.register(Commands.literal("randomspawn")
+                .requires(source -> source.hasPermission(2))
+                .then(Commands.literal("preassign")
+                        .then(Commands.argument("roster", StringArgumentType.greedyString())
+                                .executes(ctx -> preassign(ctx.getSource(), StringArgumentType.getString(ctx, "roster")))))
+                .then(Commands.literal("stats")
+                        .executes(ctx -> stats(ctx.getSource()))
+                        .then(Commands.literal("reset")
+                                .executes(ctx -> resetStats(ctx.getSource())))));
+    }
+
+    private static int stats(CommandSourceStack source) {
+        List<String> lines = SpawnMetrics.lines();
+        for (String line : lines) {
+            source.sendSuccess(() -> Component.literal("[RandomSpawn] " + line), false);
+        }
+        return lines.size();
+    }
+
+    private static int resetStats(CommandSourceStack source) {
+        SpawnMetrics.reset();
+        source.sendSuccess(() -> Component.literal("[RandomSpawn] stats reset"), true);
+        return 1;
+    }
+
+    private static int preassign(CommandSourceStack source, String roster) {
+        MinecraftServer server = source.getServer();
+        List<String> tokens = new ArrayList<>();
+        for (String token : SEPARATOR.split(roster.trim())) {
+            if (!token.isEmpty()) {
+                tokens.add(token);
+            }
+        }
+        source.sendSuccess(() -> Component.literal("[RandomSpawn] pre-assigning spawns for " + tokens.size() + " players..."), true);
+
+        // 名前の解決は Mojang への問い合わせを伴うことがあるため、サーバースレッドの外で行う
+        CompletableFuture.supplyAsync(() -> resolveRoster(server, tokens), Util.backgroundExecutor())
+                .thenComposeAsync(resolved -> SpawnPreassigner.assign(server.overworld(), resolved.profiles())
+                        .thenApply(result -> {
+                            report(source, result, resolved.unknown());
+                            return result;
+                        }), server)
+                .whenCompleteAsync((result, error) -> {
+                    if (error != null) {
+                        source.sendFailure(Component.literal("[RandomSpawn] pre-assignment failed: " + error.getMessage()));
+                    }
+                }, server);
+        return tokens.size();
+    }
+
+    private static Roster resolveRoster(MinecraftServer server, List<String> tokens) {
+        GameProfileCache cache = server.getProfileCache();
+        List<GameProfile> profiles = new ArrayList<>(tokens.size());
+        List<String> unknown = new ArrayList<>();
+        for (String token : tokens) {
+            UUID uuid = parseUuid(token);
+            Optional<GameProfile> profile;
+            if (uuid != null) {
+                // 名前は JSON バックアップの表示用。キャッシュになければ UUID のまま登録する
+                profile = Optional.of(cache != null ? cache.get(uuid).orElse(new GameProfile(uuid, null)) : new GameProfile(uuid, null));
+            } else {
+                profile = cache != null ? cache.get(token) : Optional.empty();
+            }
+            if (profile.isPresent()) {
+                profiles.add(profile.get());
+            } else {
+                unknown.add(token);
+            }
+        }
+        return new Roster(profiles, unknown);
+    }
+
+    private static void report(CommandSourceStack source, SpawnPreassigner.Result result, List<String> unknown) {
+        source.sendSuccess(() -> Component.literal(String.format(
+                "[RandomSpawn] pre-assigned %d spawns (%d already had one, %d failed, %d unknown) from %d candidates in %d ms",
+                result.assigned(), result.skipped(), result.failed().size(), unknown.size(),
+                result.candidates(), result.elapsedMillis())), true);
+        if (!unknown.isEmpty()) {
+            source.sendFailure(Component.literal("[RandomSpawn] unknown players: " + String.join(", ", unknown)));
+        }
+        if (!result.failed().isEmpty()) {
+            List<String> names = new ArrayList<>(result.failed().size());
+            for (GameProfile profile : result.failed()) {
+                names.add(profile.getName() != null ? profile.getName() : profile.getId().toString());
+            }
+            source.sendFailure(Component.literal("[RandomSpawn] no spawn found for: " + String.join(", ", names)
+                    + " (they will be searched on join)"));
+        }
+    }
+
+    private static UUID parseUuid(String token) {
+        try {
+            return UUID.fromString(token);
+        } catch (IllegalArgumentException e) {
+            return null;
+        }
+    }
+}
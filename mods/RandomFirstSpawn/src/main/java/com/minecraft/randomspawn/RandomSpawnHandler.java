@@ -1,27 +1,35 @@
 package com.minecraft.randomspawn;
 
 import net.minecraft.core.BlockPos;
-import net.minecraft.core.Direction;
+import net.minecraft.core.Holder;
+import net.minecraft.core.QuartPos;
 import net.minecraft.server.level.ServerLevel;
 import net.minecraft.server.level.ServerPlayer;
+import net.minecraft.util.RandomSource;
 import net.minecraft.world.level.Level;
+import net.minecraft.world.level.biome.Biome;
 import net.minecraft.world.level.block.BedBlock;
 import net.minecraft.world.level.block.Blocks;
 import net.minecraft.world.level.block.state.BlockState;
-import net.minecraft.world.level.levelgen.Heightmap;
-import net.minecraft.tags.FluidTags;
 import net.minecraft.tags.BiomeTags;
 import net.minecraft.core.SectionPos;
 import net.minecraftforge.event.entity.player.PlayerEvent;
 import net.minecraftforge.eventbus.api.SubscribeEvent;
 import net.minecraftforge.fml.common.Mod;
-import net.minecraft.nbt.CompoundTag;
+import org.jetbrains.annotations.Nullable;
 import org.slf4j.Logger;
 import com.mojang.logging.LogUtils;
 
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+
 @Mod.EventBusSubscriber
 public class RandomSpawnHandler {
     private static final Logger LOGGER = LogUtils.getLogger();
+    /** 平坦さの判定で高さを読む範囲 (7x7) の半径 */
+    static final int FLATNESS_RADIUS = 3;
 
     @SubscribeEvent
     public static void onPlayerLogin(PlayerEvent.PlayerLoggedInEvent event) {
@@ -30,62 +38,35 @@ public class RandomSpawnHandler {
         if (level.dimension() != Level.OVERWORLD)
             return;
 
-        RandomSpawnStorage storage = RandomSpawnStorage.get(level);
-        RandomSpawnStorage.BlockPosData stored = storage.getSpawn(player.getUUID());
-
-        if (!hasBedOrAnchorRespawn(player)) {
-            BlockPos manualOverride = RandomSpawnJsonBackup.load(level, player.getUUID(), player.getGameProfile().getName());
-            if (manualOverride != null) {
-                boolean differs = stored == null
-                        || stored.x != manualOverride.getX()
-                        || stored.y != manualOverride.getY()
-                        || stored.z != manualOverride.getZ();
-                if (differs) {
-                    applySpawn(player, level, manualOverride, 0.0f);
-                    storage.setSpawn(player.getUUID(), manualOverride.getX(), manualOverride.getY(), manualOverride.getZ());
-                    RandomSpawnJsonBackup.save(level, player, manualOverride);
-                    debug(String.format("login: applied manual spawn override for %s at x=%d y=%d z=%d",
-                            player.getGameProfile().getName(), manualOverride.getX(), manualOverride.getY(), manualOverride.getZ()));
-                    return;
-                }
-            }
-        }
+        // 通常は PlayerListMixin で解決済み。ミックスインが効いていない場合のみここで解決する
+        SpawnResolver.Resolution resolution = SpawnResolver.hasSession(player.getUUID())
+                ? SpawnResolver.current(level, player)
+                : SpawnResolver.resolveJoin(level, player);
+        BlockPos spawnPos = resolution.pos();
 
-        // 初回ログインでなければ終了
-        if (storage.isSpawned(player.getUUID())) {
-            debug("login: already spawned; skip random spawn");
+        if (resolution.source() == SpawnResolver.Source.PENDING) {
+            debug("login: spawn search still running; holding player in place");
             return;
         }
-
-        // ランダムスポーン地点を探索
-        BlockPos spawnPos = findSafeSpawn(level, player);
-
-        // 追加探索（上限を増やして再試行）
         if (spawnPos == null) {
-            spawnPos = findSafeSpawn(level, player, Config.MAX_TRIES.get() * 10);
+            debug("login: failed to find safe spawn; keep vanilla position");
+            return;
         }
-
-        // 最終手段：水面に出ないようにMOTION_BLOCKING_NO_LEAVESで原点を安全化
-        if (spawnPos == null) {
-            BlockPos center = level.getSharedSpawnPos();
-            // ensure center chunk is loaded before sampling height
-            level.getChunk(SectionPos.blockToSectionCoord(center.getX()), SectionPos.blockToSectionCoord(center.getZ()));
-            int y = level.getHeight(Heightmap.Types.MOTION_BLOCKING_NO_LEAVES, center.getX(), center.getZ());
-            BlockPos candidate = new BlockPos(center.getX(), y, center.getZ());
-            if (isLocationSafe(level, candidate, player)) {
-                spawnPos = candidate;
-            }
+        // 初回ログインでも手動上書きの変更でもなければ終了
+        if (!resolution.changed()) {
+            debug("login: already spawned; skip random spawn");
+            return;
+        }
+        if (resolution.source() == SpawnResolver.Source.MANUAL && hasBedOrAnchorRespawn(player)) {
+            return;
         }
 
-        // TP: ログイン直後にサーバー→クライアントへ初期位置を同期して原点露出を防ぐ
-        final BlockPos finalSpawnPos = spawnPos;
-        applySpawn(player, level, finalSpawnPos, 0.0f);
-
-        // 保存はテレポートと同ティックで実施
-        RandomSpawnStorage s = RandomSpawnStorage.get(level);
-        s.setSpawn(player.getUUID(), finalSpawnPos.getX(), finalSpawnPos.getY(), finalSpawnPos.getZ());
-        RandomSpawnJsonBackup.save(level, player, finalSpawnPos);
-        debug(String.format("saved spawn for %s at x=%d y=%d z=%d", player.getGameProfile().getName(), finalSpawnPos.getX(), finalSpawnPos.getY(), finalSpawnPos.getZ()));
+        // TP: 既存プレイヤーは保存位置が読み込まれてミックスインの配置が上書きされるため、ここで同期する
+        applySpawn(player, level, spawnPos, 0.0f);
+        if (isDebugEnabled()) {
+            debug(String.format("login: %s spawn for %s at x=%d y=%d z=%d", resolution.source(),
+                    player.getGameProfile().getName(), spawnPos.getX(), spawnPos.getY(), spawnPos.getZ()));
+        }
     }
 
     @SubscribeEvent
@@ -103,41 +84,46 @@ public class RandomSpawnHandler {
             return;
         }
 
-        if (hasBedOrAnchorRespawn(player)) {
+        SpawnMetrics.RESPAWNS.increment();
+        // セッション中の解決結果を使う (手動上書きが編集されていれば解決し直して保存まで行われる)。
+        // 通常はメモリ上の参照だけで、バックアップや保存データの読み書きは行わない
+        BlockPos spawnPos = SpawnResolver.current(level, player).pos();
+        if (spawnPos == null) {
             return;
         }
 
-        RandomSpawnStorage storage = RandomSpawnStorage.get(level);
-        RandomSpawnStorage.BlockPosData stored = storage.getSpawn(player.getUUID());
-        BlockPos manual = RandomSpawnJsonBackup.load(level, player.getUUID(), player.getGameProfile().getName());
-        BlockPos spawnPos = null;
-        if (manual != null) {
-            spawnPos = manual;
-            storage.setSpawn(player.getUUID(), manual.getX(), manual.getY(), manual.getZ());
-        } else if (stored != null) {
-            spawnPos = new BlockPos(stored.x, stored.y, stored.z);
-        }
-
-        if (spawnPos == null) {
+        // リスポーン地点が割り当て済みスポーンそのものならベッドではないため、ブロックを読まずに済ませる
+        boolean ownSpawn = player.getRespawnDimension() == Level.OVERWORLD && spawnPos.equals(player.getRespawnPosition());
+        if (!ownSpawn && hasBedOrAnchorRespawn(player)) {
             return;
         }
 
+        // 次のリスポーンに備えて地点のチャンクを保持し続ける (保持数を超えたときに外される順位を上げる)
+        SpawnChunkWarmer.track(level, player.getUUID(), spawnPos);
         applySpawn(player, level, spawnPos, player.getYRot());
-        RandomSpawnJsonBackup.save(level, player, spawnPos);
 
-        debug(String.format("respawn: fallback to stored random spawn for %s at x=%d y=%d z=%d",
-                player.getGameProfile().getName(), spawnPos.getX(), spawnPos.getY(), spawnPos.getZ()));
+        if (isDebugEnabled()) {
+            debug(String.format("respawn: fallback to stored random spawn for %s at x=%d y=%d z=%d",
+                    player.getGameProfile().getName(), spawnPos.getX(), spawnPos.getY(), spawnPos.getZ()));
+        }
     }
 
-    private static void applySpawn(ServerPlayer player, ServerLevel level, BlockPos spawnPos, float yaw) {
+    /**
+     * リスポーン地点を設定してテレポートする。既にその位置にいればパケットは送らない。
+     * 同じディメンションへの teleportTo は内部で位置同期を送るため、別途の同期は行わない。
+     */
+    static void applySpawn(ServerPlayer player, ServerLevel level, BlockPos spawnPos, float yaw) {
         double fx = spawnPos.getX() + 0.5;
         double fy = spawnPos.getY() + 1;
         double fz = spawnPos.getZ() + 0.5;
-        player.setRespawnPosition(Level.OVERWORLD, spawnPos, 0.0f, true, false);
-        player.teleportTo(level, fx, fy, fz, yaw, player.getXRot());
-        if (player.connection != null) {
-            player.connection.teleport(fx, fy, fz, yaw, player.getXRot());
+        if (!spawnPos.equals(player.getRespawnPosition()) || player.getRespawnDimension() != Level.OVERWORLD) {
+            player.setRespawnPosition(Level.OVERWORLD, spawnPos, 0.0f, true, false);
+        }
+        if (player.level() == level && player.distanceToSqr(fx, fy, fz) < 1.0E-4) {
+            return;
         }
+        player.teleportTo(level, fx, fy, fz, yaw, player.getXRot());
+        SpawnMetrics.TELEPORTS.increment();
     }
 
     private static boolean hasBedOrAnchorRespawn(ServerPlayer player) {
@@ -153,99 +139,334 @@ public class RandomSpawnHandler {
         return state.getBlock() instanceof BedBlock || state.is(Blocks.RESPAWN_ANCHOR);
     }
 
+    /**
+     * 初回スポーン地点を決定する。事前検証済みプールを優先し、空なら同期探索、
+     * それでも見つからなければ共有スポーン地点を安全化して返す。見つからなければ null。
+     */
+    public static BlockPos findInitialSpawn(ServerLevel level, ServerPlayer player) {
+        BlockPos spawnPos = SpawnReservoir.take(level, player);
+        if (spawnPos != null) {
+            return spawnPos;
+        }
+
+        spawnPos = findSafeSpawn(level, player);
+
+        // 追加探索（上限を増やして再試行）
+        if (spawnPos == null) {
+            spawnPos = findSafeSpawn(level, player, SpawnSettings.get().maxTries() * 10);
+        }
+
+        // 最終手段：水面に出ないようにMOTION_BLOCKING_NO_LEAVESで原点を安全化
+        if (spawnPos == null) {
+            BlockPos center = level.getSharedSpawnPos();
+            SpawnChunkLoader chunks = SpawnChunkLoader.recheck(level);
+            int y = chunks.height(center.getX(), center.getZ());
+            BlockPos candidate = new BlockPos(center.getX(), y, center.getZ());
+            if (isLocationSafe(chunks, candidate, player)) {
+                spawnPos = candidate;
+            }
+            chunks.finish(spawnPos);
+        }
+        return spawnPos;
+    }
+
     public static BlockPos findSafeSpawn(ServerLevel level, ServerPlayer player) {
-        int tries = Config.MAX_TRIES.get();
-        return findSafeSpawn(level, player, tries);
+        return findSafeSpawn(level, player, SpawnSettings.get().maxTries());
     }
 
     public static BlockPos findSafeSpawn(ServerLevel level, ServerPlayer player, int tries) {
+        return findSafeSpawn(level, player.getRandom(), player, tries);
+    }
 
-        for (int i = 0; i < tries; i++) {
+    /**
+     * self が null の場合はプレイヤーに紐付かない探索（プール補充など）として扱う。
+     */
+    public static BlockPos findSafeSpawn(ServerLevel level, RandomSource random, @Nullable ServerPlayer self, int tries) {
+        // 探索中はこのスナップショットだけを見る (コンフィグ値を候補ごとに読み直さない)
+        return findSafeSpawn(level, random, self, tries, SpawnSettings.get(), 0);
+    }
 
-            int range = Config.SPAWN_RANGE.get();
-            BlockPos center = level.getSharedSpawnPos();
-            int x = center.getX() + (player.getRandom().nextInt(range * 2 + 1) - range);
-            int z = center.getZ() + (player.getRandom().nextInt(range * 2 + 1) - range);
-
-            // 確実に高さを取得するため、対象チャンクを読み込み/生成
-            level.getChunk(SectionPos.blockToSectionCoord(x), SectionPos.blockToSectionCoord(z));
-            int y = level.getHeight(Heightmap.Types.MOTION_BLOCKING_NO_LEAVES, x, z);
-            BlockPos pos = new BlockPos(x, y, z);
-            debug(String.format("try#%d candidate x=%d y=%d z=%d", (i + 1), x, y, z));
-
-            // 境界チェック + 最低高度チェック
-            if (!level.isInWorldBounds(pos)) {
-                debug("reject: out of world bounds");
-                continue;
+    /**
+     * searchBatch が 2 以上なら、前段フィルタを通った候補を最大 K 個まとめて引き、判定に要るチャンクを同時に依頼する。
+     * 依頼はサーバースレッドの外から出すので ({@link SpawnChunkLoader#request})、K 個の生成はワーカーで並行して進む。
+     * 読み込み終わった候補から判定し、最初に通ったものを採用する (判定しなかった候補のチケットも {@link SpawnChunkLoader#finish} で外す)。
+     * K は {@link SpawnBatchSize} が最近の採用率から決める。fixedBatch が 1 以上ならその値に固定する (計測用)。
+     */
+    static BlockPos findSafeSpawn(ServerLevel level, RandomSource random, @Nullable ServerPlayer self, int tries,
+                                  SpawnSettings settings, int fixedBatch) {
+        SpawnChunkLoader chunks = new SpawnChunkLoader(level, settings);
+        BlockPos center = level.getSharedSpawnPos();
+        SpawnSampler sampler = null;
+        if (settings.samplingMode() == Config.SamplingMode.POISSON) {
+            sampler = RandomSpawnStorage.get(level).sampler(center.getX(), center.getZ(), settings.spawnRange(), settings.minDistance(), level.getSeed());
+            sampler.beginSearch();
+        }
+        BlockPos found = null;
+        List<Candidate> batch = new ArrayList<>();
+        int drawn = 0;
+
+        while (found == null && drawn < tries) {
+            int k = fixedBatch > 0 ? fixedBatch : SpawnBatchSize.next(settings.searchBatch());
+            // 前段フィルタを通る候補を最大 k 個引く。k > 1 なら判定に要るチャンクをまとめて依頼しておく
+            while (batch.size() < k && drawn < tries) {
+                drawn++;
+                Candidate candidate = drawCandidate(chunks, random, sampler, center, settings, k > 1);
+                if (candidate != null) {
+                    if (k > 1) {
+                        candidate.chunksReady = chunks.prefetchCandidate(candidate.x, candidate.z);
+                    }
+                    batch.add(candidate);
+                }
             }
-            if (y <= level.getMinBuildHeight()) {
-                debug("reject: below min build height");
-                continue;
+            if (k > 1 && !batch.isEmpty()) {
+                SpawnMetrics.BATCH_SIZE.record(batch.size());
             }
-
-            // バイオーム（海/川）除外
-            var biomeHolder = level.getBiome(pos);
-            if (biomeHolder.is(BiomeTags.IS_OCEAN) || biomeHolder.is(BiomeTags.IS_RIVER)) {
-                debug("reject: ocean/river biome");
-                continue;
+            // 読み込み終わったものから判定する。どれもまだなら、いずれかが終わるまでサーバーのタスクを回しながら待つ
+            while (found == null && !batch.isEmpty()) {
+                if (k > 1) {
+                    awaitAnyReady(level, batch);
+                }
+                found = evaluate(chunks, takeReady(batch), self, sampler, settings);
             }
+            SpawnMetrics.SPECULATIVE_DISCARDS.add(batch.size());
+            batch.clear();
+        }
+        if (found != null) {
+            SpawnMetrics.TRIES_PER_SUCCESS.record(drawn);
+        }
+        chunks.finish(found);
+        return found;
+    }
+
+    /** 前段フィルタを通った候補。並列評価では判定に要るチャンクの読み込みを待つフューチャーを持つ */
+    static final class Candidate {
+        final int x;
+        final int z;
+        /** Poisson-disk 点の番号。一様抽選なら -1 */
+        final int point;
+        @Nullable
+        CompletableFuture<Boolean> chunksReady;
+
+        Candidate(int x, int z, int point) {
+            this.x = x;
+            this.z = z;
+            this.point = point;
+        }
+
+        boolean isReady() {
+            return chunksReady == null || chunksReady.isDone();
+        }
+    }
 
-            // 流体（水など）除外
-            if (level.getFluidState(pos).is(FluidTags.WATER) || level.getFluidState(pos.above()).is(FluidTags.WATER)) {
-                debug("reject: water at feet or head");
-                continue;
+    /**
+     * 候補を 1 つ引き、チャンクを読まずにできる足切り (ワールドボーダー、バイオーム、地形インデックス) を行う。
+     * 落ちたら null (Poisson-disk 点は理由に応じて除外済み)。
+     * reserve なら、判定が終わるまでほかの候補が同じ Poisson-disk 点を引かないよう今回の探索では飛ばしておく。
+     * ワールドは {@link SpawnSearchWorld} 越しにしか読まない (ベンチマークは合成地形でこれを呼ぶ)。
+     */
+    @Nullable
+    static Candidate drawCandidate(SpawnSearchWorld world, RandomSource random, @Nullable SpawnSampler sampler,
+                                   BlockPos center, SpawnSettings settings, boolean reserve) {
+        int range = settings.spawnRange();
+        // Poisson-disk 点があればそれを使い、空きがなければ一様抽選に戻す
+        int point = sampler != null ? sampler.next() : -1;
+        int x;
+        int z;
+        if (point >= 0) {
+            int jitter = sampler.jitter(point);
+            x = sampler.x(point) + (jitter > 0 ? random.nextInt(jitter * 2 + 1) - jitter : 0);
+            z = sampler.z(point) + (jitter > 0 ? random.nextInt(jitter * 2 + 1) - jitter : 0);
+            if (reserve) {
+                sampler.skip(point);
             }
+        } else {
+            x = center.getX() + (random.nextInt(range * 2 + 1) - range);
+            z = center.getZ() + (random.nextInt(range * 2 + 1) - range);
+        }
+        SpawnMetrics.CANDIDATES.increment();
+        world.countTry();
 
-            // 足場の安定性（真下ブロックが上面を支えられるか）
-            BlockPos ground = pos.below();
-            if (!level.getBlockState(ground).isFaceSturdy(level, ground, Direction.UP)) {
-                debug("reject: ground not sturdy");
-                continue;
+        // チャンクを読み込む前にワールドボーダーとバイオームで足切り
+        if (!world.passesPreFilter(x, z, settings)) {
+            if (point >= 0) {
+                sampler.block(point);
             }
+            return null;
+        }
 
-            // スペースの空き（衝突形状が空）
-            if (!level.getBlockState(pos).getCollisionShape(level, pos).isEmpty()) {
-                debug("reject: feet blocked");
-                continue;
+        // 地形インデックスに載っているチャンクはブロックを読まずに足切り
+        if (world.terrain().rejects(x, z, settings.heightDiff())) {
+            SpawnMetrics.TERRAIN_INDEX_REJECTS.increment();
+            if (settings.debugLogs()) {
+                debug("reject: terrain index (water, no footing or steep)");
             }
-            if (!level.getBlockState(pos.above()).getCollisionShape(level, pos.above()).isEmpty()) {
-                debug("reject: head blocked");
-                continue;
+            if (point >= 0) {
+                sampler.reject(point);
             }
+            return null;
+        }
+        return new Candidate(x, z, point);
+    }
 
-            if (!isLocationSafe(level, pos, player)) {
-                debug("reject: not flat enough or too close to others");
-                continue;
+    /**
+     * 候補をチャンクを読んで判定する。通れば地点、落ちれば null。
+     * チャンクの読み込みが終わっていなければここで待つ。読み込みに失敗した候補は判定しない。
+     */
+    @Nullable
+    static BlockPos evaluate(SpawnChunkLoader chunks, Candidate candidate, @Nullable ServerPlayer self,
+                             @Nullable SpawnSampler sampler, SpawnSettings settings) {
+        if (candidate.chunksReady != null && candidate.chunksReady.isDone() && !candidate.chunksReady.join()) {
+            return null;
+        }
+        return evaluate(chunks, SpawnConstraints.pipeline(), candidate, self, sampler, settings);
+    }
+
+    /**
+     * {@link #evaluate} の本体。候補の高さを読み、pipeline の条件で判定して、落ちた理由に応じて Poisson-disk 点を扱う。
+     * ワールドは {@link SpawnSearchWorld} 越しにしか読まない (ベンチマークは合成地形と {@link SpawnConstraints#searchChecks} でこれを呼ぶ)。
+     */
+    @Nullable
+    static <W extends SpawnSearchWorld> BlockPos evaluate(W world, SpawnPipeline<W> pipeline, Candidate candidate,
+                                                          @Nullable ServerPlayer self, @Nullable SpawnSampler sampler,
+                                                          SpawnSettings settings) {
+        // 高さを取得するため、対象チャンクを高さマップが確定するステータスまで読み込み/生成
+        int y = world.height(candidate.x, candidate.z);
+        BlockPos pos = new BlockPos(candidate.x, y, candidate.z);
+        if (settings.debugLogs()) {
+            debug(String.format("candidate x=%d y=%d z=%d", pos.getX(), pos.getY(), pos.getZ()));
+        }
+
+        SpawnCheck<W> failed = pipeline.check(world, pos, self, settings);
+        SpawnBatchSize.record(failed == null);
+        if (failed != null) {
+            if (candidate.point >= 0) {
+                switch (failed.scope()) {
+                    case PERMANENT -> sampler.block(candidate.point);
+                    case LOCAL -> sampler.reject(candidate.point);
+                    case TRANSIENT -> sampler.skip(candidate.point);
+                }
             }
+            return null;
+        }
 
+        if (settings.debugLogs()) {
             debug(String.format("accept: x=%d y=%d z=%d", pos.getX(), pos.getY(), pos.getZ()));
-            return pos;
         }
-        return null;
+        return pos;
     }
 
-    public static boolean isLocationSafe(ServerLevel level, BlockPos pos, ServerPlayer self) {
+    /**
+     * いずれかの候補のチャンクが揃うまで待つ。待つ間もサーバースレッドのタスク (ほかの候補の依頼を含む) は処理される。
+     */
+    private static void awaitAnyReady(ServerLevel level, List<Candidate> batch) {
+        level.getServer().managedBlock(() -> {
+            for (int i = 0; i < batch.size(); i++) {
+                if (batch.get(i).isReady()) {
+                    return true;
+                }
+            }
+            return false;
+        });
+    }
+
+    /** 読み込みが終わっている候補を取り出す。なければ先頭 (最も早く依頼した候補) */
+    private static Candidate takeReady(List<Candidate> batch) {
+        for (int i = 0; i < batch.size(); i++) {
+            if (batch.get(i).isReady()) {
+                return batch.remove(i);
+            }
+        }
+        return batch.remove(0);
+    }
+
+    /**
+     * チャンクを読み込まずに判定できる前段フィルタ。
+     * ワールドボーダー外と、バイオームソースから直接引いた海/川バイオームを除外する。
+     */
+    static boolean passesPreFilter(ServerLevel level, int x, int z, SpawnSettings settings) {
+        if (!level.getWorldBorder().isWithinBounds(x, z)) {
+            SpawnMetrics.PREFILTER_BORDER.increment();
+            countAvoidedLoad(level, x, z);
+            debug("prefilter: outside world border");
+            return false;
+        }
+        if (!settings.biomePreFilter()) {
+            return true;
+        }
+        // 生成器のクライメイトサンプラーを直接参照するのでチャンクは作られない
+        Holder<Biome> biome = level.getUncachedNoiseBiome(
+                QuartPos.fromBlock(x), QuartPos.fromBlock(level.getSeaLevel()), QuartPos.fromBlock(z));
+        if (biome.is(BiomeTags.IS_OCEAN) || biome.is(BiomeTags.IS_RIVER)) {
+            SpawnMetrics.PREFILTER_BIOME.increment();
+            countAvoidedLoad(level, x, z);
+            debug("prefilter: ocean/river biome");
+            return false;
+        }
+        return true;
+    }
+
+    private static void countAvoidedLoad(ServerLevel level, int x, int z) {
+        if (!level.getChunkSource().hasChunk(SectionPos.blockToSectionCoord(x), SectionPos.blockToSectionCoord(z))) {
+            SpawnMetrics.CHUNK_LOADS_AVOIDED.increment();
+        }
+    }
+
+    /**
+     * 候補地点の全チェック。対象チャンクは読み込み済みであること。
+     */
+    static boolean isCandidateSafe(SpawnChunkLoader chunks, BlockPos pos, @Nullable ServerPlayer self) {
+        return checkCandidate(chunks, pos, self) == null;
+    }
+
+    /**
+     * {@link #isCandidateSafe} と同じ判定を行い、却下した理由を返す。通れば null。
+     * 判定の順序は {@link SpawnConstraints} が実測に基づいて決める。
+     */
+    @Nullable
+    static RejectReason checkCandidate(SpawnChunkLoader chunks, BlockPos pos, @Nullable ServerPlayer self) {
+        SpawnCheck<SpawnChunkLoader> failed = SpawnConstraints.check(chunks, pos, self, chunks.settings());
+        return failed != null ? failed.reason() : null;
+    }
+
+    public static boolean isLocationSafe(SpawnChunkLoader chunks, BlockPos pos, @Nullable ServerPlayer self) {
+        SpawnSettings settings = chunks.settings();
         // 地形の平坦さ
-        if (!isFlatEnough(level, pos)) return false;
+        if (!isFlatEnough(chunks.terrain(), chunks, pos.getX(), pos.getY(), pos.getZ(), settings.heightDiff())) return false;
         // 他プレイヤー距離
-        if (!isFarFromOthers(level, pos, self)) return false;
+        if (!isFarFromOthers(chunks.level(), pos, self, settings.minDistance())) return false;
         return true;
     }
 
+    /**
+     * 書式付きのメッセージは呼び出し側でこれを確認してから組み立てる (無効時に文字列を作らないため)。
+     */
+    public static boolean isDebugEnabled() {
+        return SpawnSettings.get().debugLogs();
+    }
+
     public static void debug(String msg) {
-        if (Config.DEBUG_LOGS.get() != null && Config.DEBUG_LOGS.get()) {
+        if (isDebugEnabled()) {
             LOGGER.info("[RandomSpawn] " + msg);
         }
     }
 
-    private static boolean isFlatEnough(ServerLevel level, BlockPos pos) {
-        int centerY = pos.getY();
-        int limit = Config.HEIGHT_DIFF_LIMIT.get();
+    /**
+     * (x, z) を中心とする 7x7 範囲の高低差がすべて limit 以内か。ワールドに依存しない本体 (ベンチマークからも呼ぶ)。
+     */
+    static boolean isFlatEnough(SpawnTerrainIndex terrain, SpawnTerrainIndex.HeightSource heights, int x, int centerY, int z, int limit) {
+        // セル単位の高さ範囲で判断できればブロックの高さは読まない
+        switch (terrain.flatness(x, z, centerY, limit)) {
+            case ACCEPT:
+                return true;
+            case REJECT:
+                return false;
+            default:
+                break;
+        }
 
-        for (int dx = -3; dx <= 3; dx++) {
-            for (int dz = -3; dz <= 3; dz++) {
-                int y = level.getHeight(Heightmap.Types.MOTION_BLOCKING_NO_LEAVES,
-                        pos.getX() + dx, pos.getZ() + dz);
+        for (int dx = -FLATNESS_RADIUS; dx <= FLATNESS_RADIUS; dx++) {
+            for (int dz = -FLATNESS_RADIUS; dz <= FLATNESS_RADIUS; dz++) {
+                int y = heights.height(x + dx, z + dz);
                 if (Math.abs(y - centerY) > limit) {
                     return false;
                 }
@@ -254,18 +475,21 @@ public class RandomSpawnHandler {
         return true;
     }
 
-    private static boolean isFarFromOthers(ServerLevel level, BlockPos pos, ServerPlayer self) {
-        int minDist = Config.MIN_DISTANCE.get();
-        for (ServerPlayer other : level.players()) {
-            if (other == self) continue;
-
-            double dist = other.position().distanceTo(
-                    new net.minecraft.world.phys.Vec3(pos.getX(), pos.getY(), pos.getZ())
-            );
+    static boolean isFarFromOthers(ServerLevel level, BlockPos pos, @Nullable ServerPlayer self, int minDist) {
+        return isFarFromOthers(LivePlayerIndex.index(level), LivePlayerIndex.idOf(self),
+                RandomSpawnStorage.get(level), self != null ? self.getUUID() : null,
+                pos.getX(), pos.getY(), pos.getZ(), minDist);
+    }
 
-            if (dist < minDist)
-                return false;
+    /**
+     * オンラインプレイヤーの現在位置と、オフラインを含む割り当て済みスポーンのいずれからも minDist 以上離れているか。
+     * ワールドに依存しない本体 (ベンチマークからも呼ぶ)。
+     */
+    static boolean isFarFromOthers(SpawnSpatialIndex live, int liveExclude, RandomSpawnStorage storage, @Nullable UUID exclude,
+                                   double x, double y, double z, int minDist) {
+        if (live.anyWithin(x, y, z, minDist, liveExclude)) {
+            return false;
         }
-        return true;
+        return !storage.isNearAssignedSpawn(x, y, z, minDist, exclude);
     }
-}
\ No newline at end of file
+}
@@ -2,7 +2,10 @@ package com.minecraft.randomspawn;
 
 import com.google.gson.Gson;
 import com.google.gson.GsonBuilder;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
 import com.google.gson.JsonParseException;
+import com.google.gson.JsonParser;
 import com.google.gson.reflect.TypeToken;
 import com.mojang.logging.LogUtils;
 import net.minecraft.core.BlockPos;
@@ -10,7 +13,11 @@ import net.minecraft.server.MinecraftServer;
 import net.minecraft.server.level.ServerLevel;
 import net.minecraft.server.level.ServerPlayer;
 import net.minecraft.world.level.storage.LevelResource;
+import net.minecraftforge.event.server.ServerStoppedEvent;
+import net.minecraftforge.eventbus.api.SubscribeEvent;
+import net.minecraftforge.fml.common.Mod;
 import net.minecraftforge.fml.loading.FMLPaths;
+import org.jetbrains.annotations.Nullable;
 import org.slf4j.Logger;
 
 import java.io.BufferedReader;
@@ -18,19 +25,55 @@ import java.io.BufferedWriter;
 import java.io.IOException;
 import java.lang.reflect.Type;
 import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.ClosedWatchServiceException;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.nio.file.attribute.FileTime;
+import java.util.ArrayList;
+import java.util.Collection;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Locale;
 import java.util.Map;
+import java.util.Objects;
 import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
 
+/**
+ * スポーン座標の JSON バックアップ (管理者が手で編集できる控え)。
+ * 内容はメモリ上のマップを正とし、変更は追記専用のジャーナルにバックグラウンドスレッドで書き出す。
+ * 一定件数ごと、およびサーバー停止時に JSON 本体へ一時ファイル経由の置き換えでまとめ直すため、
+ * クラッシュしても本体が途中まで書かれた状態にはならない (未反映分は次回起動時にジャーナルから復元する)。
+ * 参照は UUID と名前 (大文字小文字を区別しない) の索引から行い、ログイン/リスポーン時にファイルは読まない。
+ * 管理者による編集はディレクトリの監視で検知して取り込む。
+ */
+@Mod.EventBusSubscriber
 public final class RandomSpawnJsonBackup {
     private static final Logger LOGGER = LogUtils.getLogger();
     private static final Gson GSON = new GsonBuilder().setPrettyPrinting().create();
+    /** ジャーナルは 1 行 1 件のため改行なしで出力する */
+    private static final Gson JOURNAL_GSON = new Gson();
     private static final Type TYPE = new TypeToken<Map<String, SpawnEntry>>() {}.getType();
     private static final String FILE_NAME = "randomspawn_spawns.json";
+    private static final String JOURNAL_NAME = "randomspawn_spawns.journal";
     private static final String LEGACY_DIR = "randomspawn";
+    /** この件数をジャーナルに追記するごとに JSON 本体へまとめ直す */
+    private static final int COMPACT_EVERY = 512;
+    private static final long STOP_TIMEOUT_SECONDS = 30L;
+
+    private static Store store;
 
     private RandomSpawnJsonBackup() {}
 
@@ -44,11 +87,36 @@ public final class RandomSpawnJsonBackup {
             name = uuid.toString();
         }
         try {
-            Path primary = getPrimaryFile(level);
-            Map<String, SpawnEntry> data = readFile(primary);
-            data.put(uuid.toString(), new SpawnEntry(pos.getX(), pos.getY(), pos.getZ(), level.dimension().location().toString(), name));
-            writeFile(primary, data);
-            LOGGER.info("[RandomSpawn] wrote spawn backup for {} ({}) to {}", uuid, name, primary);
+            Store s = store(level);
+            SpawnEntry entry = new SpawnEntry(pos.getX(), pos.getY(), pos.getZ(), level.dimension().location().toString(), name);
+            if (s.put(uuid, entry)) {
+                LOGGER.info("[RandomSpawn] queued spawn backup for {} ({}) to {}", uuid, name, s.primary);
+            }
+        } catch (IOException e) {
+            LOGGER.error("[RandomSpawn] Failed to write spawn backup", e);
+        }
+    }
+
+    /**
+     * 複数件をまとめて登録する。ジャーナルへの追記は 1 回の書き込みで行う。
+     */
+    public static void saveAll(ServerLevel level, Collection<SpawnPreassigner.Assignment> assignments) {
+        if (assignments.isEmpty()) {
+            return;
+        }
+        try {
+            Store s = store(level);
+            String dimension = level.dimension().location().toString();
+            List<Map.Entry<UUID, SpawnEntry>> entries = new ArrayList<>(assignments.size());
+            for (SpawnPreassigner.Assignment assignment : assignments) {
+                UUID uuid = assignment.profile().getId();
+                String name = sanitizeName(assignment.profile().getName());
+                BlockPos pos = assignment.pos();
+                entries.add(Map.entry(uuid, new SpawnEntry(pos.getX(), pos.getY(), pos.getZ(), dimension,
+                        name.isEmpty() ? uuid.toString() : name)));
+            }
+            int queued = s.putAll(entries);
+            LOGGER.info("[RandomSpawn] queued {} spawn backup entries to {}", queued, s.primary);
         } catch (IOException e) {
             LOGGER.error("[RandomSpawn] Failed to write spawn backup", e);
         }
@@ -56,19 +124,18 @@ public final class RandomSpawnJsonBackup {
 
     public static BlockPos load(ServerLevel level, UUID uuid, String playerName) {
         String desiredName = sanitizeName(playerName);
+        SpawnMetrics.BACKUP_LOOKUPS.increment();
         try {
-            ReadResult result = readPrimaryOrLegacy(level);
-            SpawnEntry entry = result.data.get(uuid.toString());
-            if (entry == null && !desiredName.isEmpty()) {
-                entry = findByName(result.data, desiredName);
-            }
+            SpawnEntry entry = store(level).lookup(uuid, desiredName);
             if (entry == null) {
                 return null;
             }
             if (!level.dimension().location().toString().equals(entry.dimension)) {
                 return null;
             }
-            LOGGER.info("[RandomSpawn] loaded spawn backup for {} ({}) from {}", uuid, entry.name, result.source);
+            if (RandomSpawnHandler.isDebugEnabled()) {
+                RandomSpawnHandler.debug(String.format("loaded spawn backup for %s (%s)", uuid, entry.name));
+            }
             return new BlockPos(entry.x, entry.y, entry.z);
         } catch (IOException e) {
             LOGGER.error("[RandomSpawn] Failed to read spawn backup", e);
@@ -76,19 +143,48 @@ public final class RandomSpawnJsonBackup {
         }
     }
 
-    private static ReadResult readPrimaryOrLegacy(ServerLevel level) throws IOException {
-        Path primary = getPrimaryFile(level);
-        Map<String, SpawnEntry> primaryData = readFile(primary);
-        if (!primaryData.isEmpty() || Files.exists(primary)) {
-            return new ReadResult(primaryData, primary);
+    /**
+     * 管理者による編集を取り込むたびに増える番号。解決結果のキャッシュの有効性判定に使う。
+     */
+    public static int generation() {
+        Store s = store;
+        return s != null ? s.generation : 0;
+    }
+
+    /**
+     * 予約済みのジャーナル追記/まとめ直しが終わるまで待つ (負荷試験の集計用)。
+     */
+    static void awaitPendingWrites() {
+        Store s = store;
+        if (s == null) {
+            return;
+        }
+        try {
+            s.awaitWrites();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (ExecutionException e) {
+            LOGGER.warn("[RandomSpawn] spawn backup writer failed", e);
         }
-        Path legacy = getLegacyFile();
-        if (Files.exists(legacy)) {
-            Map<String, SpawnEntry> legacyData = readFile(legacy);
-            LOGGER.info("[RandomSpawn] using legacy spawn backup at {}", legacy);
-            return new ReadResult(legacyData, legacy);
+    }
+
+    @SubscribeEvent
+    public static void onServerStopped(ServerStoppedEvent event) {
+        if (store != null) {
+            store.close();
+            store = null;
+        }
+    }
+
+    private static Store store(ServerLevel level) throws IOException {
+        MinecraftServer server = level.getServer();
+        if (store == null || store.server != server) {
+            if (store != null) {
+                store.close();
+            }
+            store = Store.open(server, getPrimaryFile(level));
         }
-        return new ReadResult(primaryData, primary);
+        return store;
     }
 
     private static Path getPrimaryFile(ServerLevel level) throws IOException {
@@ -108,6 +204,7 @@ public final class RandomSpawnJsonBackup {
         if (!Files.exists(file)) {
             return new HashMap<>();
         }
+        SpawnMetrics.BACKUP_FILE_READS.increment();
         try (BufferedReader reader = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
             Map<String, SpawnEntry> data = GSON.fromJson(reader, TYPE);
             return data != null ? data : new HashMap<>();
@@ -117,27 +214,14 @@ public final class RandomSpawnJsonBackup {
         }
     }
 
-    private static void writeFile(Path file, Map<String, SpawnEntry> data) throws IOException {
-        Files.createDirectories(file.getParent());
-        try (BufferedWriter writer = Files.newBufferedWriter(file, StandardCharsets.UTF_8)) {
-            GSON.toJson(data, TYPE, writer);
-        }
-    }
-
-    private static SpawnEntry findByName(Map<String, SpawnEntry> data, String name) {
-        String search = name.toLowerCase(Locale.ROOT);
-        for (SpawnEntry entry : data.values()) {
-            if (entry.name != null && entry.name.toLowerCase(Locale.ROOT).equals(search)) {
-                return entry;
-            }
-        }
-        return null;
-    }
-
     private static String sanitizeName(String name) {
         return name == null ? "" : name.trim();
     }
 
+    private static String nameKey(String name) {
+        return sanitizeName(name).toLowerCase(Locale.ROOT);
+    }
+
     private static String getPlayerName(ServerPlayer player) {
         String profileName = player.getGameProfile().getName();
         if (profileName != null && !profileName.isBlank()) {
@@ -146,7 +230,323 @@ public final class RandomSpawnJsonBackup {
         return player.getName().getString();
     }
 
-    private static class SpawnEntry {
+    /**
+     * 1 ワールド分のバックアップ。data と索引はサーバースレッドと書き込みスレッドの両方から参照する。
+     * 参照はロックなしで行い、比較を伴う更新は this で排他する。
+     * ジャーナルへの追記、まとめ直し、外部編集の取り込みは単一の書き込みスレッドで順番に実行されるため、
+     * まとめ直しの後に追記された分だけが新しいジャーナルに残る。
+     */
+    static final class Store {
+        final MinecraftServer server;
+        final Path primary;
+        final Path journal;
+        final Path temp;
+        /** JSON のキー (UUID 文字列) → 項目。書き出しはこのマップから行う */
+        final Map<String, SpawnEntry> data = new ConcurrentHashMap<>();
+        final Map<UUID, SpawnEntry> byUuid = new ConcurrentHashMap<>();
+        /** 小文字化した名前 → 項目。同名が複数あれば後から登録された方 */
+        final Map<String, SpawnEntry> byName = new ConcurrentHashMap<>();
+        private final ExecutorService writer;
+        private WatchService watcher;
+        /** 自分で書いた (または読み込んだ) 時点の JSON 本体の更新時刻。これと異なれば外部で編集されている */
+        private FileTime knownModified;
+        /**
+         * 最後に JSON 本体から読んだ、または本体へ書いた内容。外部編集の判定はメモリではなくこれと比べる
+         * (まとめ直し前の変更はジャーナルにしかないため、本体とメモリの差は編集とは限らない)。書き込みスレッドのみ
+         */
+        private Map<String, SpawnEntry> onDisk = Map.of();
+        private int appendsSinceCompact;
+        /** 外部編集を取り込んだ回数 */
+        volatile int generation;
+        private BufferedWriter journalOut;
+
+        private Store(MinecraftServer server, Path primary) {
+            this.server = server;
+            this.primary = primary;
+            this.journal = primary.resolveSibling(JOURNAL_NAME);
+            this.temp = primary.resolveSibling(FILE_NAME + ".tmp");
+            this.writer = Executors.newSingleThreadExecutor(r -> {
+                Thread thread = new Thread(r, "RandomSpawn-JsonBackup");
+                thread.setDaemon(true);
+                return thread;
+            });
+        }
+
+        /** server は同一ワールドの判定にのみ使う (null 可) */
+        static Store open(@Nullable MinecraftServer server, Path primary) throws IOException {
+            Store s = new Store(server, primary);
+            if (Files.exists(primary)) {
+                s.onDisk = readFile(primary);
+                s.putAll(s.onDisk);
+                s.knownModified = Files.getLastModifiedTime(primary);
+            } else {
+                Path legacy = getLegacyFile();
+                if (Files.exists(legacy)) {
+                    s.putAll(readFile(legacy));
+                    LOGGER.info("[RandomSpawn] using legacy spawn backup at {}", legacy);
+                }
+            }
+            // 前回まとめ直す前に停止した分を復元する
+            int replayed = s.replayJournal();
+            if (replayed > 0) {
+                LOGGER.info("[RandomSpawn] replayed {} spawn backup entries from {}", replayed, s.journal);
+            }
+            if (replayed > 0 || !Files.exists(primary)) {
+                s.writer.execute(s::compact);
+            }
+            s.startWatching();
+            return s;
+        }
+
+        /** UUID、なければ名前 (大文字小文字を区別しない) で引く */
+        @Nullable
+        SpawnEntry lookup(UUID uuid, String name) {
+            SpawnEntry entry = byUuid.get(uuid);
+            if (entry == null && name != null && !name.isEmpty()) {
+                entry = byName.get(nameKey(name));
+            }
+            return entry;
+        }
+
+        /** 変更があれば true を返し、ジャーナルへの追記を予約する */
+        boolean put(UUID uuid, SpawnEntry entry) {
+            return putAll(List.of(Map.entry(uuid, entry))) > 0;
+        }
+
+        /** 変更のあった件数を返し、それらをまとめて 1 回の追記として予約する */
+        int putAll(List<Map.Entry<UUID, SpawnEntry>> entries) {
+            List<Map.Entry<String, SpawnEntry>> changed = new ArrayList<>(entries.size());
+            // 外部編集の取り込み (書き込みスレッド) と比較・更新が入れ違わないよう、まとめてロックする
+            synchronized (this) {
+                for (Map.Entry<UUID, SpawnEntry> e : entries) {
+                    String key = e.getKey().toString();
+                    if (e.getValue().equals(data.get(key))) {
+                        continue;
+                    }
+                    index(key, e.getKey(), e.getValue());
+                    changed.add(Map.entry(key, e.getValue()));
+                }
+            }
+            if (changed.isEmpty()) {
+                return 0;
+            }
+            writer.execute(() -> append(changed));
+            appendsSinceCompact += changed.size();
+            if (appendsSinceCompact >= COMPACT_EVERY) {
+                appendsSinceCompact = 0;
+                writer.execute(this::compact);
+            }
+            return changed.size();
+        }
+
+        private void putAll(Map<String, SpawnEntry> entries) {
+            for (Map.Entry<String, SpawnEntry> e : entries.entrySet()) {
+                index(e.getKey(), parseUuid(e.getKey()), e.getValue());
+            }
+        }
+
+        /**
+         * data と両索引を更新する。以前の項目の名前索引は、それが同じ項目を指している場合のみ外す。
+         * サーバースレッドと書き込みスレッドの両方から呼ばれるため、this で排他する
+         */
+        private synchronized void index(String key, UUID uuid, SpawnEntry entry) {
+            SpawnEntry old = data.put(key, entry);
+            if (old != null && old.name != null) {
+                byName.remove(nameKey(old.name), old);
+            }
+            if (entry.name != null && !entry.name.isBlank()) {
+                byName.put(nameKey(entry.name), entry);
+            }
+            if (uuid != null) {
+                byUuid.put(uuid, entry);
+            }
+        }
+
+        private static UUID parseUuid(String key) {
+            try {
+                return UUID.fromString(key);
+            } catch (IllegalArgumentException e) {
+                // UUID でないキーは名前でのみ参照できる
+                return null;
+            }
+        }
+
+        /**
+         * serverconfig/randomspawn を監視し、JSON 本体が変更されたら書き込みスレッドで取り込む。
+         * 自分のまとめ直しによる変更は更新時刻で区別する。
+         */
+        private void startWatching() {
+            try {
+                watcher = primary.getFileSystem().newWatchService();
+                primary.getParent().register(watcher, StandardWatchEventKinds.ENTRY_CREATE, StandardWatchEventKinds.ENTRY_MODIFY);
+            } catch (IOException e) {
+                LOGGER.error("[RandomSpawn] Failed to watch {}; manual edits apply after restart", primary.getParent(), e);
+                return;
+            }
+            Thread thread = new Thread(this::watchLoop, "RandomSpawn-JsonWatch");
+            thread.setDaemon(true);
+            thread.start();
+        }
+
+        private void watchLoop() {
+            Path fileName = primary.getFileName();
+            try {
+                while (true) {
+                    WatchKey key = watcher.take();
+                    boolean touched = false;
+                    for (WatchEvent<?> event : key.pollEvents()) {
+                        if (fileName.equals(event.context())) {
+                            touched = true;
+                        }
+                    }
+                    key.reset();
+                    if (touched) {
+                        writer.execute(this::mergeExternalEdits);
+                    }
+                }
+            } catch (InterruptedException | ClosedWatchServiceException | RejectedExecutionException e) {
+                // 停止時
+            }
+        }
+
+        /**
+         * 書き込みスレッドで実行する。JSON 本体が外部 (管理者) に編集されていれば、その内容をメモリに取り込む。
+         * 編集された項目が優先される。本体から消された項目はメモリに残るため、削除はサーバー停止中に行う。
+         */
+        private void mergeExternalEdits() {
+            try {
+                if (!Files.exists(primary)) {
+                    return;
+                }
+                FileTime modified = Files.getLastModifiedTime(primary);
+                if (modified.equals(knownModified)) {
+                    return;
+                }
+                Map<String, SpawnEntry> edited = readFile(primary);
+                int changed = 0;
+                synchronized (this) {
+                    for (Map.Entry<String, SpawnEntry> e : edited.entrySet()) {
+                        // 本体で書き換えられた項目のうち、メモリとも異なるものだけを取り込む
+                        if (!e.getValue().equals(onDisk.get(e.getKey())) && !e.getValue().equals(data.get(e.getKey()))) {
+                            index(e.getKey(), parseUuid(e.getKey()), e.getValue());
+                            changed++;
+                        }
+                    }
+                }
+                knownModified = modified;
+                onDisk = edited;
+                if (changed > 0) {
+                    generation++;
+                }
+                LOGGER.info("[RandomSpawn] merged {} edited spawn backup entries from {}", changed, primary);
+            } catch (IOException e) {
+                LOGGER.error("[RandomSpawn] Failed to read edited spawn backup", e);
+            }
+        }
+
+        private int replayJournal() throws IOException {
+            if (!Files.exists(journal)) {
+                return 0;
+            }
+            int replayed = 0;
+            SpawnMetrics.BACKUP_FILE_READS.increment();
+            try (BufferedReader reader = Files.newBufferedReader(journal, StandardCharsets.UTF_8)) {
+                String line;
+                while ((line = reader.readLine()) != null) {
+                    if (line.isBlank()) {
+                        continue;
+                    }
+                    try {
+                        JsonObject obj = JsonParser.parseString(line).getAsJsonObject();
+                        JsonElement key = obj.remove("uuid");
+                        if (key == null) {
+                            continue;
+                        }
+                        index(key.getAsString(), parseUuid(key.getAsString()), GSON.fromJson(obj, SpawnEntry.class));
+                        replayed++;
+                    } catch (JsonParseException | IllegalStateException e) {
+                        // 書き込み途中で停止した末尾行は捨てる
+                        LOGGER.warn("[RandomSpawn] skipped malformed spawn journal line in {}", journal);
+                    }
+                }
+            }
+            return replayed;
+        }
+
+        /** 書き込みスレッドで実行する */
+        private void append(List<Map.Entry<String, SpawnEntry>> entries) {
+            try {
+                if (journalOut == null) {
+                    journalOut = Files.newBufferedWriter(journal, StandardCharsets.UTF_8,
+                            StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+                }
+                for (Map.Entry<String, SpawnEntry> e : entries) {
+                    JsonObject obj = JOURNAL_GSON.toJsonTree(e.getValue()).getAsJsonObject();
+                    obj.addProperty("uuid", e.getKey());
+                    journalOut.write(JOURNAL_GSON.toJson(obj));
+                    journalOut.newLine();
+                }
+                journalOut.flush();
+                SpawnMetrics.BACKUP_APPENDS.add(entries.size());
+            } catch (IOException e) {
+                LOGGER.error("[RandomSpawn] Failed to append spawn journal", e);
+            }
+        }
+
+        /** 書き込みスレッドで実行する。メモリの内容で JSON 本体を置き換え、ジャーナルを空にする */
+        private void compact() {
+            try {
+                // 監視の通知より先に書き込む場合に備え、管理者の編集があれば上書きする前に取り込む
+                mergeExternalEdits();
+                Map<String, SpawnEntry> written = new HashMap<>(data);
+                try (BufferedWriter out = Files.newBufferedWriter(temp, StandardCharsets.UTF_8)) {
+                    GSON.toJson(written, TYPE, out);
+                }
+                try {
+                    Files.move(temp, primary, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+                } catch (AtomicMoveNotSupportedException e) {
+                    Files.move(temp, primary, StandardCopyOption.REPLACE_EXISTING);
+                }
+                knownModified = Files.getLastModifiedTime(primary);
+                onDisk = written;
+                SpawnMetrics.BACKUP_COMPACTIONS.increment();
+                // ここまでの追記は本体に含まれているため破棄してよい
+                if (journalOut != null) {
+                    journalOut.close();
+                    journalOut = null;
+                }
+                Files.deleteIfExists(journal);
+            } catch (IOException e) {
+                LOGGER.error("[RandomSpawn] Failed to compact spawn backup", e);
+            }
+        }
+
+        /** ここまでに予約した追記/まとめ直しが書き込みスレッドで終わるまで待つ */
+        void awaitWrites() throws InterruptedException, ExecutionException {
+            writer.submit(() -> {}).get();
+        }
+
+        void close() {
+            if (watcher != null) {
+                try {
+                    watcher.close();
+                } catch (IOException e) {
+                    LOGGER.warn("[RandomSpawn] Failed to close spawn backup watcher", e);
+                }
+            }
+            writer.execute(this::compact);
+            writer.shutdown();
+            try {
+                if (!writer.awaitTermination(STOP_TIMEOUT_SECONDS, TimeUnit.SECONDS)) {
+                    LOGGER.warn("[RandomSpawn] spawn backup writer did not finish in time; pending entries remain in {}", journal);
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    static final class SpawnEntry {
         final int x;
         final int y;
         final int z;
@@ -160,15 +560,18 @@ public final class RandomSpawnJsonBackup {
             this.dimension = dimension;
             this.name = name;
         }
-    }
 
-    private static class ReadResult {
-        final Map<String, SpawnEntry> data;
-        final Path source;
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (!(o instanceof SpawnEntry other)) return false;
+            return x == other.x && y == other.y && z == other.z
+                    && Objects.equals(dimension, other.dimension) && Objects.equals(name, other.name);
+        }
 
-        ReadResult(Map<String, SpawnEntry> data, Path source) {
-            this.data = data;
-            this.source = source;
+        @Override
+        public int hashCode() {
+            return Objects.hash(x, y, z, dimension, name);
         }
     }
 }
@@ -1,29 +1,83 @@
 package com.minecraft.randomspawn;
 
+import it.unimi.dsi.fastutil.longs.Long2ObjectOpenHashMap;
+import it.unimi.dsi.fastutil.longs.LongArrayList;
+import net.minecraft.core.BlockPos;
+import net.minecraft.core.SectionPos;
 import net.minecraft.nbt.CompoundTag;
+import net.minecraft.nbt.LongArrayTag;
 import net.minecraft.server.level.ServerLevel;
+import net.minecraft.world.level.ChunkPos;
 import net.minecraft.world.level.saveddata.SavedData;
+import org.jetbrains.annotations.Nullable;
 
+import java.util.ArrayDeque;
 import java.util.HashMap;
 import java.util.Map;
 import java.util.UUID;
 
+/**
+ * プレイヤーごとの割り当て済みスポーン。UUID の 2 つの long をキーにした {@link SpawnTable} に
+ * プリミティブで保持し、保存時は列から直接 NBT を組み立てる。形式は従来の
+ * players/&lt;uuid&gt;/{spawned,x,y,z} のままなので既存の randomspawn_storage.dat をそのまま読める。
+ */
 public class RandomSpawnStorage extends SavedData {
     private static final String DATA_NAME = "randomspawn_storage";
+    /** 割り当て済みスポーンの空間インデックスのセル一辺 (ブロック) */
+    private static final int INDEX_CELL_SIZE = 256;
 
-    private final Map<String, CompoundTag> players = new HashMap<>();
+    private final SpawnTable table;
+    /** UUID として読めないキーの項目。参照はできないが、保存時にそのまま書き戻す */
+    private final Map<String, CompoundTag> foreign = new HashMap<>();
+    private final ArrayDeque<BlockPos> reservoir = new ArrayDeque<>();
+    /** 割り当て済みスポーン (オフラインのプレイヤー分も含む) の空間インデックス */
+    private final SpawnSpatialIndex spawnIndex = new SpawnSpatialIndex(INDEX_CELL_SIZE);
+    /**
+     * チャンク → そのチャンクにあるスポーンの UUID (上位/下位 long の組を並べたもの)。
+     * ブロック変更の通知から再検証対象を引くために使う。保存はせず、読み込み時と変更時に組み立てる
+     */
+    private final Long2ObjectOpenHashMap<LongArrayList> chunkSpawns = new Long2ObjectOpenHashMap<>();
+    /** Poisson-disk 抽選用の点集合。保存はせず、必要になったときに割り当て済みスポーンから作り直す */
+    private SpawnSampler sampler;
 
     public static RandomSpawnStorage get(ServerLevel level) {
         return level.getDataStorage().computeIfAbsent(RandomSpawnStorage::load, RandomSpawnStorage::new, DATA_NAME);
     }
 
-    public RandomSpawnStorage() {}
+    public RandomSpawnStorage() {
+        this(0);
+    }
+
+    private RandomSpawnStorage(int expected) {
+        this.table = new SpawnTable(expected);
+    }
 
     public static RandomSpawnStorage load(CompoundTag tag) {
-        RandomSpawnStorage storage = new RandomSpawnStorage();
         CompoundTag playersTag = tag.getCompound("players");
+        RandomSpawnStorage storage = new RandomSpawnStorage(playersTag.size());
         for (String key : playersTag.getAllKeys()) {
-            storage.players.put(key, playersTag.getCompound(key));
+            CompoundTag t = playersTag.getCompound(key);
+            UUID uuid;
+            try {
+                uuid = UUID.fromString(key);
+            } catch (IllegalArgumentException e) {
+                storage.foreign.put(key, t);
+                continue;
+            }
+            int slot = storage.table.findOrAdd(uuid.getMostSignificantBits(), uuid.getLeastSignificantBits());
+            storage.table.setSpawned(slot, t.getBoolean("spawned"));
+            storage.table.setManual(slot, t.getBoolean("manual"));
+            if (t.contains("x")) {
+                int x = t.getInt("x");
+                int y = t.getInt("y");
+                int z = t.getInt("z");
+                storage.table.setPos(slot, x, y, z);
+                storage.table.setIndexId(slot, storage.spawnIndex.add(x, y, z));
+                storage.indexChunk(uuid.getMostSignificantBits(), uuid.getLeastSignificantBits(), x, z);
+            }
+        }
+        for (long packed : tag.getLongArray("reservoir")) {
+            storage.reservoir.add(BlockPos.of(packed));
         }
         return storage;
     }
@@ -31,34 +85,235 @@ public class RandomSpawnStorage extends SavedData {
     @Override
     public CompoundTag save(CompoundTag tag) {
         CompoundTag playersTag = new CompoundTag();
-        for (Map.Entry<String, CompoundTag> e : players.entrySet()) {
-            playersTag.put(e.getKey(), e.getValue().copy());
+        for (int slot = 0; slot < table.capacity(); slot++) {
+            if (!table.isUsed(slot)) {
+                continue;
+            }
+            CompoundTag t = new CompoundTag();
+            t.putBoolean("spawned", table.isSpawned(slot));
+            if (table.isManual(slot)) {
+                t.putBoolean("manual", true);
+            }
+            if (table.hasPos(slot)) {
+                t.putInt("x", table.x(slot));
+                t.putInt("y", table.y(slot));
+                t.putInt("z", table.z(slot));
+            }
+            playersTag.put(new UUID(table.msb(slot), table.lsb(slot)).toString(), t);
+        }
+        for (Map.Entry<String, CompoundTag> e : foreign.entrySet()) {
+            playersTag.put(e.getKey(), e.getValue());
         }
         tag.put("players", playersTag);
+        long[] packed = new long[reservoir.size()];
+        int i = 0;
+        for (BlockPos pos : reservoir) {
+            packed[i++] = pos.asLong();
+        }
+        tag.put("reservoir", new LongArrayTag(packed));
         return tag;
     }
 
     public boolean isSpawned(UUID uuid) {
-        CompoundTag t = players.get(uuid.toString());
-        return t != null && t.getBoolean("spawned");
+        int slot = table.find(uuid);
+        return slot != SpawnTable.NONE && table.isSpawned(slot);
+    }
+
+    /** 管理者が JSON で書き換えた座標か。再検証で落ちても自動では割り当て直さない */
+    public boolean isManual(UUID uuid) {
+        int slot = table.find(uuid);
+        return slot != SpawnTable.NONE && table.isManual(slot);
+    }
+
+    public void setManual(UUID uuid, boolean manual) {
+        int slot = table.find(uuid);
+        if (slot != SpawnTable.NONE && table.isManual(slot) != manual) {
+            table.setManual(slot, manual);
+            setDirty();
+        }
     }
 
     public BlockPosData getSpawn(UUID uuid) {
-        CompoundTag t = players.get(uuid.toString());
-        if (t == null) return null;
-        if (!t.contains("x")) return null;
-        return new BlockPosData(t.getInt("x"), t.getInt("y"), t.getInt("z"));
+        int slot = table.find(uuid);
+        if (slot == SpawnTable.NONE || !table.hasPos(slot)) return null;
+        return new BlockPosData(table.x(slot), table.y(slot), table.z(slot));
     }
 
+    /**
+     * スポーンを記録する。既に同じ座標が記録済みなら何もしない (リスポーンごとの保存を発生させない)。
+     */
     public void setSpawn(UUID uuid, int x, int y, int z) {
-        CompoundTag t = players.computeIfAbsent(uuid.toString(), k -> new CompoundTag());
-        t.putBoolean("spawned", true);
-        t.putInt("x", x);
-        t.putInt("y", y);
-        t.putInt("z", z);
+        int slot = table.findOrAdd(uuid.getMostSignificantBits(), uuid.getLeastSignificantBits());
+        if (table.isSpawned(slot) && table.hasPos(slot)
+                && table.x(slot) == x && table.y(slot) == y && table.z(slot) == z) {
+            return;
+        }
+        table.setSpawned(slot, true);
+        moveChunk(slot, x, z);
+        table.setPos(slot, x, y, z);
+        int id = table.indexId(slot);
+        if (id != SpawnTable.NONE) {
+            spawnIndex.move(id, x, y, z);
+        } else {
+            table.setIndexId(slot, spawnIndex.add(x, y, z));
+        }
+        if (sampler != null) {
+            sampler.occupy(x, z);
+        }
+        SpawnMetrics.STORAGE_CHANGES.increment();
+        setDirty();
+    }
+
+    /**
+     * 参加前のプレイヤーにスポーンを予約する。スポーン済みにはせず、初回参加時に {@link SpawnResolver} がこの座標へ配置する。
+     * 予約した地点も他プレイヤーとの距離判定に含まれる。
+     */
+    public void preassign(UUID uuid, int x, int y, int z) {
+        int slot = table.findOrAdd(uuid.getMostSignificantBits(), uuid.getLeastSignificantBits());
+        if (table.isSpawned(slot)) {
+            return;
+        }
+        moveChunk(slot, x, z);
+        table.setPos(slot, x, y, z);
+        int id = table.indexId(slot);
+        if (id != SpawnTable.NONE) {
+            spawnIndex.move(id, x, y, z);
+        } else {
+            table.setIndexId(slot, spawnIndex.add(x, y, z));
+        }
+        if (sampler != null) {
+            sampler.occupy(x, z);
+        }
+        SpawnMetrics.STORAGE_CHANGES.increment();
         setDirty();
     }
 
+    /**
+     * 割り当て済みスポーンのうち、exclude 以外のものが半径 radius 未満にあるか。
+     */
+    public boolean isNearAssignedSpawn(double x, double y, double z, double radius, @Nullable UUID exclude) {
+        int excludeId = -1;
+        if (exclude != null) {
+            int slot = table.find(exclude);
+            if (slot != SpawnTable.NONE) {
+                excludeId = table.indexId(slot);
+            }
+        }
+        return spawnIndex.anyWithin(x, y, z, radius, excludeId);
+    }
+
+    /** {@link #forEachSpawnInColumn} に渡す処理。割り当てを避けるため UUID は 2 つの long で渡す */
+    @FunctionalInterface
+    public interface SpawnVisitor {
+        void visit(long msb, long lsb, int x, int y, int z);
+    }
+
+    /**
+     * 列 (x, z) にある割り当て済み/予約済みのスポーンを visitor に渡す。該当チャンクにスポーンがなければハッシュ参照 1 回で終わる。
+     */
+    public void forEachSpawnInColumn(int x, int z, SpawnVisitor visitor) {
+        LongArrayList entries = chunkSpawns.get(chunkKey(x, z));
+        if (entries == null) {
+            return;
+        }
+        for (int i = 0; i < entries.size(); i += 2) {
+            long msb = entries.getLong(i);
+            long lsb = entries.getLong(i + 1);
+            int slot = table.find(msb, lsb);
+            if (slot != SpawnTable.NONE && table.hasPos(slot) && table.x(slot) == x && table.z(slot) == z) {
+                visitor.visit(msb, lsb, x, table.y(slot), z);
+            }
+        }
+    }
+
+    private void moveChunk(int slot, int x, int z) {
+        long msb = table.msb(slot);
+        long lsb = table.lsb(slot);
+        if (table.hasPos(slot)) {
+            long oldChunk = chunkKey(table.x(slot), table.z(slot));
+            if (oldChunk == chunkKey(x, z)) {
+                return;
+            }
+            LongArrayList entries = chunkSpawns.get(oldChunk);
+            if (entries != null) {
+                for (int i = 0; i < entries.size(); i += 2) {
+                    if (entries.getLong(i) == msb && entries.getLong(i + 1) == lsb) {
+                        // 末尾の組と入れ替えて詰める
+                        int last = entries.size() - 2;
+                        entries.set(i, entries.getLong(last));
+                        entries.set(i + 1, entries.getLong(last + 1));
+                        entries.size(last);
+                        break;
+                    }
+                }
+                if (entries.isEmpty()) {
+                    chunkSpawns.remove(oldChunk);
+                }
+            }
+        }
+        indexChunk(msb, lsb, x, z);
+    }
+
+    private void indexChunk(long msb, long lsb, int x, int z) {
+        LongArrayList entries = chunkSpawns.computeIfAbsent(chunkKey(x, z), key -> new LongArrayList(2));
+        entries.add(msb);
+        entries.add(lsb);
+    }
+
+    private static long chunkKey(int x, int z) {
+        return ChunkPos.asLong(SectionPos.blockToSectionCoord(x), SectionPos.blockToSectionCoord(z));
+    }
+
+    public int reservoirSize() {
+        return reservoir.size();
+    }
+
+    public BlockPos pollReservoir() {
+        BlockPos pos = reservoir.pollFirst();
+        if (pos != null) {
+            setDirty();
+        }
+        return pos;
+    }
+
+    public void addToReservoir(BlockPos pos) {
+        reservoir.addLast(pos.immutable());
+        if (sampler != null) {
+            sampler.occupy(pos.getX(), pos.getZ());
+        }
+        setDirty();
+    }
+
+    public boolean isNearReservoir(BlockPos pos, int minDistance) {
+        long minSq = (long) minDistance * minDistance;
+        for (BlockPos pooled : reservoir) {
+            if (pooled.distSqr(pos) < minSq) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * 指定の範囲設定に合う抽選用点集合を返す。設定が変わっていれば作り直し、
+     * 割り当て済みスポーンとプール内の地点を占有済みとして反映する。
+     */
+    public SpawnSampler sampler(int centerX, int centerZ, int range, int minDistance, long seed) {
+        if (sampler == null || !sampler.matches(centerX, centerZ, range, minDistance)) {
+            SpawnSampler built = new SpawnSampler(centerX, centerZ, range, minDistance, seed);
+            for (int slot = 0; slot < table.capacity(); slot++) {
+                if (table.isUsed(slot) && table.hasPos(slot)) {
+                    built.occupy(table.x(slot), table.z(slot));
+                }
+            }
+            for (BlockPos pos : reservoir) {
+                built.occupy(pos.getX(), pos.getZ());
+            }
+            sampler = built;
+        }
+        return sampler;
+    }
+
     public static class BlockPosData {
         public final int x, y, z;
         public BlockPosData(int x, int y, int z) {
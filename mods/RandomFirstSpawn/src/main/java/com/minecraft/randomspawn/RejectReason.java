@@ -0,0 +1,35 @@
+package com.minecraft.randomspawn;
+
+/**
+ * 候補地点を却下した理由。
+ */
+public enum RejectReason {
+    OUT_OF_BOUNDS(Scope.PERMANENT),
+    BELOW_MIN_HEIGHT(Scope.PERMANENT),
+    OCEAN_OR_RIVER(Scope.PERMANENT),
+    WATER(Scope.LOCAL),
+    LAVA(Scope.LOCAL),
+    NOT_STURDY(Scope.LOCAL),
+    FEET_BLOCKED(Scope.LOCAL),
+    HEAD_BLOCKED(Scope.LOCAL),
+    NOT_FLAT(Scope.LOCAL),
+    TOO_CLOSE(Scope.TRANSIENT),
+    /** {@link SpawnConstraints#register} で追加された条件 */
+    CUSTOM(Scope.LOCAL);
+
+    /**
+     * PERMANENT は周囲にずらしても変わらない理由、LOCAL はその地点固有の理由、
+     * TRANSIENT はプレイヤーの移動などで変わりうる理由。
+     */
+    public enum Scope { PERMANENT, LOCAL, TRANSIENT }
+
+    private final Scope scope;
+
+    RejectReason(Scope scope) {
+        this.scope = scope;
+    }
+
+    public Scope scope() {
+        return scope;
+    }
+}
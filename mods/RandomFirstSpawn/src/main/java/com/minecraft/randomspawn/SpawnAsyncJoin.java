@@ -0,0 +1,269 @@
+package com.minecraft.randomspawn;
+
+import net.minecraft.core.BlockPos;
+import net.minecraft.core.SectionPos;
+import net.minecraft.server.MinecraftServer;
+import net.minecraft.server.level.ServerLevel;
+import net.minecraft.server.level.ServerPlayer;
+import net.minecraft.util.RandomSource;
+import net.minecraft.world.phys.Vec3;
+import net.minecraftforge.event.TickEvent;
+import net.minecraftforge.event.entity.living.LivingAttackEvent;
+import net.minecraftforge.event.entity.player.PlayerEvent;
+import net.minecraftforge.event.server.ServerStoppedEvent;
+import net.minecraftforge.eventbus.api.SubscribeEvent;
+import net.minecraftforge.fml.common.Mod;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 初回参加時の非同期スポーン探索 (asyncFirstJoin)。
+ * <p>
+ * 前段フィルタと判定パイプラインは {@link RandomSpawnHandler#findSafeSpawn} と同じだが、候補のチャンクは
+ * {@link SpawnChunkLoader#prefetchCandidate} で読み込み/生成を依頼するだけで待たず、ティックの終わりごとに完了を確かめてから判定する。
+ * 同時に依頼する候補は {@link SpawnBatchSize} の K 個まで。
+ * 採用した地点も FULL への昇格が終わってから移動させるため、サーバースレッドはワールド生成を待たない。
+ * <p>
+ * 探索中のプレイヤーは参加した位置 (新規ならバニラの初期位置) に留め、ダメージを受けないようにする。
+ * 制限時間 asyncJoinTimeoutSeconds を超えるか、試行回数 (同期探索の 2 回分と同じ maxTries の 10 倍) を使い切ったら、
+ * 同期探索の最終手段と同じく共有スポーン地点を判定して代用する。それも使えなければその場で解放する。
+ */
+@Mod.EventBusSubscriber
+public final class SpawnAsyncJoin {
+    /** 1 ティックに 1 人あたり引く候補の上限 (前段フィルタで落ちた分も数える) */
+    private static final int DRAWS_PER_TICK = 16;
+    /** 保持位置からこれ以上動いたら戻す (距離の 2 乗) */
+    private static final double HOLD_SLACK_SQ = 0.25;
+
+    private static final class Pending {
+        final UUID uuid;
+        final SpawnChunkLoader chunks;
+        final RandomSource random;
+        @Nullable
+        final SpawnSampler sampler;
+        final long startNanos = System.nanoTime();
+        final long deadlineNanos;
+        int triesLeft;
+        int tries;
+        /** 保持する位置。参加後の最初のティックで決める */
+        @Nullable
+        Vec3 hold;
+        /** チャンクの読み込みを待っている候補 (依頼順) */
+        final List<RandomSpawnHandler.Candidate> inFlight = new ArrayList<>();
+        /** 採用済みで、FULL への昇格を待っている地点 */
+        @Nullable
+        BlockPos accepted;
+        @Nullable
+        CompletableFuture<Boolean> acceptedReady;
+
+        Pending(UUID uuid, SpawnChunkLoader chunks, RandomSource random, @Nullable SpawnSampler sampler, long deadlineNanos, int tries) {
+            this.uuid = uuid;
+            this.chunks = chunks;
+            this.random = random;
+            this.sampler = sampler;
+            this.deadlineNanos = deadlineNanos;
+            this.triesLeft = tries;
+        }
+    }
+
+    /** 参加順 */
+    private static final Map<UUID, Pending> PENDING = new LinkedHashMap<>();
+
+    private SpawnAsyncJoin() {}
+
+    /** 探索を始める。プレイヤーの移動はティックの終わりに行う。サーバースレッドから呼ぶ */
+    static void start(ServerLevel level, ServerPlayer player) {
+        cancel(player.getUUID());
+        SpawnSettings settings = SpawnSettings.get();
+        SpawnSampler sampler = null;
+        if (settings.samplingMode() == Config.SamplingMode.POISSON) {
+            BlockPos center = level.getSharedSpawnPos();
+            sampler = RandomSpawnStorage.get(level).sampler(center.getX(), center.getZ(), settings.spawnRange(),
+                    settings.minDistance(), level.getSeed());
+            sampler.beginSearch();
+        }
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(settings.asyncJoinTimeoutSeconds());
+        PENDING.put(player.getUUID(), new Pending(player.getUUID(), new SpawnChunkLoader(level, settings),
+                player.getRandom(), sampler, deadline, settings.maxTries() * 10));
+        SpawnMetrics.ASYNC_JOINS.increment();
+    }
+
+    /** いま探索を待たせているプレイヤー数 */
+    public static int holding() {
+        return PENDING.size();
+    }
+
+    @SubscribeEvent
+    public static void onServerTick(TickEvent.ServerTickEvent event) {
+        if (event.phase != TickEvent.Phase.END || PENDING.isEmpty()) {
+            return;
+        }
+        MinecraftServer server = event.getServer();
+        ServerLevel level = server.overworld();
+        Iterator<Pending> it = PENDING.values().iterator();
+        while (it.hasNext()) {
+            Pending pending = it.next();
+            ServerPlayer player = server.getPlayerList().getPlayer(pending.uuid);
+            if (player == null) {
+                // 参加が途中で失敗した場合 (通常はログアウトで片付く)
+                pending.chunks.finish(null);
+                it.remove();
+                continue;
+            }
+            if (advance(level, player, pending)) {
+                it.remove();
+            } else {
+                hold(player, pending);
+            }
+        }
+    }
+
+    /** 探索を 1 ティック分進める。配置または解放まで終わったら true */
+    private static boolean advance(ServerLevel level, ServerPlayer player, Pending pending) {
+        SpawnSettings settings = pending.chunks.settings();
+        if (pending.accepted != null) {
+            if (!pending.acceptedReady.isDone()) {
+                if (!expired(pending)) {
+                    return false;
+                }
+            } else if (pending.acceptedReady.join()) {
+                place(level, player, pending);
+                return true;
+            } else {
+                pending.accepted = null;
+                pending.acceptedReady = null;
+            }
+        }
+        // 読み込み終わった候補から判定する。チャンクは揃っているので待たない
+        Iterator<RandomSpawnHandler.Candidate> it = pending.inFlight.iterator();
+        while (it.hasNext()) {
+            RandomSpawnHandler.Candidate candidate = it.next();
+            if (!candidate.isReady()) {
+                continue;
+            }
+            it.remove();
+            BlockPos pos = RandomSpawnHandler.evaluate(pending.chunks, candidate, player, pending.sampler, settings);
+            if (pos != null) {
+                SpawnMetrics.TRIES_PER_SUCCESS.record(pending.tries);
+                SpawnMetrics.SPECULATIVE_DISCARDS.add(pending.inFlight.size());
+                pending.inFlight.clear();
+                pending.accepted = pos;
+                pending.acceptedReady = pending.chunks.prefetchSpawn(pos);
+                return false;
+            }
+        }
+        if (expired(pending) || (pending.triesLeft <= 0 && pending.inFlight.isEmpty())) {
+            fallback(level, player, pending);
+            return true;
+        }
+        draw(level, pending, settings);
+        return false;
+    }
+
+    private static boolean expired(Pending pending) {
+        return System.nanoTime() >= pending.deadlineNanos;
+    }
+
+    /** 前段フィルタを通る候補を K 個になるまで引き、判定に要るチャンクの読み込みを依頼する */
+    private static void draw(ServerLevel level, Pending pending, SpawnSettings settings) {
+        int k = SpawnBatchSize.next(settings.searchBatch());
+        BlockPos center = level.getSharedSpawnPos();
+        for (int i = 0; i < DRAWS_PER_TICK && pending.inFlight.size() < k && pending.triesLeft > 0; i++) {
+            pending.triesLeft--;
+            pending.tries++;
+            // Poisson-disk の点はほかのプレイヤーの探索と共有するため、判定が終わるまで飛ばしておく
+            RandomSpawnHandler.Candidate candidate = RandomSpawnHandler.drawCandidate(pending.chunks, pending.random,
+                    pending.sampler, center, settings, true);
+            if (candidate != null) {
+                candidate.chunksReady = pending.chunks.prefetchCandidate(candidate.x, candidate.z);
+                pending.inFlight.add(candidate);
+            }
+        }
+    }
+
+    private static void place(ServerLevel level, ServerPlayer player, Pending pending) {
+        BlockPos pos = pending.accepted;
+        // FULL への昇格は済んでいるので待たない
+        pending.chunks.finish(pos);
+        SpawnResolver.completeAsync(level, player, pos);
+        RandomSpawnHandler.applySpawn(player, level, pos, player.getYRot());
+        long waitedMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - pending.startNanos);
+        SpawnMetrics.ASYNC_JOIN_WAIT.record(waitedMillis);
+        if (RandomSpawnHandler.isDebugEnabled()) {
+            RandomSpawnHandler.debug(String.format("async: assigned spawn (%d,%d,%d) for %s after %dms, %d tries",
+                    pos.getX(), pos.getY(), pos.getZ(), player.getGameProfile().getName(), waitedMillis, pending.tries));
+        }
+    }
+
+    /**
+     * 共有スポーン地点を判定して代用する。共有スポーン地点のチャンクは常に読み込まれているので待たない
+     * (読み込まれていなければ判定せず、その場で解放する)。
+     */
+    private static void fallback(ServerLevel level, ServerPlayer player, Pending pending) {
+        pending.chunks.finish(null);
+        SpawnMetrics.ASYNC_JOIN_TIMEOUTS.increment();
+        BlockPos center = level.getSharedSpawnPos();
+        BlockPos spawnPos = null;
+        if (level.getChunkSource().hasChunk(SectionPos.blockToSectionCoord(center.getX()), SectionPos.blockToSectionCoord(center.getZ()))) {
+            SpawnChunkLoader chunks = SpawnChunkLoader.recheck(level);
+            BlockPos candidate = new BlockPos(center.getX(), chunks.height(center.getX(), center.getZ()), center.getZ());
+            if (RandomSpawnHandler.isLocationSafe(chunks, candidate, player)) {
+                spawnPos = candidate;
+            }
+            chunks.finish(spawnPos);
+        }
+        SpawnResolver.completeAsync(level, player, spawnPos);
+        if (spawnPos != null) {
+            RandomSpawnHandler.applySpawn(player, level, spawnPos, player.getYRot());
+        }
+        SpawnMetrics.ASYNC_JOIN_WAIT.record(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - pending.startNanos));
+        if (RandomSpawnHandler.isDebugEnabled()) {
+            RandomSpawnHandler.debug(String.format("async: no spawn found after %d tries; %s", pending.tries,
+                    spawnPos != null ? "using shared spawn" : "keeping vanilla position"));
+        }
+    }
+
+    /** 探索中は保持位置に留める。落下や移動で離れたら戻す */
+    private static void hold(ServerPlayer player, Pending pending) {
+        if (pending.hold == null) {
+            pending.hold = player.position();
+            return;
+        }
+        player.fallDistance = 0.0f;
+        if (player.connection != null && player.position().distanceToSqr(pending.hold) > HOLD_SLACK_SQ) {
+            player.connection.teleport(pending.hold.x, pending.hold.y, pending.hold.z, player.getYRot(), player.getXRot());
+        }
+    }
+
+    @SubscribeEvent
+    public static void onLivingAttack(LivingAttackEvent event) {
+        if (!PENDING.isEmpty() && event.getEntity() instanceof ServerPlayer player && PENDING.containsKey(player.getUUID())) {
+            event.setCanceled(true);
+        }
+    }
+
+    @SubscribeEvent
+    public static void onPlayerLogout(PlayerEvent.PlayerLoggedOutEvent event) {
+        cancel(event.getEntity().getUUID());
+    }
+
+    private static void cancel(UUID uuid) {
+        Pending pending = PENDING.remove(uuid);
+        if (pending != null) {
+            pending.chunks.finish(null);
+        }
+    }
+
+    @SubscribeEvent
+    public static void onServerStopped(ServerStoppedEvent event) {
+        PENDING.clear();
+    }
+}
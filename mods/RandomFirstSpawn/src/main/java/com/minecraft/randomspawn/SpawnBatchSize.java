@@ -0,0 +1,49 @@
+package com.minecraft.randomspawn;
+
+import net.minecraft.Util;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * 並列に評価する候補数 K を、最近の採用率から決める。
+ * チャンクまで読んで判定した候補のうち採用されたものの割合 p を指数移動平均で追い、K = ceil(1 / p) を searchBatch で抑える。
+ * 1 回の一括依頼で 1 つ以上が通る確率はおよそ 1 - (1 - p)^(1/p) ≈ 63% で、それ以上増やしても捨てる生成が増えるだけになる。
+ * 集計はサーバースレッドでのみ行う。
+ */
+public final class SpawnBatchSize {
+    private static final double ALPHA = 0.05;
+
+    private static double acceptRate = 0.25;
+    private static int last = 1;
+
+    private SpawnBatchSize() {}
+
+    /** 次の一括依頼の候補数。max が 1 以下なら 1 (逐次) */
+    static int next(int max) {
+        if (max <= 1) {
+            last = 1;
+            return 1;
+        }
+        double rate = Math.max(acceptRate, 1.0 / max);
+        last = Math.max(1, Math.min(max, (int) Math.ceil(1.0 / rate)));
+        return last;
+    }
+
+    /** チャンクまで読んで判定した候補 1 件の結果 */
+    static void record(boolean accepted) {
+        acceptRate += ALPHA * ((accepted ? 1.0 : 0.0) - acceptRate);
+    }
+
+    /** ワールド生成のワーカー数。並列評価の効果はこれで頭打ちになる */
+    static int workerThreads() {
+        ExecutorService executor = Util.backgroundExecutor();
+        return executor instanceof ForkJoinPool pool ? pool.getParallelism() : -1;
+    }
+
+    public static String summary() {
+        return String.format("batch: k=%d acceptRate=%.3f discarded=%d cores=%d workers=%d",
+                last, acceptRate, SpawnMetrics.SPECULATIVE_DISCARDS.sum(),
+                Runtime.getRuntime().availableProcessors(), workerThreads());
+    }
+}
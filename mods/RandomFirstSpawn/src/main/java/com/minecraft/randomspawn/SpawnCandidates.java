@@ -0,0 +1,103 @@
+package com.minecraft.randomspawn;
+
+import com.minecraft.randomspawn.tool.RegionScanner;
+import com.mojang.logging.LogUtils;
+import it.unimi.dsi.fastutil.longs.LongArrayFIFOQueue;
+import net.minecraft.core.BlockPos;
+import net.minecraft.server.MinecraftServer;
+import net.minecraft.server.level.ServerLevel;
+import net.minecraft.world.level.storage.LevelResource;
+import net.minecraftforge.event.server.ServerStartedEvent;
+import net.minecraftforge.event.server.ServerStoppedEvent;
+import net.minecraftforge.eventbus.api.SubscribeEvent;
+import net.minecraftforge.fml.common.Mod;
+import org.jetbrains.annotations.Nullable;
+import org.slf4j.Logger;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+/**
+ * オフラインのリージョン走査 ({@link RegionScanner}) が書いた候補一覧。
+ * 起動時に読み込み、現在のスポーン範囲外の地点と、割り当て済み/プール内のスポーンに近い地点を除いて保持する。
+ * {@link SpawnReservoir} は補充時に探索より先にここから取り出し、通常の判定で再検証してからプールに入れる。
+ * 一覧のファイルは書き換えない (使った地点は次回起動時に割り当て済みスポーンとの距離で除かれる)。
+ */
+@Mod.EventBusSubscriber
+public final class SpawnCandidates {
+    private static final Logger LOGGER = LogUtils.getLogger();
+
+    /** {@link BlockPos#asLong} 形式 */
+    private static final LongArrayFIFOQueue QUEUE = new LongArrayFIFOQueue();
+
+    private SpawnCandidates() {}
+
+    /** 次の候補。一覧が尽きていれば null */
+    @Nullable
+    static BlockPos poll() {
+        return QUEUE.isEmpty() ? null : BlockPos.of(QUEUE.dequeueLong());
+    }
+
+    @SubscribeEvent
+    public static void onServerStarted(ServerStartedEvent event) {
+        MinecraftServer server = event.getServer();
+        Path file = server.getWorldPath(LevelResource.ROOT).resolve("serverconfig").resolve("randomspawn").resolve(RegionScanner.OUTPUT_FILE);
+        if (!Files.exists(file)) {
+            return;
+        }
+        ServerLevel level = server.overworld();
+        RandomSpawnStorage storage = RandomSpawnStorage.get(level);
+        SpawnSettings settings = SpawnSettings.get();
+        BlockPos center = level.getSharedSpawnPos();
+        int read = 0;
+        int skipped = 0;
+        QUEUE.clear();
+        try (BufferedReader reader = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                line = line.trim();
+                if (line.isEmpty() || line.startsWith("#")) {
+                    continue;
+                }
+                String[] parts = line.split("\\s+");
+                if (parts.length != 3) {
+                    skipped++;
+                    continue;
+                }
+                int x;
+                int y;
+                int z;
+                try {
+                    x = Integer.parseInt(parts[0]);
+                    y = Integer.parseInt(parts[1]);
+                    z = Integer.parseInt(parts[2]);
+                } catch (NumberFormatException e) {
+                    skipped++;
+                    continue;
+                }
+                read++;
+                BlockPos pos = new BlockPos(x, y, z);
+                if (Math.abs(x - center.getX()) > settings.spawnRange() || Math.abs(z - center.getZ()) > settings.spawnRange()
+                        || storage.isNearAssignedSpawn(x, y, z, settings.minDistance(), null)
+                        || storage.isNearReservoir(pos, settings.minDistance())) {
+                    skipped++;
+                    continue;
+                }
+                QUEUE.enqueue(pos.asLong());
+            }
+        } catch (IOException e) {
+            LOGGER.error("[RandomSpawn] Failed to read spawn candidates from {}", file, e);
+            return;
+        }
+        LOGGER.info("[RandomSpawn] loaded {} of {} pre-computed spawn candidates from {} ({} skipped)",
+                QUEUE.size(), read, file.getFileName(), skipped);
+    }
+
+    @SubscribeEvent
+    public static void onServerStopped(ServerStoppedEvent event) {
+        QUEUE.clear();
+    }
+}
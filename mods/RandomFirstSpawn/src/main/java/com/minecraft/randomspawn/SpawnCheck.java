@@ -0,0 +1,24 @@
+package com.minecraft.randomspawn;
+
+import net.minecraft.core.BlockPos;
+import net.minecraft.server.level.ServerPlayer;
+import org.jetbrains.annotations.Nullable;
+
+/**
+ * {@link SpawnPipeline} が評価する条件 1 つ。W は判定で読むワールド。
+ * 公開の拡張点は W を {@link SpawnChunkLoader} に固定した {@link SpawnConstraint}。
+ * {@link SpawnSearchWorld} だけで判定できる条件は W を型変数のままにしておけば、ベンチマークの合成地形でも同じものを使える。
+ */
+interface SpawnCheck<W extends SpawnSearchWorld> {
+    String name();
+
+    RejectReason reason();
+
+    default RejectReason.Scope scope() {
+        return reason().scope();
+    }
+
+    long estimatedNanos();
+
+    boolean test(W world, BlockPos pos, @Nullable ServerPlayer self, SpawnSettings settings);
+}
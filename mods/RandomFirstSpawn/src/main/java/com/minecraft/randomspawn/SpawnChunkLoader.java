@@ -0,0 +1,300 @@
+package com.minecraft.randomspawn;
+
+import it.unimi.dsi.fastutil.longs.Long2ObjectOpenHashMap;
+import it.unimi.dsi.fastutil.longs.LongIterator;
+import it.unimi.dsi.fastutil.longs.LongOpenHashSet;
+import net.minecraft.Util;
+import net.minecraft.core.BlockPos;
+import net.minecraft.core.Holder;
+import net.minecraft.core.QuartPos;
+import net.minecraft.core.SectionPos;
+import net.minecraft.server.level.ServerChunkCache;
+import net.minecraft.server.level.ServerLevel;
+import net.minecraft.server.level.ServerPlayer;
+import net.minecraft.server.level.TicketType;
+import net.minecraft.world.level.ChunkPos;
+import net.minecraft.world.level.biome.Biome;
+import net.minecraft.world.level.block.state.BlockState;
+import net.minecraft.world.level.chunk.ChunkAccess;
+import net.minecraft.world.level.chunk.ChunkStatus;
+import net.minecraft.world.level.levelgen.Heightmap;
+import net.minecraft.world.level.material.FluidState;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * 1 回のスポーン探索で触るチャンクを管理する。
+ * 部分ロードが有効な場合、候補チャンクは MOTION_BLOCKING_NO_LEAVES が確定する最小ステータス
+ * ({@link ChunkStatus#FEATURES}) までしか生成せず、決定した地点のチャンクだけを FULL に昇格する。
+ * 探索中はチケットで保持し、{@link #finish} で不採用チャンクのチケットを明示的に外す。
+ * 決まった地点を確かめ直すだけのもの (プールからの払い出し、再検証など) は {@link #recheck} で作り、探索の統計には数えない。
+ */
+public final class SpawnChunkLoader implements SpawnSearchWorld {
+    /** 探索中の候補チャンクを保持するチケット。解放漏れに備えて寿命を付けておく */
+    private static final TicketType<ChunkPos> SEARCH_TICKET =
+            TicketType.create("randomspawn_search", Comparator.comparingLong(ChunkPos::toLong), 20 * 15);
+    /** 決定した地点のチャンクをプレイヤー配置まで保持するチケット */
+    private static final TicketType<ChunkPos> SPAWN_TICKET =
+            TicketType.create("randomspawn_spawn", Comparator.comparingLong(ChunkPos::toLong), 20 * 10);
+
+    private final ServerLevel level;
+    private final SpawnSettings settings;
+    private final SpawnTerrainIndex terrain;
+    private final ChunkStatus status;
+    private final int ticketDistance;
+    private final Long2ObjectOpenHashMap<ChunkAccess> chunks = new Long2ObjectOpenHashMap<>();
+    /** SEARCH_TICKET を付けたチャンク。{@link #prefetch} しただけで読まなかったものも含め、{@link #finish} で外す */
+    private final LongOpenHashSet ticketed = new LongOpenHashSet();
+    private final long startNanos;
+    private final long heapBefore;
+    /** false なら探索ではなく確認のみ ({@link #recheck}) */
+    private final boolean search;
+    private int loaded;
+    private int tries;
+    private final SpawnSearchEvent event = new SpawnSearchEvent();
+    private ChunkStatus highestStatus = ChunkStatus.EMPTY;
+
+    public SpawnChunkLoader(ServerLevel level) {
+        this(level, SpawnSettings.get());
+    }
+
+    public SpawnChunkLoader(ServerLevel level, SpawnSettings settings) {
+        this(level, settings, true);
+    }
+
+    private SpawnChunkLoader(ServerLevel level, SpawnSettings settings, boolean search) {
+        this.level = level;
+        this.settings = settings;
+        this.search = search;
+        this.terrain = SpawnTerrainIndex.get(level);
+        this.status = settings.partialChunkLoading() ? ChunkStatus.FEATURES : ChunkStatus.FULL;
+        // addRegionTicket の距離は FULL (レベル 33) から内向きに数えるため、FULL 未満のステータスでは負になる
+        this.ticketDistance = -ChunkStatus.getDistance(status);
+        this.startNanos = System.nanoTime();
+        this.heapBefore = usedHeap();
+        if (search) {
+            event.begin();
+        }
+    }
+
+    /**
+     * 決まった地点を読み込んで判定し直すためのもの。チケットの扱いは探索と同じだが、
+     * {@link #finish} は探索回数・探索時間・JFR の SpawnSearch イベントではなく確認の回数として記録する。
+     */
+    public static SpawnChunkLoader recheck(ServerLevel level) {
+        return recheck(level, SpawnSettings.get());
+    }
+
+    public static SpawnChunkLoader recheck(ServerLevel level, SpawnSettings settings) {
+        return new SpawnChunkLoader(level, settings, false);
+    }
+
+    public ServerLevel level() {
+        return level;
+    }
+
+    /** この探索で使うコンフィグのスナップショット */
+    public SpawnSettings settings() {
+        return settings;
+    }
+
+    @Override
+    public SpawnTerrainIndex terrain() {
+        return terrain;
+    }
+
+    /** 探索ループで候補を 1 つ引くごとに呼ぶ (JFR イベント用) */
+    @Override
+    public void countTry() {
+        tries++;
+    }
+
+    @Override
+    public boolean passesPreFilter(int x, int z, SpawnSettings settings) {
+        return RandomSpawnHandler.passesPreFilter(level, x, z, settings);
+    }
+
+    @Override
+    public SpawnSpatialIndex livePlayers() {
+        return LivePlayerIndex.index(level);
+    }
+
+    @Override
+    public int liveId(@Nullable ServerPlayer player) {
+        return LivePlayerIndex.idOf(player);
+    }
+
+    @Override
+    public RandomSpawnStorage storage() {
+        return RandomSpawnStorage.get(level);
+    }
+
+    public ChunkAccess chunk(int chunkX, int chunkZ) {
+        long key = ChunkPos.asLong(chunkX, chunkZ);
+        ChunkAccess chunk = chunks.get(key);
+        if (chunk != null) {
+            return chunk;
+        }
+        ServerChunkCache source = level.getChunkSource();
+        if (!source.hasChunk(chunkX, chunkZ)) {
+            loaded++;
+            SpawnMetrics.CHUNK_LOADS.increment();
+        }
+        addSearchTicket(source, chunkX, chunkZ);
+        chunk = source.getChunk(chunkX, chunkZ, status, true);
+        if (chunk.getStatus().isOrAfter(highestStatus)) {
+            highestStatus = chunk.getStatus();
+        }
+        chunks.put(key, chunk);
+        terrain.index(chunk);
+        return chunk;
+    }
+
+    private void addSearchTicket(ServerChunkCache source, int chunkX, int chunkZ) {
+        if (ticketed.add(ChunkPos.asLong(chunkX, chunkZ))) {
+            ChunkPos pos = new ChunkPos(chunkX, chunkZ);
+            source.addRegionTicket(SEARCH_TICKET, pos, ticketDistance, pos);
+        }
+    }
+
+    /**
+     * {@link #chunk} と同じステータスまで、待たずに読み込み/生成を始める。チケットは {@link #chunk} と同じく
+     * {@link #finish} で外す (読まずに終わった場合も)。フューチャーは読み込めたかどうかで完了し、true で完了した後の
+     * {@link #chunk} はサーバースレッドを止めない。サーバースレッドから呼ぶ。
+     */
+    public CompletableFuture<Boolean> prefetch(int chunkX, int chunkZ) {
+        if (chunks.containsKey(ChunkPos.asLong(chunkX, chunkZ))) {
+            return CompletableFuture.completedFuture(true);
+        }
+        ServerChunkCache source = level.getChunkSource();
+        addSearchTicket(source, chunkX, chunkZ);
+        return request(source, chunkX, chunkZ, status);
+    }
+
+    /**
+     * サーバースレッドで getChunkFuture を呼ぶと、生成が終わるまで managedBlock で待ってしまう。
+     * ほかのスレッドから呼べば依頼だけがサーバースレッドのタスクとして積まれ、待たずにフューチャーが返る。
+     * 同時に依頼した分はワールド生成のワーカーで並行して進む。
+     */
+    static CompletableFuture<Boolean> request(ServerChunkCache source, int chunkX, int chunkZ, ChunkStatus status) {
+        return CompletableFuture
+                .supplyAsync(() -> source.getChunkFuture(chunkX, chunkZ, status, true), Util.backgroundExecutor())
+                .thenCompose(future -> future)
+                .thenApply(result -> result.left().isPresent())
+                .exceptionally(e -> false);
+    }
+
+    /**
+     * 候補 (x, z) の判定で読むチャンク (地点と、平坦さの 7x7 が重なるもの) をすべて {@link #prefetch} する。
+     * いずれかが読めなければ false で完了する。
+     */
+    public CompletableFuture<Boolean> prefetchCandidate(int x, int z) {
+        int radius = RandomSpawnHandler.FLATNESS_RADIUS;
+        int minX = SectionPos.blockToSectionCoord(x - radius);
+        int maxX = SectionPos.blockToSectionCoord(x + radius);
+        int minZ = SectionPos.blockToSectionCoord(z - radius);
+        int maxZ = SectionPos.blockToSectionCoord(z + radius);
+        if (minX == maxX && minZ == maxZ) {
+            return prefetch(minX, minZ);
+        }
+        List<CompletableFuture<Boolean>> futures = new ArrayList<>(4);
+        for (int cx = minX; cx <= maxX; cx++) {
+            for (int cz = minZ; cz <= maxZ; cz++) {
+                futures.add(prefetch(cx, cz));
+            }
+        }
+        return CompletableFuture.allOf(futures.toArray(new CompletableFuture<?>[0]))
+                .thenApply(ignored -> futures.stream().allMatch(CompletableFuture::join));
+    }
+
+    /**
+     * 採用地点のチャンクを FULL まで待たずに読み込む。完了後の {@link #finish} は昇格を待たない。
+     */
+    public CompletableFuture<Boolean> prefetchSpawn(BlockPos chosen) {
+        ServerChunkCache source = level.getChunkSource();
+        ChunkPos pos = new ChunkPos(chosen);
+        source.addRegionTicket(SPAWN_TICKET, pos, 0, pos);
+        return request(source, pos.x, pos.z, ChunkStatus.FULL);
+    }
+
+    public ChunkAccess chunkAt(BlockPos pos) {
+        return chunk(SectionPos.blockToSectionCoord(pos.getX()), SectionPos.blockToSectionCoord(pos.getZ()));
+    }
+
+    /** {@link ServerLevel#getHeight} と同じく、地表の 1 つ上の Y を返す */
+    @Override
+    public int height(int x, int z) {
+        ChunkAccess chunk = chunk(SectionPos.blockToSectionCoord(x), SectionPos.blockToSectionCoord(z));
+        return chunk.getHeight(Heightmap.Types.MOTION_BLOCKING_NO_LEAVES, x, z) + 1;
+    }
+
+    public BlockState blockState(BlockPos pos) {
+        return chunkAt(pos).getBlockState(pos);
+    }
+
+    public FluidState fluidState(BlockPos pos) {
+        return chunkAt(pos).getFluidState(pos);
+    }
+
+    public Holder<Biome> biome(BlockPos pos) {
+        return chunkAt(pos).getNoiseBiome(
+                QuartPos.fromBlock(pos.getX()), QuartPos.fromBlock(pos.getY()), QuartPos.fromBlock(pos.getZ()));
+    }
+
+    /**
+     * 探索を終了する。不採用チャンクのチケットを外し、採用地点のチャンクは FULL に昇格して
+     * 短期間保持する。探索ごとの統計を記録する ({@link #recheck} で作ったものは確認の回数のみ)。
+     */
+    public void finish(@Nullable BlockPos chosen) {
+        ServerChunkCache source = level.getChunkSource();
+        int touched = chunks.size();
+        // 読んだチャンクに加え、先読みだけして判定しなかった候補 (投機的に依頼して捨てたもの) のチケットも外す
+        for (LongIterator it = ticketed.iterator(); it.hasNext(); ) {
+            ChunkPos pos = new ChunkPos(it.nextLong());
+            source.removeRegionTicket(SEARCH_TICKET, pos, ticketDistance, pos);
+        }
+        ticketed.clear();
+        chunks.clear();
+
+        if (chosen != null) {
+            ChunkPos pos = new ChunkPos(chosen);
+            source.addRegionTicket(SPAWN_TICKET, pos, 0, pos);
+            level.getChunk(pos.x, pos.z);
+        }
+
+        long heapRetained = usedHeap() - heapBefore;
+        long elapsedMicros = (System.nanoTime() - startNanos) / 1000L;
+        if (!search) {
+            SpawnMetrics.RECHECKS.increment();
+            if (settings.debugLogs()) {
+                RandomSpawnHandler.debug(String.format("recheck: %s in %dus, chunks touched=%d loaded=%d",
+                        chosen != null ? "accepted" : "rejected", elapsedMicros, touched, loaded));
+            }
+            return;
+        }
+        SpawnMetrics.recordSearch(touched, loaded, elapsedMicros);
+        event.end();
+        if (event.shouldCommit()) {
+            event.found = chosen != null;
+            event.tries = tries;
+            event.chunksTouched = touched;
+            event.chunksLoaded = loaded;
+            event.highestStatus = highestStatus.getName();
+            event.commit();
+        }
+        if (settings.debugLogs()) {
+            RandomSpawnHandler.debug(String.format("search: %s in %dus, chunks touched=%d loaded=%d status=%s heapRetained=%dKiB",
+                    chosen != null ? "found" : "failed", elapsedMicros, touched, loaded,
+                    highestStatus.getName(), heapRetained / 1024L));
+        }
+    }
+
+    private static long usedHeap() {
+        Runtime runtime = Runtime.getRuntime();
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+}
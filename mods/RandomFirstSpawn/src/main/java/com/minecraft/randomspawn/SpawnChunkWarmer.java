@@ -0,0 +1,154 @@
+package com.minecraft.randomspawn;
+
+import it.unimi.dsi.fastutil.longs.Long2IntOpenHashMap;
+import net.minecraft.core.BlockPos;
+import net.minecraft.core.SectionPos;
+import net.minecraft.server.level.ServerChunkCache;
+import net.minecraft.server.level.ServerLevel;
+import net.minecraft.server.level.TicketType;
+import net.minecraft.world.level.ChunkPos;
+import net.minecraftforge.event.server.ServerStoppedEvent;
+import net.minecraftforge.eventbus.api.SubscribeEvent;
+import net.minecraftforge.fml.common.Mod;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.UUID;
+
+/**
+ * オンラインプレイヤーのスポーン地点のチャンクをチケットで読み込んだまま保持し、
+ * リスポーン時のテレポートがチャンクの読み込みを待たないようにする。
+ * <p>
+ * 保持数は warmSpawnLimit 件まで。超えた分は最後に参加/リスポーンしてから最も時間の経った
+ * プレイヤーから外す。チャンクごとに距離 0 のチケットを置くため、保持したチャンクは
+ * FULL のまま読み込まれるだけでティックされない。同じチャンクを複数のプレイヤーが
+ * 共有する場合は参照数で管理し、最後の 1 人が外れたときにチケットを外す。
+ */
+@Mod.EventBusSubscriber
+public final class SpawnChunkWarmer {
+    /** 寿命なし。{@link #release} とサーバー停止でのみ外れる */
+    private static final TicketType<ChunkPos> WARM_TICKET =
+            TicketType.create("randomspawn_warm", Comparator.comparingLong(ChunkPos::toLong));
+
+    private record Warm(long center, int radius) {}
+
+    /** アクセス順。先頭が最も長く参加/リスポーンしていないプレイヤー */
+    private static final LinkedHashMap<UUID, Warm> WARM = new LinkedHashMap<>(16, 0.75f, true);
+    /** チャンクごとの参照数 */
+    private static final Long2IntOpenHashMap REFS = new Long2IntOpenHashMap();
+    @Nullable
+    private static ServerLevel level;
+    private static long evictions;
+
+    private SpawnChunkWarmer() {}
+
+    /**
+     * プレイヤーのスポーン地点を保持対象にする (既に同じ地点なら順位を上げるだけ)。
+     * pos が null なら保持をやめる。サーバースレッドから呼ぶ。
+     */
+    public static void track(ServerLevel overworld, UUID uuid, @Nullable BlockPos pos) {
+        SpawnSettings settings = SpawnSettings.get();
+        int limit = settings.warmSpawnLimit();
+        if (pos == null || limit <= 0) {
+            release(uuid);
+            trim(limit);
+            return;
+        }
+        if (level != overworld) {
+            clear();
+            level = overworld;
+        }
+        long center = ChunkPos.asLong(SectionPos.blockToSectionCoord(pos.getX()), SectionPos.blockToSectionCoord(pos.getZ()));
+        int radius = settings.warmSpawnRadius();
+        Warm current = WARM.get(uuid);
+        if (current != null && current.center() == center && current.radius() == radius) {
+            return;
+        }
+        if (current != null) {
+            unref(current);
+        }
+        Warm warm = new Warm(center, radius);
+        WARM.put(uuid, warm);
+        ref(warm);
+        trim(limit);
+    }
+
+    /** 保持をやめる (ログアウト、管理者によるスポーンの変更) */
+    public static void release(UUID uuid) {
+        Warm warm = WARM.remove(uuid);
+        if (warm != null) {
+            unref(warm);
+        }
+    }
+
+    /** /randomspawn stats に出す行 */
+    public static String summary() {
+        return String.format("warmSpawns=%d/%d warmChunks=%d evictions=%d",
+                WARM.size(), SpawnSettings.get().warmSpawnLimit(), REFS.size(), evictions);
+    }
+
+    private static void trim(int limit) {
+        Iterator<Map.Entry<UUID, Warm>> it = WARM.entrySet().iterator();
+        while (WARM.size() > Math.max(0, limit) && it.hasNext()) {
+            Warm eldest = it.next().getValue();
+            it.remove();
+            unref(eldest);
+            evictions++;
+        }
+    }
+
+    private static void ref(Warm warm) {
+        ServerChunkCache source = level.getChunkSource();
+        int cx = ChunkPos.getX(warm.center());
+        int cz = ChunkPos.getZ(warm.center());
+        for (int dx = -warm.radius(); dx <= warm.radius(); dx++) {
+            for (int dz = -warm.radius(); dz <= warm.radius(); dz++) {
+                long key = ChunkPos.asLong(cx + dx, cz + dz);
+                if (REFS.addTo(key, 1) == 0) {
+                    // 距離 0 = FULL (レベル 33)。読み込みは次のティックのチケット処理で非同期に始まる
+                    ChunkPos pos = new ChunkPos(key);
+                    source.addRegionTicket(WARM_TICKET, pos, 0, pos);
+                }
+            }
+        }
+    }
+
+    private static void unref(Warm warm) {
+        ServerChunkCache source = level.getChunkSource();
+        int cx = ChunkPos.getX(warm.center());
+        int cz = ChunkPos.getZ(warm.center());
+        for (int dx = -warm.radius(); dx <= warm.radius(); dx++) {
+            for (int dz = -warm.radius(); dz <= warm.radius(); dz++) {
+                long key = ChunkPos.asLong(cx + dx, cz + dz);
+                int refs = REFS.addTo(key, -1);
+                if (refs <= 1) {
+                    REFS.remove(key);
+                    ChunkPos pos = new ChunkPos(key);
+                    source.removeRegionTicket(WARM_TICKET, pos, 0, pos);
+                }
+            }
+        }
+    }
+
+    private static void clear() {
+        if (level != null) {
+            for (Warm warm : WARM.values()) {
+                unref(warm);
+            }
+        }
+        WARM.clear();
+        REFS.clear();
+    }
+
+    @SubscribeEvent
+    public static void onServerStopped(ServerStoppedEvent event) {
+        // チケットはサーバーと一緒に破棄されるため、外さずに忘れるだけでよい
+        WARM.clear();
+        REFS.clear();
+        level = null;
+        evictions = 0L;
+    }
+}
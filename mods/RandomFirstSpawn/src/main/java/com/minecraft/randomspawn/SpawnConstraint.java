@@ -0,0 +1,45 @@
+package com.minecraft.randomspawn;
+
+import net.minecraft.core.BlockPos;
+import net.minecraft.server.level.ServerPlayer;
+import org.jetbrains.annotations.Nullable;
+
+/**
+ * スポーン候補に対する条件 1 つ。{@link SpawnConstraints} が実測の却下率とコストから並べ替えて評価する。
+ * <p>
+ * 他の Mod やサーバー独自の条件 (保護区域の外であること など) は {@link SpawnConstraints#register} で追加する。
+ * 評価はサーバースレッドで行われ、評価順は保証されない。候補のチャンクは {@code chunks} から読むこと
+ * (部分ロード中のチャンクを FULL に昇格させないため、レベルから直接ブロックを読まない)。
+ */
+public interface SpawnConstraint extends SpawnCheck<SpawnChunkLoader> {
+    /** 統計表示用の名前 */
+    @Override
+    String name();
+
+    /** 却下したときに記録する理由。追加の条件は既定で {@link RejectReason#CUSTOM} */
+    @Override
+    default RejectReason reason() {
+        return RejectReason.CUSTOM;
+    }
+
+    /**
+     * Poisson-disk 点への影響。周辺にずらしても通らない条件 (保護区域など) は
+     * {@link RejectReason.Scope#PERMANENT} を返すと、以後その点を使わなくなる。
+     */
+    @Override
+    default RejectReason.Scope scope() {
+        return reason().scope();
+    }
+
+    /** 1 回の評価にかかる時間の見積もり (ナノ秒)。実測値が溜まるまでの並び順に使う */
+    @Override
+    long estimatedNanos();
+
+    /**
+     * @param pos 足元の座標 (地表の 1 つ上)
+     * @param self 対象プレイヤー。プール補充や事前割り当てでは null
+     * @return 条件を満たせば true
+     */
+    @Override
+    boolean test(SpawnChunkLoader chunks, BlockPos pos, @Nullable ServerPlayer self, SpawnSettings settings);
+}
@@ -0,0 +1,170 @@
+package com.minecraft.randomspawn;
+
+import com.google.gson.JsonObject;
+import net.minecraft.core.BlockPos;
+import net.minecraft.core.Direction;
+import net.minecraft.core.Holder;
+import net.minecraft.server.level.ServerPlayer;
+import net.minecraft.tags.BiomeTags;
+import net.minecraft.tags.FluidTags;
+import net.minecraft.world.level.biome.Biome;
+import net.minecraft.world.level.chunk.ChunkAccess;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 本番の候補判定パイプライン。組み込みの条件と {@link #register} で追加された条件を {@link SpawnPipeline} で評価する
+ * (評価順は実測の却下率とコストから決まる)。
+ * <p>
+ * 集計と並べ替えはサーバースレッドでのみ行う。登録は Mod の初期化中など任意のスレッドから行える。
+ */
+public final class SpawnConstraints {
+    /**
+     * 足元・頭・足場の 1 列だけを見る条件。周囲の地形やほかのプレイヤーには依存しないため、
+     * {@link SpawnRevalidator} が割り当て済みのスポーンの再検証にもそのまま使う。
+     * 部分ロード中のチャンクを FULL に昇格させないよう、判定はチャンクに対して行う
+     */
+    static final List<SpawnConstraint> BLOCK_CHECKS = List.of(
+            builtin("water", RejectReason.WATER, 150, (chunks, pos, self, settings) ->
+                    !chunks.fluidState(pos).is(FluidTags.WATER) && !chunks.fluidState(pos.above()).is(FluidTags.WATER)),
+            // 新しい候補は高さマップの都合で溶岩の上に立たないが、割り当て後に流し込まれることはある
+            builtin("lava", RejectReason.LAVA, 150, (chunks, pos, self, settings) ->
+                    !chunks.fluidState(pos).is(FluidTags.LAVA) && !chunks.fluidState(pos.above()).is(FluidTags.LAVA)),
+            builtin("sturdyGround", RejectReason.NOT_STURDY, 200, (chunks, pos, self, settings) -> {
+                ChunkAccess chunk = chunks.chunkAt(pos);
+                BlockPos ground = pos.below();
+                return chunk.getBlockState(ground).isFaceSturdy(chunk, ground, Direction.UP);
+            }),
+            builtin("feetClear", RejectReason.FEET_BLOCKED, 150, (chunks, pos, self, settings) -> {
+                ChunkAccess chunk = chunks.chunkAt(pos);
+                return chunk.getBlockState(pos).getCollisionShape(chunk, pos).isEmpty();
+            }),
+            builtin("headClear", RejectReason.HEAD_BLOCKED, 150, (chunks, pos, self, settings) -> {
+                ChunkAccess chunk = chunks.chunkAt(pos);
+                BlockPos head = pos.above();
+                return chunk.getBlockState(head).getCollisionShape(chunk, head).isEmpty();
+            }));
+
+    private static final SpawnPipeline<SpawnChunkLoader> PIPELINE = new SpawnPipeline<>(builtins());
+
+    private SpawnConstraints() {}
+
+    /**
+     * 条件を追加する。同じ名前の条件が既にあれば何もしない。
+     * 例: {@code SpawnConstraints.register(new NotInClaimConstraint())} を FMLCommonSetupEvent で呼ぶ。
+     */
+    public static void register(SpawnConstraint constraint) {
+        PIPELINE.register(constraint);
+    }
+
+    /**
+     * すべての条件を評価し、最初に落ちた条件を返す。通れば null。対象チャンクは読み込み済みであること。
+     */
+    @Nullable
+    static SpawnCheck<SpawnChunkLoader> check(SpawnChunkLoader chunks, BlockPos pos, @Nullable ServerPlayer self, SpawnSettings settings) {
+        return PIPELINE.check(chunks, pos, self, settings);
+    }
+
+    static SpawnPipeline<SpawnChunkLoader> pipeline() {
+        return PIPELINE;
+    }
+
+    /** /randomspawn stats に出す行 */
+    static String summary() {
+        return PIPELINE.summary();
+    }
+
+    /** メトリクスファイル用 */
+    static JsonObject snapshot() {
+        return PIPELINE.snapshot();
+    }
+
+    /**
+     * {@link SpawnSearchWorld} だけで判定する条件 (平坦さと距離)。ブロックやバイオームを読まないので、
+     * ベンチマークは合成地形に対してこれを本番と同じ {@link SpawnPipeline} で評価する。
+     */
+    static <W extends SpawnSearchWorld> List<SpawnCheck<W>> searchChecks() {
+        // 7x7 の高さを読む場合があり、隣接チャンクの読み込みを伴うこともある
+        return List.of(
+                searchCheck("flatness", RejectReason.NOT_FLAT, 2_000, (world, pos, self, settings) ->
+                        RandomSpawnHandler.isFlatEnough(world.terrain(), world, pos.getX(), pos.getY(), pos.getZ(), settings.heightDiff())),
+                searchCheck("distance", RejectReason.TOO_CLOSE, 300, (world, pos, self, settings) ->
+                        RandomSpawnHandler.isFarFromOthers(world.livePlayers(), world.liveId(self),
+                                world.storage(), self != null ? self.getUUID() : null,
+                                pos.getX(), pos.getY(), pos.getZ(), settings.minDistance())));
+    }
+
+    private static List<SpawnCheck<SpawnChunkLoader>> builtins() {
+        List<SpawnCheck<SpawnChunkLoader>> builtins = new ArrayList<>();
+        builtins.add(builtin("worldBounds", RejectReason.OUT_OF_BOUNDS, 10,
+                (chunks, pos, self, settings) -> chunks.level().isInWorldBounds(pos)));
+        builtins.add(builtin("minHeight", RejectReason.BELOW_MIN_HEIGHT, 5,
+                (chunks, pos, self, settings) -> pos.getY() > chunks.level().getMinBuildHeight()));
+        builtins.add(builtin("biome", RejectReason.OCEAN_OR_RIVER, 150, (chunks, pos, self, settings) -> {
+            Holder<Biome> biome = chunks.biome(pos);
+            return !biome.is(BiomeTags.IS_OCEAN) && !biome.is(BiomeTags.IS_RIVER);
+        }));
+        builtins.addAll(BLOCK_CHECKS);
+        builtins.addAll(SpawnConstraints.<SpawnChunkLoader>searchChecks());
+        return builtins;
+    }
+
+    private interface Test {
+        boolean test(SpawnChunkLoader chunks, BlockPos pos, @Nullable ServerPlayer self, SpawnSettings settings);
+    }
+
+    private static SpawnConstraint builtin(String name, RejectReason reason, long estimatedNanos, Test test) {
+        return new SpawnConstraint() {
+            @Override
+            public String name() {
+                return name;
+            }
+
+            @Override
+            public RejectReason reason() {
+                return reason;
+            }
+
+            @Override
+            public long estimatedNanos() {
+                return estimatedNanos;
+            }
+
+            @Override
+            public boolean test(SpawnChunkLoader chunks, BlockPos pos, @Nullable ServerPlayer self, SpawnSettings settings) {
+                return test.test(chunks, pos, self, settings);
+            }
+        };
+    }
+
+    private interface SearchTest {
+        boolean test(SpawnSearchWorld world, BlockPos pos, @Nullable ServerPlayer self, SpawnSettings settings);
+    }
+
+    private static <W extends SpawnSearchWorld> SpawnCheck<W> searchCheck(String name, RejectReason reason, long estimatedNanos,
+                                                                       SearchTest test) {
+        return new SpawnCheck<>() {
+            @Override
+            public String name() {
+                return name;
+            }
+
+            @Override
+            public RejectReason reason() {
+                return reason;
+            }
+
+            @Override
+            public long estimatedNanos() {
+                return estimatedNanos;
+            }
+
+            @Override
+            public boolean test(W world, BlockPos pos, @Nullable ServerPlayer self, SpawnSettings settings) {
+                return test.test(world, pos, self, settings);
+            }
+        };
+    }
+}
@@ -0,0 +1,83 @@
+package com.minecraft.randomspawn;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 2 のべき乗ごとのバケットで値の分布を数えるヒストグラム。
+ * 記録は配列の加算のみで割り当ては発生しない。パーセンタイルはバケット上限で近似する。
+ */
+public final class SpawnHistogram {
+    /** バケット i は [2^(i-1), 2^i - 1] (i = 0 は 0 以下) */
+    private static final int BUCKETS = 64;
+
+    private final String name;
+    private final String unit;
+    private final AtomicLongArray counts = new AtomicLongArray(BUCKETS);
+    private final LongAdder count = new LongAdder();
+    private final LongAdder sum = new LongAdder();
+    private final AtomicLong max = new AtomicLong();
+
+    public SpawnHistogram(String name, String unit) {
+        this.name = name;
+        this.unit = unit;
+    }
+
+    public String name() {
+        return name;
+    }
+
+    public void record(long value) {
+        int bucket = value <= 0 ? 0 : Math.min(BUCKETS - 1, 64 - Long.numberOfLeadingZeros(value));
+        counts.incrementAndGet(bucket);
+        count.increment();
+        sum.add(value);
+        max.accumulateAndGet(value, Math::max);
+    }
+
+    public long count() {
+        return count.sum();
+    }
+
+    public double mean() {
+        long n = count.sum();
+        return n == 0 ? 0.0 : sum.sum() / (double) n;
+    }
+
+    public long max() {
+        return max.get();
+    }
+
+    /** 値の fraction (0〜1) 番目の近似値。該当バケットの上限と最大値の小さい方を返す */
+    public long percentile(double fraction) {
+        long n = count.sum();
+        if (n == 0) {
+            return 0L;
+        }
+        long target = Math.max(1L, (long) Math.ceil(n * fraction));
+        long seen = 0L;
+        for (int i = 0; i < BUCKETS; i++) {
+            seen += counts.get(i);
+            if (seen >= target) {
+                long upper = i == 0 ? 0L : (i >= 63 ? Long.MAX_VALUE : (1L << i) - 1L);
+                return Math.min(upper, max.get());
+            }
+        }
+        return max.get();
+    }
+
+    public void reset() {
+        for (int i = 0; i < BUCKETS; i++) {
+            counts.set(i, 0L);
+        }
+        count.reset();
+        sum.reset();
+        max.set(0L);
+    }
+
+    public String summary() {
+        return String.format("%s: n=%d mean=%.1f p50<=%d p90<=%d p99<=%d max=%d %s",
+                name, count(), mean(), percentile(0.50), percentile(0.90), percentile(0.99), max(), unit);
+    }
+}
@@ -0,0 +1,281 @@
+package com.minecraft.randomspawn;
+
+import com.google.gson.JsonObject;
+import com.mojang.logging.LogUtils;
+import jdk.jfr.EventType;
+import net.minecraft.Util;
+import net.minecraft.core.BlockPos;
+import net.minecraft.server.MinecraftServer;
+import net.minecraft.world.level.storage.LevelResource;
+import net.minecraftforge.event.TickEvent;
+import net.minecraftforge.event.server.ServerStoppingEvent;
+import net.minecraftforge.eventbus.api.SubscribeEvent;
+import net.minecraftforge.fml.common.Mod;
+import org.slf4j.Logger;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * スポーン探索のカウンタ、却下理由別の件数、ヒストグラム。
+ * いずれも記録時に割り当てを行わない。/randomspawn stats、サーバー停止時の INFO 出力、
+ * および metricsDumpMinutes ごとのメトリクスファイル (JSON Lines) で参照する。
+ */
+@Mod.EventBusSubscriber
+public final class SpawnMetrics {
+    private static final Logger LOGGER = LogUtils.getLogger();
+    private static final String METRICS_FILE = "randomspawn_metrics.jsonl";
+
+    /** 抽選した候補の総数 */
+    public static final LongAdder CANDIDATES = new LongAdder();
+    /** 前段フィルタでワールドボーダー外として除外した候補 */
+    public static final LongAdder PREFILTER_BORDER = new LongAdder();
+    /** 前段フィルタで海/川として除外した候補 */
+    public static final LongAdder PREFILTER_BIOME = new LongAdder();
+    /** 前段フィルタで除外した候補のうち、チャンクが未ロードだった（読み込み/生成を省けた）もの */
+    public static final LongAdder CHUNK_LOADS_AVOIDED = new LongAdder();
+    /** 候補判定のために未ロードのチャンクを読み込み/生成した回数 */
+    public static final LongAdder CHUNK_LOADS = new LongAdder();
+    /** 地形インデックスだけで (チャンクを読まずに) 除外した候補 */
+    public static final LongAdder TERRAIN_INDEX_REJECTS = new LongAdder();
+    /** 探索 ({@link SpawnChunkLoader} 1 つ分) の回数 */
+    public static final LongAdder SEARCHES = new LongAdder();
+    /** 決まった地点の確認 ({@link SpawnChunkLoader#recheck}) の回数。探索には数えない */
+    public static final LongAdder RECHECKS = new LongAdder();
+    /** 探索で参照したチャンク数の合計 */
+    public static final LongAdder CHUNKS_TOUCHED = new LongAdder();
+    /** 参加時のスポーン解決 ({@link SpawnResolver#resolveJoin}) の回数 */
+    public static final LongAdder JOINS = new LongAdder();
+    /** JSON バックアップの参照回数 (メモリ上の索引) */
+    public static final LongAdder BACKUP_LOOKUPS = new LongAdder();
+    /** JSON バックアップ本体/ジャーナルをディスクから読んだ回数 */
+    public static final LongAdder BACKUP_FILE_READS = new LongAdder();
+    /** JSON バックアップのジャーナルへ追記した件数 */
+    public static final LongAdder BACKUP_APPENDS = new LongAdder();
+    /** JSON バックアップ本体を書き直した回数 */
+    public static final LongAdder BACKUP_COMPACTIONS = new LongAdder();
+    /** 保存データ (randomspawn_storage.dat) を変更した回数 */
+    public static final LongAdder STORAGE_CHANGES = new LongAdder();
+    /** 接続前のプレイヤー位置の設定 (パケットなし) */
+    public static final LongAdder PLACEMENTS = new LongAdder();
+    /** クライアントへ位置同期を送るテレポート */
+    public static final LongAdder TELEPORTS = new LongAdder();
+    /** ランダムスポーンへのリスポーン処理の回数 */
+    public static final LongAdder RESPAWNS = new LongAdder();
+    /** ブロック変更を受けて割り当て済みのスポーンを再検証した回数 */
+    public static final LongAdder REVALIDATIONS = new LongAdder();
+    /** 再検証で安全でなくなっていたスポーン */
+    public static final LongAdder REVALIDATION_FAILURES = new LongAdder();
+    /** 再検証に落ちたスポーンを別の地点へ割り当て直した回数 */
+    public static final LongAdder REASSIGNMENTS = new LongAdder();
+    /** 非同期探索 ({@link SpawnAsyncJoin}) を始めた参加 */
+    public static final LongAdder ASYNC_JOINS = new LongAdder();
+    /** 非同期探索が制限時間内に地点を決められず、共有スポーン地点で代用した参加 */
+    public static final LongAdder ASYNC_JOIN_TIMEOUTS = new LongAdder();
+    /** 並列評価でチャンクを依頼したが、ほかの候補が先に通ったため判定しなかった候補 */
+    public static final LongAdder SPECULATIVE_DISCARDS = new LongAdder();
+
+    /** 候補判定での却下理由ごとの件数 ({@link RejectReason} の ordinal 順) */
+    private static final LongAdder[] REJECTS = new LongAdder[RejectReason.values().length];
+    private static final RejectReason[] REASONS = RejectReason.values();
+    private static final EventType REJECT_EVENT = EventType.getEventType(SpawnRejectEvent.class);
+
+    public static final SpawnHistogram SEARCH_TIME = new SpawnHistogram("searchTime", "us");
+    public static final SpawnHistogram TRIES_PER_SUCCESS = new SpawnHistogram("triesPerSuccess", "tries");
+    public static final SpawnHistogram CHUNKS_LOADED_PER_SEARCH = new SpawnHistogram("chunksLoadedPerSearch", "chunks");
+    /** 非同期探索で参加してから配置されるまでの時間 */
+    public static final SpawnHistogram ASYNC_JOIN_WAIT = new SpawnHistogram("asyncJoinWait", "ms");
+    /** 並列評価で一度に依頼した候補数 */
+    public static final SpawnHistogram BATCH_SIZE = new SpawnHistogram("batchSize", "candidates");
+    private static final SpawnHistogram[] HISTOGRAMS = {SEARCH_TIME, TRIES_PER_SUCCESS, CHUNKS_LOADED_PER_SEARCH, ASYNC_JOIN_WAIT, BATCH_SIZE};
+
+    private static final LongAdder[] COUNTERS;
+    private static final String[] COUNTER_NAMES = {
+            "candidates", "prefilterBorder", "prefilterBiome", "chunkLoadsAvoided", "chunkLoads", "terrainIndexRejects",
+            "searches", "chunksTouched", "joins", "backupLookups", "backupFileReads", "backupAppends",
+            "backupCompactions", "storageChanges", "placements", "teleports", "respawns",
+            "revalidations", "revalidationFailures", "reassignments", "asyncJoins", "asyncJoinTimeouts",
+            "speculativeDiscards", "rechecks"};
+
+    static {
+        for (int i = 0; i < REJECTS.length; i++) {
+            REJECTS[i] = new LongAdder();
+        }
+        COUNTERS = new LongAdder[]{
+                CANDIDATES, PREFILTER_BORDER, PREFILTER_BIOME, CHUNK_LOADS_AVOIDED, CHUNK_LOADS, TERRAIN_INDEX_REJECTS,
+                SEARCHES, CHUNKS_TOUCHED, JOINS, BACKUP_LOOKUPS, BACKUP_FILE_READS, BACKUP_APPENDS,
+                BACKUP_COMPACTIONS, STORAGE_CHANGES, PLACEMENTS, TELEPORTS, RESPAWNS,
+                REVALIDATIONS, REVALIDATION_FAILURES, REASSIGNMENTS, ASYNC_JOINS, ASYNC_JOIN_TIMEOUTS,
+                SPECULATIVE_DISCARDS, RECHECKS};
+    }
+
+    private static long lastDumpTick;
+
+    private SpawnMetrics() {}
+
+    static void recordSearch(int touched, int loaded, long elapsedMicros) {
+        SEARCHES.increment();
+        CHUNKS_TOUCHED.add(touched);
+        SEARCH_TIME.record(elapsedMicros);
+        CHUNKS_LOADED_PER_SEARCH.record(loaded);
+    }
+
+    static void reject(RejectReason reason, BlockPos pos) {
+        REJECTS[reason.ordinal()].increment();
+        if (REJECT_EVENT.isEnabled()) {
+            SpawnRejectEvent event = new SpawnRejectEvent();
+            event.reason = reason.name();
+            event.x = pos.getX();
+            event.y = pos.getY();
+            event.z = pos.getZ();
+            event.commit();
+        }
+    }
+
+    public static long rejects(RejectReason reason) {
+        return REJECTS[reason.ordinal()].sum();
+    }
+
+    public static String summary() {
+        return String.format("candidates=%d prefilter(border=%d, biome=%d) terrainIndexRejects=%d chunkLoads=%d chunkLoadsAvoided=%d searches=%d rechecks=%d chunksTouched=%d",
+                CANDIDATES.sum(), PREFILTER_BORDER.sum(), PREFILTER_BIOME.sum(), TERRAIN_INDEX_REJECTS.sum(),
+                CHUNK_LOADS.sum(), CHUNK_LOADS_AVOIDED.sum(), SEARCHES.sum(), RECHECKS.sum(), CHUNKS_TOUCHED.sum());
+    }
+
+    public static String rejectSummary() {
+        StringBuilder sb = new StringBuilder("rejects:");
+        for (RejectReason reason : REASONS) {
+            sb.append(' ').append(reason.name().toLowerCase(Locale.ROOT)).append('=').append(rejects(reason));
+        }
+        return sb.toString();
+    }
+
+    /** 参加 1 回あたりの I/O とテレポートの回数 */
+    public static String joinSummary() {
+        long joins = Math.max(1L, JOINS.sum());
+        return String.format("joins=%d perJoin(backupLookups=%.2f, backupFileReads=%.2f, backupAppends=%.2f, storageChanges=%.2f, placements=%.2f, teleports=%.2f) backupCompactions=%d",
+                JOINS.sum(), BACKUP_LOOKUPS.sum() / (double) joins, BACKUP_FILE_READS.sum() / (double) joins,
+                BACKUP_APPENDS.sum() / (double) joins, STORAGE_CHANGES.sum() / (double) joins,
+                PLACEMENTS.sum() / (double) joins, TELEPORTS.sum() / (double) joins, BACKUP_COMPACTIONS.sum());
+    }
+
+    /** リスポーン回数と、スポーン地点のチャンク保持の状況 */
+    public static String respawnSummary() {
+        return String.format("respawns=%d %s", RESPAWNS.sum(), SpawnChunkWarmer.summary());
+    }
+
+    /** 割り当て済みスポーンの再検証と割り当て直しの状況 */
+    public static String revalidationSummary() {
+        return String.format("revalidations=%d failed=%d reassigned=%d %s",
+                REVALIDATIONS.sum(), REVALIDATION_FAILURES.sum(), REASSIGNMENTS.sum(), SpawnRevalidator.summary());
+    }
+
+    /** 非同期探索の件数と、いま待たせているプレイヤー数 */
+    public static String asyncJoinSummary() {
+        return String.format("asyncJoins=%d timeouts=%d holding=%d",
+                ASYNC_JOINS.sum(), ASYNC_JOIN_TIMEOUTS.sum(), SpawnAsyncJoin.holding());
+    }
+
+    /** /randomspawn stats とサーバー停止時のログに出す行 */
+    public static List<String> lines() {
+        List<String> lines = new ArrayList<>();
+        lines.add(summary());
+        lines.add(rejectSummary());
+        lines.add(SpawnConstraints.summary());
+        lines.add(SpawnBatchSize.summary());
+        for (SpawnHistogram histogram : HISTOGRAMS) {
+            lines.add(histogram.summary());
+        }
+        lines.add(joinSummary());
+        lines.add(respawnSummary());
+        lines.add(revalidationSummary());
+        lines.add(asyncJoinSummary());
+        return lines;
+    }
+
+    public static void reset() {
+        for (LongAdder counter : COUNTERS) {
+            counter.reset();
+        }
+        for (LongAdder counter : REJECTS) {
+            counter.reset();
+        }
+        for (SpawnHistogram histogram : HISTOGRAMS) {
+            histogram.reset();
+        }
+    }
+
+    /** 集計値を 1 行の JSON にする (メトリクスファイル用) */
+    static JsonObject snapshot() {
+        JsonObject root = new JsonObject();
+        root.addProperty("time", Instant.now().toString());
+        JsonObject counters = new JsonObject();
+        for (int i = 0; i < COUNTERS.length; i++) {
+            counters.addProperty(COUNTER_NAMES[i], COUNTERS[i].sum());
+        }
+        root.add("counters", counters);
+        JsonObject rejects = new JsonObject();
+        for (RejectReason reason : REASONS) {
+            rejects.addProperty(reason.name().toLowerCase(Locale.ROOT), rejects(reason));
+        }
+        root.add("rejects", rejects);
+        root.add("constraints", SpawnConstraints.snapshot());
+        JsonObject histograms = new JsonObject();
+        for (SpawnHistogram histogram : HISTOGRAMS) {
+            JsonObject h = new JsonObject();
+            h.addProperty("count", histogram.count());
+            h.addProperty("mean", histogram.mean());
+            h.addProperty("p50", histogram.percentile(0.50));
+            h.addProperty("p90", histogram.percentile(0.90));
+            h.addProperty("p99", histogram.percentile(0.99));
+            h.addProperty("max", histogram.max());
+            histograms.add(histogram.name(), h);
+        }
+        root.add("histograms", histograms);
+        return root;
+    }
+
+    @SubscribeEvent
+    public static void onServerTick(TickEvent.ServerTickEvent event) {
+        if (event.phase != TickEvent.Phase.END) {
+            return;
+        }
+        int minutes = SpawnSettings.get().metricsDumpMinutes();
+        if (minutes <= 0) {
+            return;
+        }
+        MinecraftServer server = event.getServer();
+        long tick = server.getTickCount();
+        if (tick - lastDumpTick < minutes * 60L * 20L) {
+            return;
+        }
+        lastDumpTick = tick;
+        // 集計はサーバースレッドで済ませ、書き込みだけ I/O スレッドで行う
+        String line = snapshot().toString() + System.lineSeparator();
+        Path file = server.getWorldPath(LevelResource.ROOT).resolve("serverconfig").resolve("randomspawn").resolve(METRICS_FILE);
+        Util.ioPool().execute(() -> {
+            try {
+                Files.createDirectories(file.getParent());
+                Files.writeString(file, line, StandardCharsets.UTF_8, StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+            } catch (IOException e) {
+                LOGGER.error("[RandomSpawn] Failed to write metrics to {}", file, e);
+            }
+        });
+    }
+
+    @SubscribeEvent
+    public static void onServerStopping(ServerStoppingEvent event) {
+        for (String line : lines()) {
+            LOGGER.info("[RandomSpawn] stats: {}", line);
+        }
+        lastDumpTick = 0L;
+    }
+}
@@ -0,0 +1,163 @@
+package com.minecraft.randomspawn;
+
+import com.google.gson.JsonObject;
+import net.minecraft.core.BlockPos;
+import net.minecraft.server.level.ServerPlayer;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * 条件を「1 回の評価コスト ÷ 却下率」の小さい順 (安くてよく落とすものが先) に評価し、最初に落ちた条件を返す。
+ * <p>
+ * 却下率は評価のたびに、コストは {@value #TIMING_SAMPLE} 回に 1 回の実測で更新し、
+ * {@value #REORDER_INTERVAL} 候補ごとに並べ替える。古い傾向が残り続けないよう、
+ * 評価回数が {@value #DECAY_AT} に達した条件は集計を半分にする。
+ * 後ろの条件は前の条件を通った候補しか見ないため、却下率は条件付きの値になる (並べ替えの指標としてはそれで足りる)。
+ * <p>
+ * 集計と並べ替えは 1 つのスレッド (本番ではサーバースレッド) でのみ行う。登録は任意のスレッドから行える。
+ * 本番の並びは {@link SpawnConstraints} が持つ。
+ */
+final class SpawnPipeline<W extends SpawnSearchWorld> {
+    private static final int TIMING_SAMPLE = 8;
+    private static final int REORDER_INTERVAL = 256;
+    private static final long DECAY_AT = 1L << 16;
+
+    private static final class Entry<W extends SpawnSearchWorld> {
+        final SpawnCheck<W> check;
+        long evaluations;
+        long rejections;
+        long timedNanos;
+        long timedCount;
+
+        Entry(SpawnCheck<W> check) {
+            this.check = check;
+        }
+
+        double costNanos() {
+            return timedCount > 0 ? (double) timedNanos / timedCount : check.estimatedNanos();
+        }
+
+        /** 見積もりの偏りを抑えるため、却下率は (却下 + 1) / (評価 + 2) で見る */
+        double rejectRate() {
+            return (rejections + 1.0) / (evaluations + 2.0);
+        }
+
+        double rank() {
+            return costNanos() / rejectRate();
+        }
+    }
+
+    /** 評価順。登録時は差し替え、並べ替えは評価するスレッドでこの配列の中身を入れ替える */
+    private volatile Entry<W>[] order;
+    private int untilReorder = REORDER_INTERVAL;
+
+    SpawnPipeline(List<? extends SpawnCheck<W>> checks) {
+        Entry<W>[] entries = newEntries(checks.size());
+        for (int i = 0; i < entries.length; i++) {
+            entries[i] = new Entry<>(checks.get(i));
+        }
+        this.order = entries;
+    }
+
+    /** 条件を追加する。同じ名前の条件が既にあれば何もしない */
+    synchronized void register(SpawnCheck<W> check) {
+        Entry<W>[] current = order;
+        for (Entry<W> entry : current) {
+            if (entry.check.name().equals(check.name())) {
+                return;
+            }
+        }
+        Entry<W>[] next = newEntries(current.length + 1);
+        System.arraycopy(current, 0, next, 0, current.length);
+        next[current.length] = new Entry<>(check);
+        order = next;
+    }
+
+    /**
+     * すべての条件を評価し、最初に落ちた条件を返す。通れば null。
+     */
+    @Nullable
+    SpawnCheck<W> check(W world, BlockPos pos, @Nullable ServerPlayer self, SpawnSettings settings) {
+        Entry<W>[] entries = order;
+        if (--untilReorder <= 0) {
+            untilReorder = REORDER_INTERVAL;
+            reorder(entries);
+        }
+        for (Entry<W> entry : entries) {
+            SpawnCheck<W> check = entry.check;
+            boolean passed;
+            if ((entry.evaluations & (TIMING_SAMPLE - 1)) == 0) {
+                long start = System.nanoTime();
+                passed = check.test(world, pos, self, settings);
+                entry.timedNanos += System.nanoTime() - start;
+                entry.timedCount++;
+            } else {
+                passed = check.test(world, pos, self, settings);
+            }
+            entry.evaluations++;
+            if (!passed) {
+                entry.rejections++;
+            }
+            if (entry.evaluations >= DECAY_AT) {
+                entry.evaluations >>= 1;
+                entry.rejections >>= 1;
+                entry.timedNanos >>= 1;
+                entry.timedCount >>= 1;
+            }
+            if (!passed) {
+                if (settings.debugLogs()) {
+                    RandomSpawnHandler.debug("reject: " + check.name());
+                }
+                SpawnMetrics.reject(check.reason(), pos);
+                return check;
+            }
+        }
+        return null;
+    }
+
+    /** 挿入ソート (条件は十数個なので割り当てなしでこれで足りる) */
+    private static <W extends SpawnSearchWorld> void reorder(Entry<W>[] entries) {
+        for (int i = 1; i < entries.length; i++) {
+            Entry<W> entry = entries[i];
+            double rank = entry.rank();
+            int j = i - 1;
+            while (j >= 0 && entries[j].rank() > rank) {
+                entries[j + 1] = entries[j];
+                j--;
+            }
+            entries[j + 1] = entry;
+        }
+    }
+
+    /** /randomspawn stats に出す行。現在の評価順に、却下率と 1 回あたりのコストを並べる */
+    String summary() {
+        StringBuilder sb = new StringBuilder("constraints:");
+        for (Entry<W> entry : order) {
+            sb.append(String.format(Locale.ROOT, " %s(reject=%.1f%%, cost=%.0fns)",
+                    entry.check.name(), entry.rejectRate() * 100.0, entry.costNanos()));
+        }
+        return sb.toString();
+    }
+
+    /** メトリクスファイル用 */
+    JsonObject snapshot() {
+        JsonObject root = new JsonObject();
+        int position = 0;
+        for (Entry<W> entry : order) {
+            JsonObject c = new JsonObject();
+            c.addProperty("order", position++);
+            c.addProperty("evaluations", entry.evaluations);
+            c.addProperty("rejections", entry.rejections);
+            c.addProperty("costNanos", entry.costNanos());
+            root.add(entry.check.name(), c);
+        }
+        return root;
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <W extends SpawnSearchWorld> Entry<W>[] newEntries(int size) {
+        return (Entry<W>[]) new Entry<?>[size];
+    }
+}
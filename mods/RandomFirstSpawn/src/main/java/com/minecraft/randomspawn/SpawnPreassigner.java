@@ -0,0 +1,201 @@
+package com.minecraft.randomspawn;
+
+import com.mojang.authlib.GameProfile;
+import net.minecraft.core.BlockPos;
+import net.minecraft.core.SectionPos;
+import net.minecraft.server.MinecraftServer;
+import net.minecraft.server.level.ServerChunkCache;
+import net.minecraft.server.level.ServerLevel;
+import net.minecraft.server.level.TicketType;
+import net.minecraft.util.RandomSource;
+import net.minecraft.world.level.ChunkPos;
+import net.minecraft.world.level.chunk.ChunkStatus;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * イベント参加者などのスポーンを参加前にまとめて決める。
+ * 候補ごとに必要なチャンクの生成をワールド生成スレッドへ並列に依頼し、揃ったものから
+ * サーバースレッドで通常と同じ判定を行う。採用した地点同士も最低距離を空け、
+ * 最後に保存データと JSON バックアップへ一括で書き込む。参加時は {@link SpawnResolver} が読むだけになる。
+ *
+ * <p>すべてサーバースレッドから呼び、状態もサーバースレッドでのみ触る。
+ */
+public final class SpawnPreassigner {
+    /** 判定待ちの候補チャンクを保持するチケット */
+    private static final TicketType<ChunkPos> PREASSIGN_TICKET =
+            TicketType.create("randomspawn_preassign", Comparator.comparingLong(ChunkPos::toLong), 20 * 60);
+    /** 同時に生成を依頼する候補数の上限 */
+    private static final int MAX_IN_FLIGHT = 64;
+    /** 1 人あたりに試す候補数の上限 */
+    private static final int CANDIDATES_PER_PLAYER = 16;
+    private static final int MIN_CANDIDATES = 64;
+
+    public record Assignment(GameProfile profile, BlockPos pos) {}
+
+    /**
+     * @param assigned 今回割り当てた人数
+     * @param skipped  既にスポーン済み/割り当て済みのため対象外とした人数
+     * @param failed   候補が尽きて割り当てられなかったプレイヤー (参加時に通常どおり探索される)
+     */
+    public record Result(int assigned, int skipped, List<GameProfile> failed, int candidates, long elapsedMillis) {}
+
+    private final ServerLevel level;
+    private final MinecraftServer server;
+    private final ArrayDeque<GameProfile> waiting = new ArrayDeque<>();
+    private final List<Assignment> accepted = new ArrayList<>();
+    /** 今回採用した地点の空間インデックス。割り当て前なので保存データの索引には入っていない */
+    private final SpawnSpatialIndex batchIndex = new SpawnSpatialIndex(256);
+    private final CompletableFuture<Result> result = new CompletableFuture<>();
+    private final RandomSource random = RandomSource.create();
+    /** 割り当て全体を開始時のコンフィグで行う */
+    private final SpawnSettings settings;
+    private final ChunkStatus status;
+    private final int ticketDistance;
+    private final int minDistance;
+    private final int skipped;
+    private final long startNanos = System.nanoTime();
+    private int candidateBudget;
+    private int candidates;
+    private int inFlight;
+
+    private SpawnPreassigner(ServerLevel level, List<GameProfile> targets, int skipped) {
+        this.level = level;
+        this.server = level.getServer();
+        this.waiting.addAll(targets);
+        this.skipped = skipped;
+        this.settings = SpawnSettings.get();
+        this.status = settings.partialChunkLoading() ? ChunkStatus.FEATURES : ChunkStatus.FULL;
+        this.ticketDistance = -ChunkStatus.getDistance(status);
+        this.minDistance = settings.minDistance();
+        this.candidateBudget = Math.max(MIN_CANDIDATES, targets.size() * CANDIDATES_PER_PLAYER);
+    }
+
+    /**
+     * roster のうち未スポーン/未割り当てのプレイヤーにスポーンを割り当てる。
+     * 処理は複数ティックにまたがり、完了すると結果を返す。
+     */
+    public static CompletableFuture<Result> assign(ServerLevel level, Collection<GameProfile> roster) {
+        RandomSpawnStorage storage = RandomSpawnStorage.get(level);
+        List<GameProfile> targets = new ArrayList<>();
+        int skipped = 0;
+        for (GameProfile profile : roster) {
+            if (storage.isSpawned(profile.getId()) || storage.getSpawn(profile.getId()) != null) {
+                skipped++;
+            } else {
+                targets.add(profile);
+            }
+        }
+        SpawnPreassigner job = new SpawnPreassigner(level, targets, skipped);
+        job.pump();
+        return job.result;
+    }
+
+    /** 候補を引き、生成依頼の枠が空いている限り依頼する */
+    private void pump() {
+        BlockPos center = level.getSharedSpawnPos();
+        int range = settings.spawnRange();
+        while (inFlight < Math.min(MAX_IN_FLIGHT, waiting.size() * 2) && candidateBudget > 0) {
+            candidateBudget--;
+            candidates++;
+            SpawnMetrics.CANDIDATES.increment();
+            int x = center.getX() + (random.nextInt(range * 2 + 1) - range);
+            int z = center.getZ() + (random.nextInt(range * 2 + 1) - range);
+            // チャンクを依頼する前に、読み込み不要の判定で落とせるものは落とす
+            if (!RandomSpawnHandler.passesPreFilter(level, x, z, settings)
+                    || batchIndex.anyWithin(x, level.getSeaLevel(), z, minDistance, -1)) {
+                continue;
+            }
+            request(x, z);
+        }
+        if (inFlight == 0 && (waiting.isEmpty() || candidateBudget <= 0)) {
+            complete();
+        }
+    }
+
+    /** 7x7 の平坦判定が跨ぐチャンクをすべて依頼し、揃ったらサーバースレッドで判定する */
+    private void request(int x, int z) {
+        ServerChunkCache source = level.getChunkSource();
+        int minChunkX = SectionPos.blockToSectionCoord(x - 3);
+        int maxChunkX = SectionPos.blockToSectionCoord(x + 3);
+        int minChunkZ = SectionPos.blockToSectionCoord(z - 3);
+        int maxChunkZ = SectionPos.blockToSectionCoord(z + 3);
+        List<ChunkPos> tickets = new ArrayList<>(4);
+        List<CompletableFuture<Boolean>> futures = new ArrayList<>(4);
+        for (int cz = minChunkZ; cz <= maxChunkZ; cz++) {
+            for (int cx = minChunkX; cx <= maxChunkX; cx++) {
+                ChunkPos pos = new ChunkPos(cx, cz);
+                if (!source.hasChunk(cx, cz)) {
+                    SpawnMetrics.CHUNK_LOADS.increment();
+                }
+                source.addRegionTicket(PREASSIGN_TICKET, pos, ticketDistance, pos);
+                tickets.add(pos);
+                // サーバースレッドで依頼するとその場で待つため、ワーカーから依頼する
+                futures.add(SpawnChunkLoader.request(source, cx, cz, status));
+            }
+        }
+        inFlight++;
+        CompletableFuture.allOf(futures.toArray(new CompletableFuture[0]))
+                .whenCompleteAsync((ignored, error) -> evaluate(x, z, tickets, futures, error == null), server);
+    }
+
+    private void evaluate(int x, int z, List<ChunkPos> tickets, List<CompletableFuture<Boolean>> futures, boolean loaded) {
+        inFlight--;
+        try {
+            if (waiting.isEmpty()) {
+                return;
+            }
+            for (int i = 0; loaded && i < futures.size(); i++) {
+                loaded = futures.get(i).join();
+            }
+            if (!loaded) {
+                RandomSpawnHandler.debug("preassign: chunk load failed");
+                return;
+            }
+            // チャンクは揃っているので、通常の判定を読み込みなしで行える
+            SpawnChunkLoader chunks = SpawnChunkLoader.recheck(level, settings);
+            BlockPos pos = new BlockPos(x, chunks.height(x, z), z);
+            RejectReason reason = RandomSpawnHandler.checkCandidate(chunks, pos, null);
+            chunks.finish(null);
+            if (reason != null) {
+                return;
+            }
+            // 判定が並行するため、先に採用された地点との距離はここで見る
+            if (batchIndex.anyWithin(pos.getX(), pos.getY(), pos.getZ(), minDistance, -1)) {
+                return;
+            }
+            batchIndex.add(pos.getX(), pos.getY(), pos.getZ());
+            accepted.add(new Assignment(waiting.poll(), pos));
+        } finally {
+            ServerChunkCache source = level.getChunkSource();
+            for (ChunkPos pos : tickets) {
+                source.removeRegionTicket(PREASSIGN_TICKET, pos, ticketDistance, pos);
+            }
+            pump();
+        }
+    }
+
+    private void complete() {
+        if (result.isDone()) {
+            return;
+        }
+        RandomSpawnStorage storage = RandomSpawnStorage.get(level);
+        for (Assignment assignment : accepted) {
+            BlockPos pos = assignment.pos();
+            storage.preassign(assignment.profile().getId(), pos.getX(), pos.getY(), pos.getZ());
+            SpawnResolver.invalidate(assignment.profile().getId());
+        }
+        RandomSpawnJsonBackup.saveAll(level, accepted);
+        long elapsedMillis = (System.nanoTime() - startNanos) / 1_000_000L;
+        if (settings.debugLogs()) {
+            RandomSpawnHandler.debug(String.format("preassign: assigned=%d skipped=%d failed=%d candidates=%d in %dms",
+                    accepted.size(), skipped, waiting.size(), candidates, elapsedMillis));
+        }
+        result.complete(new Result(accepted.size(), skipped, new ArrayList<>(waiting), candidates, elapsedMillis));
+    }
+}
@@ -0,0 +1,30 @@
+package com.minecraft.randomspawn;
+
+import jdk.jfr.Category;
+import jdk.jfr.Enabled;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * JFR イベント: 候補 1 件の却下。件数が多いため既定では無効 (JFR の設定で有効にする)。
+ */
+@Name("randomspawn.SpawnReject")
+@Label("Spawn Candidate Rejected")
+@Category({"RandomSpawn"})
+@Enabled(false)
+@StackTrace(false)
+public class SpawnRejectEvent extends Event {
+    @Label("Reason")
+    public String reason;
+
+    @Label("X")
+    public int x;
+
+    @Label("Y")
+    public int y;
+
+    @Label("Z")
+    public int z;
+}
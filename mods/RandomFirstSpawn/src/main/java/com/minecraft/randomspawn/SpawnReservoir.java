@@ -0,0 +1,199 @@
+package com.minecraft.randomspawn;
+
+import net.minecraft.core.BlockPos;
+import net.minecraft.server.level.ServerLevel;
+import net.minecraft.server.level.ServerPlayer;
+import net.minecraftforge.event.TickEvent;
+import net.minecraftforge.event.server.ServerStoppedEvent;
+import net.minecraftforge.eventbus.api.SubscribeEvent;
+import net.minecraftforge.fml.common.Mod;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * 事前検証済みスポーン地点のプール。
+ * サーバーの空きティックで少しずつ補充し、初回ログイン時は先頭から O(1) で取り出す。
+ * 中身は {@link RandomSpawnStorage} と一緒に保存されるため再起動後も引き継がれる。
+ * オフライン走査の候補一覧があれば、探索より先にそちらを使う。
+ * <p>
+ * 補充の候補は {@link SpawnAsyncJoin} と同じく {@link SpawnChunkLoader#prefetchCandidate} でチャンクの読み込み/生成を
+ * 依頼するだけで待たず、揃った候補から判定する。サーバースレッドがワールド生成を待つことはない。
+ */
+@Mod.EventBusSubscriber
+public final class SpawnReservoir {
+
+    /** 候補一覧から取り出し、チャンクの読み込みを待っている地点 */
+    private record Precomputed(BlockPos pos, CompletableFuture<Boolean> ready) {}
+
+    /** 補充中の探索。依頼中の候補がなくなったら閉じてチケットを外し、次のティックで作り直す */
+    private static final class Refill {
+        final SpawnChunkLoader chunks;
+        @Nullable
+        final SpawnSampler sampler;
+        final List<RandomSpawnHandler.Candidate> inFlight = new ArrayList<>();
+        final List<Precomputed> precomputed = new ArrayList<>();
+        /** この探索で引いた候補の数 */
+        int drawn;
+
+        Refill(ServerLevel level, RandomSpawnStorage storage, SpawnSettings settings) {
+            this.chunks = new SpawnChunkLoader(level, settings);
+            if (settings.samplingMode() == Config.SamplingMode.POISSON) {
+                BlockPos center = level.getSharedSpawnPos();
+                this.sampler = storage.sampler(center.getX(), center.getZ(), settings.spawnRange(),
+                        settings.minDistance(), level.getSeed());
+                this.sampler.beginSearch();
+            } else {
+                this.sampler = null;
+            }
+        }
+
+        boolean idle() {
+            return inFlight.isEmpty() && precomputed.isEmpty();
+        }
+    }
+
+    @Nullable
+    private static Refill refill;
+
+    private SpawnReservoir() {}
+
+    @SubscribeEvent
+    public static void onServerTick(TickEvent.ServerTickEvent event) {
+        if (event.phase != TickEvent.Phase.END) {
+            return;
+        }
+        SpawnSettings settings = SpawnSettings.get();
+        int capacity = settings.reservoirSize();
+        ServerLevel level = event.getServer().overworld();
+        RandomSpawnStorage storage = RandomSpawnStorage.get(level);
+        if (capacity <= 0 || storage.reservoirSize() >= capacity) {
+            close();
+            return;
+        }
+        if (!event.haveTime()) {
+            return;
+        }
+        if (refill != null) {
+            collect(storage, settings);
+            if (refill.idle() && refill.drawn > 0) {
+                // 読み込んだチャンクのチケットを外し、次の依頼は新しい探索として数える
+                close();
+            }
+        }
+        if (refill == null) {
+            refill = new Refill(level, storage, settings);
+        }
+        if (storage.reservoirSize() < capacity) {
+            draw(level, settings);
+        }
+    }
+
+    /** チャンクが揃った候補を判定し、通った地点をプールに入れる */
+    private static void collect(RandomSpawnStorage storage, SpawnSettings settings) {
+        Iterator<RandomSpawnHandler.Candidate> it = refill.inFlight.iterator();
+        while (it.hasNext()) {
+            RandomSpawnHandler.Candidate candidate = it.next();
+            if (!candidate.isReady()) {
+                continue;
+            }
+            it.remove();
+            BlockPos pos = RandomSpawnHandler.evaluate(refill.chunks, candidate, null, refill.sampler, settings);
+            if (pos != null) {
+                offer(storage, pos, settings);
+            }
+        }
+        Iterator<Precomputed> pit = refill.precomputed.iterator();
+        while (pit.hasNext()) {
+            Precomputed candidate = pit.next();
+            if (!candidate.ready().isDone()) {
+                continue;
+            }
+            pit.remove();
+            // 走査後に地形が変わっている場合や、ツールのブロック名による近似で拾った地点はここで落ちる
+            if (candidate.ready().join() && RandomSpawnHandler.isCandidateSafe(refill.chunks, candidate.pos(), null)) {
+                offer(storage, candidate.pos(), settings);
+            } else {
+                RandomSpawnHandler.debug("reservoir: discarded pre-computed candidate");
+            }
+        }
+    }
+
+    private static void offer(RandomSpawnStorage storage, BlockPos pos, SpawnSettings settings) {
+        if (storage.reservoirSize() >= settings.reservoirSize()) {
+            return;
+        }
+        // プール内の地点同士も最低距離を空けておく
+        if (storage.isNearReservoir(pos, settings.minDistance())) {
+            RandomSpawnHandler.debug("reservoir: reject candidate near pooled spawn");
+            return;
+        }
+        storage.addToReservoir(pos);
+        if (settings.debugLogs()) {
+            RandomSpawnHandler.debug(String.format("reservoir: pooled x=%d y=%d z=%d (%d/%d)",
+                    pos.getX(), pos.getY(), pos.getZ(), storage.reservoirSize(), settings.reservoirSize()));
+        }
+    }
+
+    /**
+     * 依頼中の候補が reservoirTriesPerTick 個になるまで引き、チャンクの読み込みを依頼する。
+     * オフライン走査の候補一覧 ({@link SpawnCandidates}) があればそこから取り出し、尽きていれば通常どおり抽選する。
+     */
+    private static void draw(ServerLevel level, SpawnSettings settings) {
+        BlockPos center = level.getSharedSpawnPos();
+        int limit = settings.reservoirTriesPerTick();
+        for (int i = 0; i < limit && refill.inFlight.size() + refill.precomputed.size() < limit; i++) {
+            refill.drawn++;
+            BlockPos pos = SpawnCandidates.poll();
+            if (pos != null) {
+                refill.precomputed.add(new Precomputed(pos, refill.chunks.prefetchCandidate(pos.getX(), pos.getZ())));
+                continue;
+            }
+            RandomSpawnHandler.Candidate candidate = RandomSpawnHandler.drawCandidate(refill.chunks, level.getRandom(),
+                    refill.sampler, center, settings, true);
+            if (candidate != null) {
+                candidate.chunksReady = refill.chunks.prefetchCandidate(candidate.x, candidate.z);
+                refill.inFlight.add(candidate);
+            }
+        }
+    }
+
+    private static void close() {
+        if (refill != null) {
+            refill.chunks.finish(null);
+            refill = null;
+        }
+    }
+
+    /**
+     * プールから地点を取り出し、現在の地形とプレイヤー配置で再検証する。
+     * 再検証で落ちた地点は破棄して次を試す。使える地点がなければ null。
+     */
+    public static BlockPos take(ServerLevel level, @Nullable ServerPlayer player) {
+        RandomSpawnStorage storage = RandomSpawnStorage.get(level);
+        BlockPos pos;
+        while ((pos = storage.pollReservoir()) != null) {
+            // 地点は生成済みなので読み込みのみ。直後のプレイヤー配置でも必要になるチャンク
+            SpawnChunkLoader chunks = SpawnChunkLoader.recheck(level);
+            boolean safe = RandomSpawnHandler.isCandidateSafe(chunks, pos, player);
+            chunks.finish(safe ? pos : null);
+            if (safe) {
+                if (RandomSpawnHandler.isDebugEnabled()) {
+                    RandomSpawnHandler.debug(String.format("reservoir: handed out x=%d y=%d z=%d (%d left)",
+                            pos.getX(), pos.getY(), pos.getZ(), storage.reservoirSize()));
+                }
+                return pos;
+            }
+            RandomSpawnHandler.debug("reservoir: discarded stale pooled spawn");
+        }
+        return null;
+    }
+
+    @SubscribeEvent
+    public static void onServerStopped(ServerStoppedEvent event) {
+        refill = null;
+    }
+}
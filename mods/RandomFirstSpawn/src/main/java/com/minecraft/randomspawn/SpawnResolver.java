@@ -0,0 +1,169 @@
+package com.minecraft.randomspawn;
+
+import net.minecraft.core.BlockPos;
+import net.minecraft.server.level.ServerLevel;
+import net.minecraft.server.level.ServerPlayer;
+import net.minecraftforge.event.entity.player.PlayerEvent;
+import net.minecraftforge.event.server.ServerStoppedEvent;
+import net.minecraftforge.eventbus.api.SubscribeEvent;
+import net.minecraftforge.fml.common.Mod;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.UUID;
+
+/**
+ * プレイヤーのスポーン地点を決める唯一の経路。
+ * 参加時に {@code PlayerListMixin} から一度だけ解決して保存まで行い、結果をセッション中キャッシュする。
+ * ログイン/リスポーンのイベントはキャッシュを参照するだけで、バックアップや保存データを読み直さない。
+ * 手動上書きの JSON が編集された場合は世代番号の変化でキャッシュを破棄する。
+ * セッション中のスポーン地点は {@link SpawnChunkWarmer} が読み込んだまま保持する。
+ */
+@Mod.EventBusSubscriber
+public final class SpawnResolver {
+
+    public enum Source {
+        /** JSON バックアップに書かれた手動上書き */
+        MANUAL,
+        /** 以前に割り当て済みのスポーン */
+        STORED,
+        /** 今回の参加で新たに抽選したスポーン */
+        RANDOM,
+        /** 決められなかった (バニラの位置のまま) */
+        NONE,
+        /** 非同期探索 ({@link SpawnAsyncJoin}) の完了待ち。プレイヤーはその場で保護されている */
+        PENDING
+    }
+
+    /**
+     * @param changed 今回の解決で保存済みの座標から変わったか (プレイヤーを動かす必要があるか)
+     */
+    public record Resolution(Source source, @Nullable BlockPos pos, boolean changed, int backupGeneration) {}
+
+    private static final Map<UUID, Resolution> SESSION = new HashMap<>();
+
+    private SpawnResolver() {}
+
+    /**
+     * 参加時の解決。事前割り当て → 手動上書き → 割り当て済み → 新規抽選の順に決め、変更があれば保存する。
+     */
+    public static Resolution resolveJoin(ServerLevel level, ServerPlayer player) {
+        SpawnMetrics.JOINS.increment();
+        Resolution resolution = resolve(level, player, true);
+        remember(level, player.getUUID(), resolution);
+        return resolution;
+    }
+
+    /**
+     * セッション中の解決結果。未解決、または手動上書きが編集されていれば解決し直す (新規抽選はしない)。
+     */
+    public static Resolution current(ServerLevel level, ServerPlayer player) {
+        Resolution cached = SESSION.get(player.getUUID());
+        if (cached != null && cached.backupGeneration() == RandomSpawnJsonBackup.generation()) {
+            return cached;
+        }
+        Resolution resolution = resolve(level, player, false);
+        remember(level, player.getUUID(), resolution);
+        return resolution;
+    }
+
+    /**
+     * 非同期探索の結果を保存し、セッションの解決結果を差し替える。pos が null なら決められなかったものとする。
+     */
+    static Resolution completeAsync(ServerLevel level, ServerPlayer player, @Nullable BlockPos pos) {
+        int generation = RandomSpawnJsonBackup.generation();
+        Resolution resolution;
+        if (pos == null) {
+            resolution = new Resolution(Source.NONE, null, false, generation);
+        } else {
+            RandomSpawnStorage.get(level).setSpawn(player.getUUID(), pos.getX(), pos.getY(), pos.getZ());
+            RandomSpawnJsonBackup.save(level, player, pos);
+            resolution = new Resolution(Source.RANDOM, pos, true, generation);
+        }
+        remember(level, player.getUUID(), resolution);
+        return resolution;
+    }
+
+    private static void remember(ServerLevel level, UUID uuid, Resolution resolution) {
+        SESSION.put(uuid, resolution);
+        SpawnChunkWarmer.track(level, uuid, resolution.pos());
+    }
+
+    public static boolean hasSession(UUID uuid) {
+        return SESSION.containsKey(uuid);
+    }
+
+    /** 管理コマンドなどで保存済みのスポーンを書き換えたときに呼ぶ */
+    public static void invalidate(UUID uuid) {
+        SESSION.remove(uuid);
+        SpawnChunkWarmer.release(uuid);
+    }
+
+    private static Resolution resolve(ServerLevel level, ServerPlayer player, boolean allowSearch) {
+        int generation = RandomSpawnJsonBackup.generation();
+        RandomSpawnStorage storage = RandomSpawnStorage.get(level);
+        RandomSpawnStorage.BlockPosData stored = storage.getSpawn(player.getUUID());
+
+        BlockPos manual = RandomSpawnJsonBackup.load(level, player.getUUID(), player.getGameProfile().getName());
+
+        // 参加前に予約された地点 ({@link SpawnPreassigner}) があれば探索しない。
+        // 予約時に JSON にも同じ座標が書かれるため、手動上書きより先に判定する。
+        // 予約後に割り当て直された地点は JSON に書かないので、保存データの座標を使う
+        if (stored != null && !storage.isSpawned(player.getUUID())) {
+            BlockPos pos = new BlockPos(stored.x, stored.y, stored.z);
+            storage.setSpawn(player.getUUID(), pos.getX(), pos.getY(), pos.getZ());
+            RandomSpawnJsonBackup.save(level, player, pos);
+            return new Resolution(Source.RANDOM, pos, true, generation);
+        }
+
+        if (manual != null) {
+            boolean changed = stored == null
+                    || stored.x != manual.getX()
+                    || stored.y != manual.getY()
+                    || stored.z != manual.getZ();
+            // いずれも内容が同じなら何も書かない
+            storage.setSpawn(player.getUUID(), manual.getX(), manual.getY(), manual.getZ());
+            if (changed) {
+                // 保存データと異なる座標は管理者による編集
+                storage.setManual(player.getUUID(), true);
+            }
+            RandomSpawnJsonBackup.save(level, player, manual);
+            return new Resolution(Source.MANUAL, manual, changed, generation);
+        }
+
+        if (storage.isSpawned(player.getUUID()) || !allowSearch) {
+            BlockPos pos = stored != null ? new BlockPos(stored.x, stored.y, stored.z) : null;
+            return new Resolution(pos != null ? Source.STORED : Source.NONE, pos, false, generation);
+        }
+
+        BlockPos spawnPos;
+        if (SpawnSettings.get().asyncFirstJoin()) {
+            // プールの地点は生成済みなので、取り出してもワールド生成は待たない
+            spawnPos = SpawnReservoir.take(level, player);
+            if (spawnPos == null) {
+                SpawnAsyncJoin.start(level, player);
+                return new Resolution(Source.PENDING, null, false, generation);
+            }
+        } else {
+            spawnPos = RandomSpawnHandler.findInitialSpawn(level, player);
+        }
+        if (spawnPos == null) {
+            return new Resolution(Source.NONE, null, false, generation);
+        }
+        storage.setSpawn(player.getUUID(), spawnPos.getX(), spawnPos.getY(), spawnPos.getZ());
+        RandomSpawnJsonBackup.save(level, player, spawnPos);
+        return new Resolution(Source.RANDOM, spawnPos, true, generation);
+    }
+
+    @SubscribeEvent
+    public static void onPlayerLogout(PlayerEvent.PlayerLoggedOutEvent event) {
+        SESSION.remove(event.getEntity().getUUID());
+        SpawnChunkWarmer.release(event.getEntity().getUUID());
+    }
+
+    @SubscribeEvent
+    public static void onServerStopped(ServerStoppedEvent event) {
+        SESSION.clear();
+    }
+}
@@ -0,0 +1,301 @@
+package com.minecraft.randomspawn;
+
+import com.mojang.authlib.GameProfile;
+import com.mojang.logging.LogUtils;
+import it.unimi.dsi.fastutil.objects.Object2IntOpenHashMap;
+import it.unimi.dsi.fastutil.objects.ObjectLinkedOpenHashSet;
+import net.minecraft.core.BlockPos;
+import net.minecraft.server.level.ServerLevel;
+import net.minecraft.server.level.ServerPlayer;
+import net.minecraft.world.level.Level;
+import net.minecraftforge.event.TickEvent;
+import net.minecraftforge.event.level.BlockEvent;
+import net.minecraftforge.event.server.ServerStoppedEvent;
+import net.minecraftforge.eventbus.api.SubscribeEvent;
+import net.minecraftforge.fml.common.Mod;
+import org.jetbrains.annotations.Nullable;
+import org.slf4j.Logger;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Optional;
+import java.util.UUID;
+
+/**
+ * 割り当て済み/予約済みのスポーンを、足場・足元・頭のブロックが変わったときだけ再検証する。
+ * <p>
+ * ブロック変更の通知は {@link RandomSpawnStorage#forEachSpawnInColumn} (チャンク → スポーンの逆引き) で
+ * 該当するスポーンだけを引き、持ち主を再検証待ちに積む。再検証は revalidatePerTick 件/ティックまでで、
+ * 判定は {@link SpawnConstraints#BLOCK_CHECKS} (水・溶岩・足場・足元・頭) のみ。平坦さやほかのスポーンとの
+ * 距離は割り当て時に満たしていれば十分で、再検証で落とすとプレイヤーが増えるたびに既存のスポーンが動いてしまう。
+ * <p>
+ * 落ちたスポーンは割り当て直し待ちに積み、1 件ずつ新しい地点へ移して JSON バックアップも更新する。
+ * プールが空なら {@link SpawnAsyncJoin} と同じく候補のチャンクの読み込みを依頼するだけで待たずに探索し、
+ * 持ち主は地点が決まるまで待ち行列に残す。サーバースレッドはワールド生成を待たない。
+ * 管理者が JSON で指定したスポーンは移さずに警告だけ出す。新しい地点が {@link #MAX_REASSIGN_ATTEMPTS} 回続けて
+ * 見つからなければ諦める。
+ * 待ち行列はメモリ上のみで、サーバー停止時に残っていた分は次に同じ列のブロックが変わるまで再検証されない。
+ */
+@Mod.EventBusSubscriber
+public final class SpawnRevalidator {
+    private static final Logger LOGGER = LogUtils.getLogger();
+
+    /** 足場・足元・頭のいずれかが変わったスポーンの持ち主。変更の古い順 */
+    private static final ObjectLinkedOpenHashSet<UUID> DIRTY = new ObjectLinkedOpenHashSet<>();
+    /** 再検証に落ち、割り当て直しを待つ持ち主 */
+    private static final ObjectLinkedOpenHashSet<UUID> REASSIGN = new ObjectLinkedOpenHashSet<>();
+    private static final int MAX_REASSIGN_ATTEMPTS = 5;
+    /** 割り当て直しで地点が見つからなかった回数 */
+    private static final Object2IntOpenHashMap<UUID> FAILED_ATTEMPTS = new Object2IntOpenHashMap<>();
+    /** 1 ティックに引く候補の上限 (前段フィルタで落ちた分も数える) */
+    private static final int DRAWS_PER_TICK = 16;
+
+    /** 待ち行列の先頭の持ち主について進めている探索 */
+    private static final class Search {
+        final UUID uuid;
+        final SpawnChunkLoader chunks;
+        @Nullable
+        final SpawnSampler sampler;
+        /** チャンクの読み込みを待っている候補 (依頼順) */
+        final List<RandomSpawnHandler.Candidate> inFlight = new ArrayList<>();
+        int triesLeft;
+        int tries;
+
+        Search(ServerLevel level, UUID uuid, SpawnSettings settings) {
+            this.uuid = uuid;
+            this.chunks = new SpawnChunkLoader(level, settings);
+            if (settings.samplingMode() == Config.SamplingMode.POISSON) {
+                BlockPos center = level.getSharedSpawnPos();
+                this.sampler = RandomSpawnStorage.get(level).sampler(center.getX(), center.getZ(), settings.spawnRange(),
+                        settings.minDistance(), level.getSeed());
+                this.sampler.beginSearch();
+            } else {
+                this.sampler = null;
+            }
+            this.triesLeft = settings.maxTries();
+        }
+    }
+
+    @Nullable
+    private static Search search;
+
+    /** {@link #MARK} が参照する変更位置の Y。通知はサーバースレッドからのみ来る */
+    private static int changedY;
+    /** 通知ごとにラムダを作らないよう、変更位置は {@link #changedY} で渡す */
+    private static final RandomSpawnStorage.SpawnVisitor MARK = (msb, lsb, x, y, z) -> {
+        if (changedY >= y - 1 && changedY <= y + 1) {
+            DIRTY.add(new UUID(msb, lsb));
+        }
+    };
+
+    private SpawnRevalidator() {}
+
+    @SubscribeEvent
+    public static void onNeighborNotify(BlockEvent.NeighborNotifyEvent event) {
+        if (!(event.getLevel() instanceof ServerLevel level) || level.dimension() != Level.OVERWORLD
+                || SpawnSettings.get().revalidatePerTick() <= 0) {
+            return;
+        }
+        BlockPos pos = event.getPos();
+        changedY = pos.getY();
+        RandomSpawnStorage.get(level).forEachSpawnInColumn(pos.getX(), pos.getZ(), MARK);
+    }
+
+    @SubscribeEvent
+    public static void onServerTick(TickEvent.ServerTickEvent event) {
+        if (event.phase != TickEvent.Phase.END || (DIRTY.isEmpty() && REASSIGN.isEmpty())) {
+            return;
+        }
+        SpawnSettings settings = SpawnSettings.get();
+        ServerLevel level = event.getServer().overworld();
+        RandomSpawnStorage storage = RandomSpawnStorage.get(level);
+        int budget = Math.min(settings.revalidatePerTick(), DIRTY.size());
+        if (budget > 0) {
+            // 変更の通知があったばかりなので、チャンクは通常まだ読み込まれている
+            SpawnChunkLoader chunks = SpawnChunkLoader.recheck(level, settings);
+            for (int i = 0; i < budget; i++) {
+                revalidate(chunks, storage, DIRTY.removeFirst(), settings);
+            }
+            chunks.finish(null);
+        }
+        // 割り当て直しは空きティックに先頭の 1 件ずつ進める
+        if (!REASSIGN.isEmpty() && event.haveTime()) {
+            reassign(level, storage, REASSIGN.first(), settings);
+        }
+    }
+
+    private static void revalidate(SpawnChunkLoader chunks, RandomSpawnStorage storage, UUID uuid, SpawnSettings settings) {
+        RandomSpawnStorage.BlockPosData stored = storage.getSpawn(uuid);
+        if (stored == null) {
+            return;
+        }
+        SpawnMetrics.REVALIDATIONS.increment();
+        BlockPos pos = new BlockPos(stored.x, stored.y, stored.z);
+        for (SpawnConstraint check : SpawnConstraints.BLOCK_CHECKS) {
+            if (!check.test(chunks, pos, null, settings)) {
+                SpawnMetrics.REVALIDATION_FAILURES.increment();
+                if (REASSIGN.add(uuid)) {
+                    LOGGER.info("[RandomSpawn] stored spawn of {} at x={} y={} z={} is no longer safe ({}); queued for reassignment",
+                            uuid, pos.getX(), pos.getY(), pos.getZ(), check.name());
+                }
+                return;
+            }
+        }
+        // 割り当て直しを待つ間に直されていれば、そのまま使い続ける
+        if (REASSIGN.remove(uuid)) {
+            FAILED_ATTEMPTS.removeInt(uuid);
+            if (search != null && search.uuid.equals(uuid)) {
+                cancelSearch();
+            }
+            RandomSpawnHandler.debug("revalidate: spawn was repaired before reassignment");
+        }
+    }
+
+    /**
+     * 待ち行列の先頭の持ち主について割り当て直しを 1 ティック分進める。地点が決まるか諦めるまで、持ち主は待ち行列に残す。
+     */
+    private static void reassign(ServerLevel level, RandomSpawnStorage storage, UUID uuid, SpawnSettings settings) {
+        RandomSpawnStorage.BlockPosData stored = storage.getSpawn(uuid);
+        if (stored == null) {
+            dequeue(uuid);
+            return;
+        }
+        BlockPos old = new BlockPos(stored.x, stored.y, stored.z);
+        ServerPlayer online = level.getServer().getPlayerList().getPlayer(uuid);
+        if (search != null && !search.uuid.equals(uuid)) {
+            cancelSearch();
+        }
+        if (search == null) {
+            String name = playerName(level, uuid, online);
+            // 管理者が JSON で指定した座標 (未反映の編集を含む) は自動で動かさない
+            BlockPos manual = storage.isSpawned(uuid) ? RandomSpawnJsonBackup.load(level, uuid, name) : null;
+            if (storage.isManual(uuid) || (manual != null && !manual.equals(old))) {
+                LOGGER.warn("[RandomSpawn] manual spawn of {} at x={} y={} z={} is no longer safe; keeping it",
+                        uuid, old.getX(), old.getY(), old.getZ());
+                dequeue(uuid);
+                return;
+            }
+            // プールの地点は生成済みなので、取り出してもワールド生成は待たない
+            BlockPos pooled = SpawnReservoir.take(level, online);
+            if (pooled != null) {
+                dequeue(uuid);
+                apply(level, storage, uuid, online, old, pooled);
+                return;
+            }
+            search = new Search(level, uuid, settings);
+        }
+        BlockPos pos = advance(level, online, settings);
+        if (pos != null) {
+            SpawnMetrics.TRIES_PER_SUCCESS.record(search.tries);
+            SpawnMetrics.SPECULATIVE_DISCARDS.add(search.inFlight.size());
+            cancelSearch();
+            dequeue(uuid);
+            apply(level, storage, uuid, online, old, pos);
+            return;
+        }
+        if (search.triesLeft > 0 || !search.inFlight.isEmpty()) {
+            return;
+        }
+        cancelSearch();
+        REASSIGN.remove(uuid);
+        int failures = FAILED_ATTEMPTS.addTo(uuid, 1) + 1;
+        if (failures >= MAX_REASSIGN_ATTEMPTS) {
+            FAILED_ATTEMPTS.removeInt(uuid);
+            LOGGER.warn("[RandomSpawn] no new spawn found for {} after {} attempts; keeping x={} y={} z={}",
+                    uuid, failures, old.getX(), old.getY(), old.getZ());
+            return;
+        }
+        // 末尾に戻し、ほかの持ち主を先に処理する
+        REASSIGN.add(uuid);
+    }
+
+    /** 読み込み終わった候補を判定し、通った地点を返す。なければ次の候補を引いてチャンクの読み込みを依頼する */
+    @Nullable
+    private static BlockPos advance(ServerLevel level, @Nullable ServerPlayer online, SpawnSettings settings) {
+        Iterator<RandomSpawnHandler.Candidate> it = search.inFlight.iterator();
+        while (it.hasNext()) {
+            RandomSpawnHandler.Candidate candidate = it.next();
+            if (!candidate.isReady()) {
+                continue;
+            }
+            it.remove();
+            BlockPos pos = RandomSpawnHandler.evaluate(search.chunks, candidate, online, search.sampler, settings);
+            if (pos != null) {
+                return pos;
+            }
+        }
+        int k = SpawnBatchSize.next(settings.searchBatch());
+        BlockPos center = level.getSharedSpawnPos();
+        for (int i = 0; i < DRAWS_PER_TICK && search.inFlight.size() < k && search.triesLeft > 0; i++) {
+            search.triesLeft--;
+            search.tries++;
+            RandomSpawnHandler.Candidate candidate = RandomSpawnHandler.drawCandidate(search.chunks, level.getRandom(),
+                    search.sampler, center, settings, true);
+            if (candidate != null) {
+                candidate.chunksReady = search.chunks.prefetchCandidate(candidate.x, candidate.z);
+                search.inFlight.add(candidate);
+            }
+        }
+        return null;
+    }
+
+    private static void dequeue(UUID uuid) {
+        REASSIGN.remove(uuid);
+        FAILED_ATTEMPTS.removeInt(uuid);
+    }
+
+    private static void cancelSearch() {
+        if (search != null) {
+            search.chunks.finish(null);
+            search = null;
+        }
+    }
+
+    private static void apply(ServerLevel level, RandomSpawnStorage storage, UUID uuid, @Nullable ServerPlayer online,
+                              BlockPos old, BlockPos pos) {
+        if (storage.isSpawned(uuid)) {
+            storage.setSpawn(uuid, pos.getX(), pos.getY(), pos.getZ());
+            // 参加時の解決は JSON を優先するため、こちらも新しい地点に書き換える
+            RandomSpawnJsonBackup.save(level, uuid, playerName(level, uuid, online), pos);
+        } else {
+            // 予約は初回参加時に保存データから解決され、その時点で JSON にも書かれる
+            storage.preassign(uuid, pos.getX(), pos.getY(), pos.getZ());
+        }
+        SpawnResolver.invalidate(uuid);
+        SpawnMetrics.REASSIGNMENTS.increment();
+
+        if (online != null) {
+            // ベッドやアンカーを使っていなければ、リスポーン地点も移す
+            if (online.getRespawnDimension() == Level.OVERWORLD && old.equals(online.getRespawnPosition())) {
+                online.setRespawnPosition(Level.OVERWORLD, pos, 0.0f, true, false);
+            }
+            SpawnResolver.current(level, online);
+        }
+        LOGGER.info("[RandomSpawn] reassigned spawn of {} from x={} y={} z={} to x={} y={} z={}",
+                uuid, old.getX(), old.getY(), old.getZ(), pos.getX(), pos.getY(), pos.getZ());
+    }
+
+    private static String playerName(ServerLevel level, UUID uuid, @Nullable ServerPlayer online) {
+        if (online != null) {
+            return online.getGameProfile().getName();
+        }
+        return Optional.ofNullable(level.getServer().getProfileCache())
+                .flatMap(cache -> cache.get(uuid))
+                .map(GameProfile::getName)
+                .orElse("");
+    }
+
+    /** /randomspawn stats 用 */
+    public static String summary() {
+        return String.format("revalidationQueue=%d reassignQueue=%d", DIRTY.size(), REASSIGN.size());
+    }
+
+    @SubscribeEvent
+    public static void onServerStopped(ServerStoppedEvent event) {
+        DIRTY.clear();
+        REASSIGN.clear();
+        FAILED_ATTEMPTS.clear();
+        search = null;
+    }
+}
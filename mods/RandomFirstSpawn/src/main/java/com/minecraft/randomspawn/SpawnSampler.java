@@ -0,0 +1,350 @@
+package com.minecraft.randomspawn;
+
+import it.unimi.dsi.fastutil.ints.IntArrayList;
+
+import java.util.Arrays;
+import java.util.Random;
+
+/**
+ * スポーン範囲 (中心からの正方形) を覆う Poisson-disk 点集合。
+ * 各点について「最も近い割り当て済みスポーンまでの水平距離の二乗」を保持し、
+ * 候補として常にその値が最大の点を返す。割り当てが進んでも最低距離で弾かれにくいため、
+ * 1 件あたりの試行回数がプレイヤー数にほぼ依存しない。
+ *
+ * <p>点の間隔は最低距離の 1/3 とし、点数が {@link #MAX_POINTS} を超える場合は間隔を広げる。
+ * 地形で弾かれた点はすぐには捨てず、周囲にずらして数回試してから除外する。
+ * 内部では中心からの相対座標で持ち、公開メソッドはワールド座標で受け渡す。
+ *
+ * <p>候補になりうる点は nearestSq をキーにした最大ヒープに入れ、{@link #next} は先頭を見るだけで済ませる。
+ * 今回の探索で飛ばした点はヒープから外し、次の探索の開始時に戻す。割り当てを反映するときは、
+ * 点を格子に振り分けておき、候補になりうる点の nearestSq の最大値 (これより近い点しか値が変わらない) が
+ * 届く範囲の格子だけを更新する。
+ */
+public final class SpawnSampler {
+    public static final int MAX_POINTS = 65536;
+    /** Bridson 法で 1 点から周囲に試す候補数 */
+    private static final int ATTEMPTS_PER_POINT = 30;
+    /** Bridson 法の充填率の目安 (点数 ≒ 0.7 * 面積 / 間隔^2) */
+    private static final double PACKING_DENSITY = 0.7;
+    /** 地形で弾かれた点をずらして試す回数 */
+    private static final int MAX_FAILURES = 4;
+    /** 割り当ての反映に使う格子の一辺のセル数の上限 */
+    private static final int MAX_GRID_SIDE = 128;
+
+    private final int centerX;
+    private final int centerZ;
+    private final int range;
+    private final int minDistance;
+    private final int spacing;
+    private final int count;
+    private final int[] xs;
+    private final int[] zs;
+    private final float[] nearestSq;
+    private final byte[] failures;
+    /** nearestSq の最大ヒープ。地形で除外された点と、今回の探索で飛ばした点は含まない */
+    private final int[] heap;
+    /** 点 → ヒープ内の位置。ヒープにない点は -1 */
+    private final int[] heapPos;
+    private int heapSize;
+    /** 今回の探索で飛ばした点。次の探索の開始時にヒープへ戻す */
+    private final IntArrayList skipped = new IntArrayList();
+    private final int cellSize;
+    private final int gridSide;
+    /** セル → cellPoints 内の開始位置 (セル数 + 1 個) */
+    private final int[] cellStart;
+    /** セルごとにまとめた点の番号 */
+    private final int[] cellPoints;
+    private int blockedCount;
+
+    public SpawnSampler(int centerX, int centerZ, int range, int minDistance, long seed) {
+        this.centerX = centerX;
+        this.centerZ = centerZ;
+        this.range = range;
+        this.minDistance = minDistance;
+        double side = range * 2.0 + 1.0;
+        int capped = (int) Math.ceil(side * Math.sqrt(PACKING_DENSITY / MAX_POINTS));
+        // 最低距離より細かく点を置き、最遠点選択で詰めていく
+        this.spacing = Math.max(Math.max(1, minDistance / 3), capped);
+
+        int[] px = new int[MAX_POINTS];
+        int[] pz = new int[MAX_POINTS];
+        this.count = generate(range, spacing, new Random(seed), px, pz);
+        this.xs = Arrays.copyOf(px, count);
+        this.zs = Arrays.copyOf(pz, count);
+        this.nearestSq = new float[count];
+        Arrays.fill(nearestSq, Float.POSITIVE_INFINITY);
+        this.failures = new byte[count];
+
+        // 初期値はすべて無限大なので、並び順のままでヒープになっている
+        this.heap = new int[count];
+        this.heapPos = new int[count];
+        for (int i = 0; i < count; i++) {
+            heap[i] = i;
+            heapPos[i] = i;
+        }
+        this.heapSize = count;
+
+        this.cellSize = Math.max(spacing, (int) Math.ceil(side / MAX_GRID_SIDE));
+        this.gridSide = (int) Math.ceil(side / cellSize);
+        this.cellStart = new int[gridSide * gridSide + 1];
+        this.cellPoints = new int[count];
+        for (int i = 0; i < count; i++) {
+            cellStart[cell(xs[i], zs[i]) + 1]++;
+        }
+        for (int c = 0; c < gridSide * gridSide; c++) {
+            cellStart[c + 1] += cellStart[c];
+        }
+        int[] fill = Arrays.copyOf(cellStart, gridSide * gridSide);
+        for (int i = 0; i < count; i++) {
+            cellPoints[fill[cell(xs[i], zs[i])]++] = i;
+        }
+    }
+
+    public boolean matches(int centerX, int centerZ, int range, int minDistance) {
+        return this.centerX == centerX && this.centerZ == centerZ && this.range == range && this.minDistance == minDistance;
+    }
+
+    public int size() {
+        return count;
+    }
+
+    public int available() {
+        return count - blockedCount;
+    }
+
+    public int x(int index) {
+        return centerX + xs[index];
+    }
+
+    public int z(int index) {
+        return centerZ + zs[index];
+    }
+
+    /** 候補座標をずらす幅。まだ弾かれていない点は 0 (点そのものを使う) */
+    public int jitter(int index) {
+        return failures[index] == 0 ? 0 : spacing / 2;
+    }
+
+    /** 新しい探索を開始する。前回の探索で {@link #skip} した点は再び候補になる */
+    public void beginSearch() {
+        for (int i = 0; i < skipped.size(); i++) {
+            int index = skipped.getInt(i);
+            if (failures[index] < MAX_FAILURES && heapPos[index] < 0) {
+                insert(index);
+            }
+        }
+        skipped.clear();
+    }
+
+    /**
+     * 地形で除外されておらず、今回の探索で飛ばしていない点のうち、割り当て済みスポーンから最も遠いもの。
+     * 最も遠い点でも最低距離に満たない (空きがない) 場合は -1。
+     */
+    public int next() {
+        if (heapSize == 0 || nearestSq[heap[0]] < (float) minDistance * minDistance) {
+            return -1;
+        }
+        return heap[0];
+    }
+
+    /** 足場や平坦さなど局所的な理由で弾かれた点。{@link #MAX_FAILURES} 回弾かれたら以後は候補にしない */
+    public void reject(int index) {
+        if (failures[index] < MAX_FAILURES && ++failures[index] == MAX_FAILURES) {
+            blockedCount++;
+            remove(index);
+        }
+    }
+
+    /** 海/川やワールドボーダー外など、ずらしても変わらない理由で弾かれた点。以後は候補にしない */
+    public void block(int index) {
+        if (failures[index] < MAX_FAILURES) {
+            failures[index] = MAX_FAILURES;
+            blockedCount++;
+            remove(index);
+        }
+    }
+
+    /** オンラインプレイヤーが近いなど、一時的に使えない点。今回の探索でのみ除外する */
+    public void skip(int index) {
+        if (heapPos[index] >= 0) {
+            remove(index);
+            skipped.add(index);
+        }
+    }
+
+    /** ワールド座標 (worldX, worldZ) にスポーンが割り当てられたことを反映する */
+    public void occupy(int worldX, int worldZ) {
+        int x = worldX - centerX;
+        int z = worldZ - centerZ;
+        // 候補になりうる点 (ヒープ内と飛ばし中) の nearestSq の最大値より遠い点は値が変わらない
+        float reachSq = heapSize > 0 ? nearestSq[heap[0]] : 0.0f;
+        for (int i = 0; i < skipped.size(); i++) {
+            reachSq = Math.max(reachSq, nearestSq[skipped.getInt(i)]);
+        }
+        int minCellX = 0;
+        int maxCellX = gridSide - 1;
+        int minCellZ = 0;
+        int maxCellZ = gridSide - 1;
+        if (reachSq < Float.POSITIVE_INFINITY) {
+            int reach = (int) Math.ceil(Math.sqrt(reachSq));
+            minCellX = Math.max(minCellX, cellCoord(x - reach));
+            maxCellX = Math.min(maxCellX, cellCoord(x + reach));
+            minCellZ = Math.max(minCellZ, cellCoord(z - reach));
+            maxCellZ = Math.min(maxCellZ, cellCoord(z + reach));
+        }
+        for (int cz = minCellZ; cz <= maxCellZ; cz++) {
+            for (int cx = minCellX; cx <= maxCellX; cx++) {
+                int c = cz * gridSide + cx;
+                for (int p = cellStart[c]; p < cellStart[c + 1]; p++) {
+                    int i = cellPoints[p];
+                    float dx = xs[i] - x;
+                    float dz = zs[i] - z;
+                    float distSq = dx * dx + dz * dz;
+                    if (distSq < nearestSq[i]) {
+                        nearestSq[i] = distSq;
+                        if (heapPos[i] >= 0) {
+                            siftDown(heapPos[i]);
+                        }
+                    }
+                }
+            }
+        }
+    }
+
+    private int cellCoord(int relative) {
+        return Math.floorDiv(relative + range, cellSize);
+    }
+
+    private int cell(int x, int z) {
+        return cellCoord(z) * gridSide + cellCoord(x);
+    }
+
+    private void insert(int index) {
+        heap[heapSize] = index;
+        heapPos[index] = heapSize;
+        siftUp(heapSize++);
+    }
+
+    private void remove(int index) {
+        int at = heapPos[index];
+        if (at < 0) {
+            return;
+        }
+        heapPos[index] = -1;
+        int last = heap[--heapSize];
+        if (at == heapSize) {
+            return;
+        }
+        heap[at] = last;
+        heapPos[last] = at;
+        siftUp(at);
+        siftDown(heapPos[last]);
+    }
+
+    private void siftUp(int at) {
+        int index = heap[at];
+        while (at > 0) {
+            int parent = (at - 1) >>> 1;
+            if (nearestSq[heap[parent]] >= nearestSq[index]) {
+                break;
+            }
+            heap[at] = heap[parent];
+            heapPos[heap[at]] = at;
+            at = parent;
+        }
+        heap[at] = index;
+        heapPos[index] = at;
+    }
+
+    private void siftDown(int at) {
+        int index = heap[at];
+        while (true) {
+            int child = 2 * at + 1;
+            if (child >= heapSize) {
+                break;
+            }
+            if (child + 1 < heapSize && nearestSq[heap[child + 1]] > nearestSq[heap[child]]) {
+                child++;
+            }
+            if (nearestSq[heap[child]] <= nearestSq[index]) {
+                break;
+            }
+            heap[at] = heap[child];
+            heapPos[heap[at]] = at;
+            at = child;
+        }
+        heap[at] = index;
+        heapPos[index] = at;
+    }
+
+    /**
+     * Bridson 法で [-range, range] の正方形に間隔 spacing 以上の点を生成し、生成数を返す。
+     */
+    private static int generate(int range, int spacing, Random random, int[] px, int[] pz) {
+        double cellSize = spacing / Math.sqrt(2.0);
+        int gridSide = (int) Math.ceil((range * 2.0 + 1.0) / cellSize);
+        int[] grid = new int[gridSide * gridSide];
+        Arrays.fill(grid, -1);
+        int[] active = new int[px.length];
+        int activeCount = 0;
+        int generated = 0;
+        long spacingSq = (long) spacing * spacing;
+
+        px[0] = random.nextInt(range * 2 + 1) - range;
+        pz[0] = random.nextInt(range * 2 + 1) - range;
+        grid[cellIndex(px[0], pz[0], range, cellSize, gridSide)] = 0;
+        active[activeCount++] = 0;
+        generated++;
+
+        while (activeCount > 0 && generated < px.length) {
+            int slot = random.nextInt(activeCount);
+            int origin = active[slot];
+            boolean placed = false;
+            for (int attempt = 0; attempt < ATTEMPTS_PER_POINT && generated < px.length; attempt++) {
+                double angle = random.nextDouble() * Math.PI * 2.0;
+                double distance = spacing * (1.0 + random.nextDouble());
+                int cx = (int) Math.round(px[origin] + Math.cos(angle) * distance);
+                int cz = (int) Math.round(pz[origin] + Math.sin(angle) * distance);
+                if (cx < -range || cx > range || cz < -range || cz > range) {
+                    continue;
+                }
+                int gx = (int) ((cx + range) / cellSize);
+                int gz = (int) ((cz + range) / cellSize);
+                if (isFarFromNeighbours(cx, cz, gx, gz, px, pz, grid, gridSide, spacingSq)) {
+                    px[generated] = cx;
+                    pz[generated] = cz;
+                    grid[gz * gridSide + gx] = generated;
+                    active[activeCount++] = generated;
+                    generated++;
+                    placed = true;
+                }
+            }
+            if (!placed) {
+                active[slot] = active[--activeCount];
+            }
+        }
+        return generated;
+    }
+
+    private static boolean isFarFromNeighbours(int x, int z, int gx, int gz, int[] px, int[] pz,
+                                               int[] grid, int gridSide, long spacingSq) {
+        for (int nz = Math.max(0, gz - 2); nz <= Math.min(gridSide - 1, gz + 2); nz++) {
+            for (int nx = Math.max(0, gx - 2); nx <= Math.min(gridSide - 1, gx + 2); nx++) {
+                int other = grid[nz * gridSide + nx];
+                if (other < 0) {
+                    continue;
+                }
+                long dx = px[other] - x;
+                long dz = pz[other] - z;
+                if (dx * dx + dz * dz < spacingSq) {
+                    return false;
+                }
+            }
+        }
+        return true;
+    }
+
+    private static int cellIndex(int x, int z, int range, double cellSize, int gridSide) {
+        return (int) ((z + range) / cellSize) * gridSide + (int) ((x + range) / cellSize);
+    }
+}
@@ -0,0 +1,34 @@
+package com.minecraft.randomspawn;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * JFR イベント: スポーン探索 1 回 ({@link SpawnChunkLoader} の生成から {@link SpawnChunkLoader#finish} まで)。
+ */
+@Name("randomspawn.SpawnSearch")
+@Label("Spawn Search")
+@Category({"RandomSpawn"})
+@Description("One random spawn search, from the first candidate to the chosen (or failed) spawn")
+@StackTrace(false)
+public class SpawnSearchEvent extends Event {
+    @Label("Found")
+    public boolean found;
+
+    @Label("Tries")
+    public int tries;
+
+    @Label("Chunks Touched")
+    public int chunksTouched;
+
+    @Label("Chunks Loaded")
+    @Description("Chunks that were not loaded yet and had to be read or generated")
+    public int chunksLoaded;
+
+    @Label("Highest Status")
+    public String highestStatus;
+}
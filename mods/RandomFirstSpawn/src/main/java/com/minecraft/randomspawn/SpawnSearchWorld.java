@@ -0,0 +1,28 @@
+package com.minecraft.randomspawn;
+
+import net.minecraft.server.level.ServerPlayer;
+import org.jetbrains.annotations.Nullable;
+
+/**
+ * 候補の抽選と判定 ({@link RandomSpawnHandler#drawCandidate}, {@link RandomSpawnHandler#evaluate}) がワールドから読むもの。
+ * 本番では {@link SpawnChunkLoader} が 1 回の探索ぶんを実装し、ベンチマークは合成地形で実装して同じ判定をそのまま回す。
+ */
+interface SpawnSearchWorld extends SpawnTerrainIndex.HeightSource {
+    /** この探索で使う地形インデックス */
+    SpawnTerrainIndex terrain();
+
+    /** 候補を 1 つ引くごとに呼ぶ */
+    void countTry();
+
+    /** チャンクを読まずにできる足切り (ワールドボーダー、バイオーム)。通れば true */
+    boolean passesPreFilter(int x, int z, SpawnSettings settings);
+
+    /** オンラインプレイヤーの現在位置 */
+    SpawnSpatialIndex livePlayers();
+
+    /** {@link #livePlayers} 内でのプレイヤーの ID。除外指定に使う。いなければ -1 */
+    int liveId(@Nullable ServerPlayer player);
+
+    /** 割り当て済みスポーン */
+    RandomSpawnStorage storage();
+}
@@ -0,0 +1,71 @@
+package com.minecraft.randomspawn;
+
+import net.minecraftforge.common.ForgeConfigSpec;
+import net.minecraftforge.eventbus.api.SubscribeEvent;
+import net.minecraftforge.fml.common.Mod;
+import net.minecraftforge.fml.event.config.ModConfigEvent;
+
+/**
+ * コンフィグの不変スナップショット。探索ループなどでは {@link ForgeConfigSpec.ConfigValue#get} を毎回呼ばず、
+ * 探索の開始時に {@link #get} で 1 度だけ取り出して使う。
+ * 読み込み/再読み込み ({@link ModConfigEvent}) のたびに作り直して差し替える。読み込み前は既定値。
+ * 1 回の探索の途中で再読み込みがあっても、その探索は開始時の値のまま進む。
+ */
+@Mod.EventBusSubscriber(modid = "randomspawn", bus = Mod.EventBusSubscriber.Bus.MOD)
+public record SpawnSettings(
+        int spawnRange,
+        int minDistance,
+        int maxTries,
+        int heightDiff,
+        boolean debugLogs,
+        int reservoirSize,
+        int reservoirTriesPerTick,
+        boolean biomePreFilter,
+        boolean partialChunkLoading,
+        Config.SamplingMode samplingMode,
+        int metricsDumpMinutes,
+        int warmSpawnLimit,
+        int warmSpawnRadius,
+        int revalidatePerTick,
+        boolean asyncFirstJoin,
+        int asyncJoinTimeoutSeconds,
+        int searchBatch) {
+
+    private static volatile SpawnSettings current = read(true);
+
+    public static SpawnSettings get() {
+        return current;
+    }
+
+    private static SpawnSettings read(boolean defaults) {
+        return new SpawnSettings(
+                value(Config.SPAWN_RANGE, defaults),
+                value(Config.MIN_DISTANCE, defaults),
+                value(Config.MAX_TRIES, defaults),
+                value(Config.HEIGHT_DIFF_LIMIT, defaults),
+                value(Config.DEBUG_LOGS, defaults),
+                value(Config.RESERVOIR_SIZE, defaults),
+                value(Config.RESERVOIR_TRIES_PER_TICK, defaults),
+                value(Config.BIOME_PRE_FILTER, defaults),
+                value(Config.PARTIAL_CHUNK_LOADING, defaults),
+                value(Config.SAMPLING_MODE, defaults),
+                value(Config.METRICS_DUMP_MINUTES, defaults),
+                value(Config.WARM_SPAWN_LIMIT, defaults),
+                value(Config.WARM_SPAWN_RADIUS, defaults),
+                value(Config.REVALIDATE_PER_TICK, defaults),
+                value(Config.ASYNC_FIRST_JOIN, defaults),
+                value(Config.ASYNC_JOIN_TIMEOUT_SECONDS, defaults),
+                value(Config.SEARCH_BATCH, defaults));
+    }
+
+    private static <T> T value(ForgeConfigSpec.ConfigValue<T> value, boolean defaults) {
+        return defaults ? value.getDefault() : value.get();
+    }
+
+    @SubscribeEvent
+    public static void onLoad(final ModConfigEvent event) {
+        if (event.getConfig().getSpec() == Config.COMMON_CONFIG && !(event instanceof ModConfigEvent.Unloading)) {
+            current = read(false);
+        }
+    }
+}
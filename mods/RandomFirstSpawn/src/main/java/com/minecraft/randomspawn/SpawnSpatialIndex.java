@@ -0,0 +1,168 @@
+package com.minecraft.randomspawn;
+
+import it.unimi.dsi.fastutil.longs.Long2IntOpenHashMap;
+
+import java.util.Arrays;
+
+/**
+ * 座標点の水平グリッドハッシュ。セル一辺は最低距離程度にしておくと、
+ * 半径クエリは周囲 3x3 セル程度の走査で済み、点数に依存しない。
+ * 点は int の ID で管理し、座標とセル内リストはプリミティブ配列に持つためクエリ中に割り当ては発生しない。
+ * 距離判定は従来どおり 3 次元で行う（水平距離以上になるため水平セルでの絞り込みは安全）。
+ */
+public final class SpawnSpatialIndex {
+    private static final int NONE = -1;
+
+    private final int cellSize;
+    /** セルキー → セル内先頭の点 ID */
+    private final Long2IntOpenHashMap heads = new Long2IntOpenHashMap();
+    private int[] xs = new int[64];
+    private int[] ys = new int[64];
+    private int[] zs = new int[64];
+    /** 同じセル内の次の点 ID。未使用 ID では空きリストの次を指す */
+    private int[] next = new int[64];
+    private boolean[] live = new boolean[64];
+    private int capacityUsed;
+    private int freeHead = NONE;
+    private int size;
+
+    public SpawnSpatialIndex(int cellSize) {
+        this.cellSize = Math.max(1, cellSize);
+        heads.defaultReturnValue(NONE);
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public void clear() {
+        heads.clear();
+        Arrays.fill(live, 0, capacityUsed, false);
+        capacityUsed = 0;
+        freeHead = NONE;
+        size = 0;
+    }
+
+    public int add(int x, int y, int z) {
+        int id;
+        if (freeHead != NONE) {
+            id = freeHead;
+            freeHead = next[id];
+        } else {
+            id = capacityUsed++;
+            ensureCapacity(capacityUsed);
+        }
+        xs[id] = x;
+        ys[id] = y;
+        zs[id] = z;
+        live[id] = true;
+        link(id);
+        size++;
+        return id;
+    }
+
+    public void move(int id, int x, int y, int z) {
+        if (!isLive(id)) {
+            return;
+        }
+        long oldCell = cellKey(xs[id], zs[id]);
+        long newCell = cellKey(x, z);
+        if (oldCell != newCell) {
+            unlink(id);
+            xs[id] = x;
+            zs[id] = z;
+            link(id);
+        } else {
+            xs[id] = x;
+            zs[id] = z;
+        }
+        ys[id] = y;
+    }
+
+    public void remove(int id) {
+        if (!isLive(id)) {
+            return;
+        }
+        unlink(id);
+        live[id] = false;
+        next[id] = freeHead;
+        freeHead = id;
+        size--;
+    }
+
+    /**
+     * (x, y, z) から半径 radius 未満に excludeId 以外の点があるか。
+     */
+    public boolean anyWithin(double x, double y, double z, double radius, int excludeId) {
+        double radiusSq = radius * radius;
+        int minCellX = Math.floorDiv((int) Math.floor(x - radius), cellSize);
+        int maxCellX = Math.floorDiv((int) Math.floor(x + radius), cellSize);
+        int minCellZ = Math.floorDiv((int) Math.floor(z - radius), cellSize);
+        int maxCellZ = Math.floorDiv((int) Math.floor(z + radius), cellSize);
+        for (int cz = minCellZ; cz <= maxCellZ; cz++) {
+            for (int cx = minCellX; cx <= maxCellX; cx++) {
+                for (int id = heads.get(pack(cx, cz)); id != NONE; id = next[id]) {
+                    if (id == excludeId) {
+                        continue;
+                    }
+                    double dx = xs[id] - x;
+                    double dy = ys[id] - y;
+                    double dz = zs[id] - z;
+                    if (dx * dx + dy * dy + dz * dz < radiusSq) {
+                        return true;
+                    }
+                }
+            }
+        }
+        return false;
+    }
+
+    private boolean isLive(int id) {
+        return id >= 0 && id < capacityUsed && live[id];
+    }
+
+    private void link(int id) {
+        long key = cellKey(xs[id], zs[id]);
+        next[id] = heads.get(key);
+        heads.put(key, id);
+    }
+
+    private void unlink(int id) {
+        long key = cellKey(xs[id], zs[id]);
+        int head = heads.get(key);
+        if (head == id) {
+            if (next[id] == NONE) {
+                heads.remove(key);
+            } else {
+                heads.put(key, next[id]);
+            }
+            return;
+        }
+        for (int prev = head; prev != NONE; prev = next[prev]) {
+            if (next[prev] == id) {
+                next[prev] = next[id];
+                return;
+            }
+        }
+    }
+
+    private long cellKey(int x, int z) {
+        return pack(Math.floorDiv(x, cellSize), Math.floorDiv(z, cellSize));
+    }
+
+    private static long pack(int cellX, int cellZ) {
+        return ((long) cellX << 32) | (cellZ & 0xFFFFFFFFL);
+    }
+
+    private void ensureCapacity(int required) {
+        if (required <= xs.length) {
+            return;
+        }
+        int newLength = Math.max(required, xs.length * 2);
+        xs = Arrays.copyOf(xs, newLength);
+        ys = Arrays.copyOf(ys, newLength);
+        zs = Arrays.copyOf(zs, newLength);
+        next = Arrays.copyOf(next, newLength);
+        live = Arrays.copyOf(live, newLength);
+    }
+}
@@ -0,0 +1,176 @@
+package com.minecraft.randomspawn;
+
+import it.unimi.dsi.fastutil.HashCommon;
+
+import java.util.Arrays;
+import java.util.UUID;
+
+/**
+ * UUID (上位/下位 long) をキーにしたオープンアドレス法のハッシュ表。
+ * 値はスロットごとのプリミティブ列 (フラグ、x/y/z、空間インデックス ID) に持つため、
+ * 参照時に文字列化やオブジェクトの割り当ては発生しない。削除は行わない。
+ */
+final class SpawnTable {
+    static final int NONE = -1;
+    static final byte USED = 1;
+    static final byte SPAWNED = 2;
+    static final byte HAS_POS = 4;
+    static final byte MANUAL = 8;
+
+    private long[] msbs;
+    private long[] lsbs;
+    private byte[] flags;
+    private int[] xs;
+    private int[] ys;
+    private int[] zs;
+    private int[] indexIds;
+    private int mask;
+    private int size;
+
+    SpawnTable(int expected) {
+        allocate(HashCommon.arraySize(Math.max(expected, 16), 0.5f));
+    }
+
+    int size() {
+        return size;
+    }
+
+    /** 走査用のスロット数。{@link #isUsed} が true のスロットだけが有効 */
+    int capacity() {
+        return flags.length;
+    }
+
+    int find(UUID uuid) {
+        return find(uuid.getMostSignificantBits(), uuid.getLeastSignificantBits());
+    }
+
+    int find(long msb, long lsb) {
+        int slot = (int) HashCommon.mix(msb ^ lsb) & mask;
+        while ((flags[slot] & USED) != 0) {
+            if (msbs[slot] == msb && lsbs[slot] == lsb) {
+                return slot;
+            }
+            slot = (slot + 1) & mask;
+        }
+        return NONE;
+    }
+
+    /** 既存のスロットを返し、なければ追加する */
+    int findOrAdd(long msb, long lsb) {
+        int slot = find(msb, lsb);
+        if (slot != NONE) {
+            return slot;
+        }
+        if ((size + 1) * 2 > flags.length) {
+            rehash(flags.length * 2);
+        }
+        slot = (int) HashCommon.mix(msb ^ lsb) & mask;
+        while ((flags[slot] & USED) != 0) {
+            slot = (slot + 1) & mask;
+        }
+        msbs[slot] = msb;
+        lsbs[slot] = lsb;
+        flags[slot] = USED;
+        indexIds[slot] = NONE;
+        size++;
+        return slot;
+    }
+
+    boolean isUsed(int slot) {
+        return (flags[slot] & USED) != 0;
+    }
+
+    boolean isSpawned(int slot) {
+        return (flags[slot] & SPAWNED) != 0;
+    }
+
+    boolean hasPos(int slot) {
+        return (flags[slot] & HAS_POS) != 0;
+    }
+
+    boolean isManual(int slot) {
+        return (flags[slot] & MANUAL) != 0;
+    }
+
+    long msb(int slot) {
+        return msbs[slot];
+    }
+
+    long lsb(int slot) {
+        return lsbs[slot];
+    }
+
+    int x(int slot) {
+        return xs[slot];
+    }
+
+    int y(int slot) {
+        return ys[slot];
+    }
+
+    int z(int slot) {
+        return zs[slot];
+    }
+
+    int indexId(int slot) {
+        return indexIds[slot];
+    }
+
+    void setSpawned(int slot, boolean spawned) {
+        flags[slot] = (byte) (spawned ? flags[slot] | SPAWNED : flags[slot] & ~SPAWNED);
+    }
+
+    void setManual(int slot, boolean manual) {
+        flags[slot] = (byte) (manual ? flags[slot] | MANUAL : flags[slot] & ~MANUAL);
+    }
+
+    void setPos(int slot, int x, int y, int z) {
+        xs[slot] = x;
+        ys[slot] = y;
+        zs[slot] = z;
+        flags[slot] |= HAS_POS;
+    }
+
+    void setIndexId(int slot, int id) {
+        indexIds[slot] = id;
+    }
+
+    private void allocate(int length) {
+        msbs = new long[length];
+        lsbs = new long[length];
+        flags = new byte[length];
+        xs = new int[length];
+        ys = new int[length];
+        zs = new int[length];
+        indexIds = new int[length];
+        Arrays.fill(indexIds, NONE);
+        mask = length - 1;
+    }
+
+    private void rehash(int length) {
+        long[] oldMsbs = msbs;
+        long[] oldLsbs = lsbs;
+        byte[] oldFlags = flags;
+        int[] oldXs = xs;
+        int[] oldYs = ys;
+        int[] oldZs = zs;
+        int[] oldIds = indexIds;
+        allocate(length);
+        for (int i = 0; i < oldFlags.length; i++) {
+            if ((oldFlags[i] & USED) == 0) {
+                continue;
+            }
+            int slot = (int) HashCommon.mix(oldMsbs[i] ^ oldLsbs[i]) & mask;
+            while ((flags[slot] & USED) != 0) {
+                slot = (slot + 1) & mask;
+            }
+            msbs[slot] = oldMsbs[i];
+            lsbs[slot] = oldLsbs[i];
+            flags[slot] = oldFlags[i];
+            xs[slot] = oldXs[i];
+            ys[slot] = oldYs[i];
+            zs[slot] = oldZs[i];
+            indexIds[slot] = oldIds[i];
+        }
+    }
+}
@@ -0,0 +1,299 @@
+package com.minecraft.randomspawn;
+
+import it.unimi.dsi.fastutil.longs.Long2ObjectMap;
+import it.unimi.dsi.fastutil.longs.Long2ObjectLinkedOpenHashMap;
+import net.minecraft.core.BlockPos;
+import net.minecraft.core.Direction;
+import net.minecraft.core.SectionPos;
+import net.minecraft.nbt.CompoundTag;
+import net.minecraft.nbt.LongArrayTag;
+import net.minecraft.server.level.ServerLevel;
+import net.minecraft.tags.FluidTags;
+import net.minecraft.world.level.ChunkPos;
+import net.minecraft.world.level.Level;
+import net.minecraft.world.level.chunk.ChunkAccess;
+import net.minecraft.world.level.chunk.ChunkStatus;
+import net.minecraft.world.level.chunk.LevelChunk;
+import net.minecraft.world.level.levelgen.Heightmap;
+import net.minecraft.world.level.saveddata.SavedData;
+import net.minecraftforge.event.level.BlockEvent;
+import net.minecraftforge.event.level.ChunkEvent;
+import net.minecraftforge.eventbus.api.SubscribeEvent;
+import net.minecraftforge.fml.common.Mod;
+
+import java.util.Arrays;
+
+/**
+ * チャンク単位の地形適性インデックス。
+ * チャンクごとに 4x4 セル 16 個の高さ範囲 (最小/最大) と、列ごとの「水あり」「立てる」ビットを
+ * long 17 個に詰めて保持し、ブロックを読まずに候補の足切りと平坦判定を行う。
+ * ブロック変更のあったチャンクは破棄し、次に読み込まれたときに作り直す。
+ * 保持するのは {@link #MAX_CHUNKS} チャンクまでで、超えたら最も古く登録されたものから捨てる。
+ *
+ * <p>レイアウト: [0..7] セルの高さ範囲 (1 セル 32bit、下位 16bit が最小・上位 16bit が最大、
+ * いずれも最低建築高度からの相対値)、[8..11] 水ビット、[12..15] 足場ビット、[16] フラグ。
+ */
+@Mod.EventBusSubscriber
+public class SpawnTerrainIndex extends SavedData {
+    private static final String DATA_NAME = "randomspawn_terrain";
+    private static final int LONGS_PER_CHUNK = 17;
+    private static final int WATER_OFFSET = 8;
+    private static final int STANDABLE_OFFSET = 12;
+    private static final int FLAGS_OFFSET = 16;
+    /** FULL チャンクから作った確定値。これ以外はワールド生成途中の暫定値で、足切りにのみ使う */
+    private static final long FLAG_EXACT = 1L;
+    /** 保持するチャンク数の上限 (保存時の long 配列は約 9MiB) */
+    private static final int MAX_CHUNKS = 65536;
+
+    public enum Flatness { ACCEPT, REJECT, UNKNOWN }
+
+    /** 列の足元の Y ({@link SpawnChunkLoader#height} と同じく地表の 1 つ上) を返すもの */
+    public interface HeightSource {
+        int height(int x, int z);
+    }
+
+    /** 登録の古い順。保存もこの順で行うため、読み込み後も順序が引き継がれる */
+    private final Long2ObjectLinkedOpenHashMap<long[]> summaries = new Long2ObjectLinkedOpenHashMap<>();
+    private int minY;
+
+    public static SpawnTerrainIndex get(ServerLevel level) {
+        SpawnTerrainIndex index = level.getDataStorage().computeIfAbsent(SpawnTerrainIndex::load, SpawnTerrainIndex::new, DATA_NAME);
+        index.minY = level.getMinBuildHeight();
+        return index;
+    }
+
+    public SpawnTerrainIndex() {}
+
+    SpawnTerrainIndex(int minY) {
+        this.minY = minY;
+    }
+
+    public static SpawnTerrainIndex load(CompoundTag tag) {
+        SpawnTerrainIndex index = new SpawnTerrainIndex();
+        long[] packed = tag.getLongArray("chunks");
+        int stride = LONGS_PER_CHUNK + 1;
+        for (int i = 0; i + stride <= packed.length; i += stride) {
+            long[] summary = new long[LONGS_PER_CHUNK];
+            System.arraycopy(packed, i + 1, summary, 0, LONGS_PER_CHUNK);
+            index.put(packed[i], summary);
+        }
+        return index;
+    }
+
+    @Override
+    public CompoundTag save(CompoundTag tag) {
+        int stride = LONGS_PER_CHUNK + 1;
+        long[] packed = new long[summaries.size() * stride];
+        int i = 0;
+        for (Long2ObjectMap.Entry<long[]> entry : summaries.long2ObjectEntrySet()) {
+            packed[i] = entry.getLongKey();
+            System.arraycopy(entry.getValue(), 0, packed, i + 1, LONGS_PER_CHUNK);
+            i += stride;
+        }
+        tag.put("chunks", new LongArrayTag(packed));
+        return tag;
+    }
+
+    /**
+     * 未登録、または暫定値しかないチャンクの要約を作る。高さマップが確定していないチャンクは対象外。
+     */
+    public void index(ChunkAccess chunk) {
+        if (!chunk.getStatus().isOrAfter(ChunkStatus.FEATURES)) {
+            return;
+        }
+        boolean exact = chunk.getStatus() == ChunkStatus.FULL;
+        long key = chunk.getPos().toLong();
+        long[] existing = summaries.get(key);
+        if (existing != null && (!exact || (existing[FLAGS_OFFSET] & FLAG_EXACT) != 0)) {
+            return;
+        }
+        put(key, summarize(chunk, exact));
+        setDirty();
+    }
+
+    /**
+     * 列ごとの足元の Y (lz * 16 + lx 順の 256 個) だけから確定値の要約を登録する。
+     * すべての列を水なし・立てるものとして扱う (合成地形のベンチマーク用)。
+     */
+    void indexHeights(int chunkX, int chunkZ, int[] feetY) {
+        long[] summary = new long[LONGS_PER_CHUNK];
+        for (int i = 0; i < 4; i++) {
+            summary[STANDABLE_OFFSET + i] = -1L;
+        }
+        packCells(summary, feetY, true);
+        put(ChunkPos.asLong(chunkX, chunkZ), summary);
+        setDirty();
+    }
+
+    private void put(long key, long[] summary) {
+        summaries.putAndMoveToLast(key, summary);
+        while (summaries.size() > MAX_CHUNKS) {
+            summaries.removeFirst();
+        }
+    }
+
+    public void invalidate(int chunkX, int chunkZ) {
+        if (summaries.remove(ChunkPos.asLong(chunkX, chunkZ)) != null) {
+            setDirty();
+        }
+    }
+
+    /**
+     * チャンクを読み込まずに候補を捨てられるか。列が水/足場なしか、7x7 範囲に完全に含まれる
+     * セルの高低差が許容値の 2 倍を超える（どの中心高度でも平坦判定に通らない）場合に true。
+     */
+    public boolean rejects(int x, int z, int limit) {
+        long[] summary = summaries.get(ChunkPos.asLong(SectionPos.blockToSectionCoord(x), SectionPos.blockToSectionCoord(z)));
+        if (summary == null) {
+            return false;
+        }
+        int column = ((z & 15) << 4) | (x & 15);
+        if (testBit(summary, WATER_OFFSET, column) || !testBit(summary, STANDABLE_OFFSET, column)) {
+            return true;
+        }
+        for (int cz = Math.floorDiv(z - 3, 4); cz <= Math.floorDiv(z + 3, 4); cz++) {
+            for (int cx = Math.floorDiv(x - 3, 4); cx <= Math.floorDiv(x + 3, 4); cx++) {
+                if (!cellInsideWindow(cx, cz, x, z)) {
+                    continue;
+                }
+                long[] cellChunk = summaryForCell(cx, cz);
+                if (cellChunk == null) {
+                    continue;
+                }
+                int cell = cellRange(cellChunk, cx, cz);
+                if (cellMax(cell) - cellMin(cell) > limit * 2) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    /**
+     * (x, z) を中心とする 7x7 範囲の平坦判定をセル単位で行う。
+     * 重なるセルがすべて許容範囲内なら ACCEPT、範囲に完全に含まれるセルが範囲外なら REJECT。
+     * 判断できない場合や要約が暫定値の場合は UNKNOWN を返し、呼び出し側で厳密に判定する。
+     */
+    public Flatness flatness(int x, int z, int centerY, int limit) {
+        int low = centerY - limit - minY;
+        int high = centerY + limit - minY;
+        boolean allInside = true;
+        for (int cz = Math.floorDiv(z - 3, 4); cz <= Math.floorDiv(z + 3, 4); cz++) {
+            for (int cx = Math.floorDiv(x - 3, 4); cx <= Math.floorDiv(x + 3, 4); cx++) {
+                long[] cellChunk = summaryForCell(cx, cz);
+                if (cellChunk == null) {
+                    allInside = false;
+                    continue;
+                }
+                int cell = cellRange(cellChunk, cx, cz);
+                boolean inside = cellMin(cell) >= low && cellMax(cell) <= high;
+                if (!inside && cellInsideWindow(cx, cz, x, z)) {
+                    return Flatness.REJECT;
+                }
+                if (!inside || (cellChunk[FLAGS_OFFSET] & FLAG_EXACT) == 0) {
+                    allInside = false;
+                }
+            }
+        }
+        return allInside ? Flatness.ACCEPT : Flatness.UNKNOWN;
+    }
+
+    private long[] summaryForCell(int cellX, int cellZ) {
+        return summaries.get(ChunkPos.asLong(cellX >> 2, cellZ >> 2));
+    }
+
+    private static boolean cellInsideWindow(int cellX, int cellZ, int x, int z) {
+        int minX = cellX << 2;
+        int minZ = cellZ << 2;
+        return minX >= x - 3 && minX + 3 <= x + 3 && minZ >= z - 3 && minZ + 3 <= z + 3;
+    }
+
+    private static int cellRange(long[] summary, int cellX, int cellZ) {
+        int cell = ((cellZ & 3) << 2) | (cellX & 3);
+        return (int) (summary[cell >> 1] >>> ((cell & 1) << 5));
+    }
+
+    private static int cellMin(int range) {
+        return range & 0xFFFF;
+    }
+
+    private static int cellMax(int range) {
+        return range >>> 16;
+    }
+
+    private static boolean testBit(long[] summary, int offset, int column) {
+        return (summary[offset + (column >> 6)] & (1L << (column & 63))) != 0;
+    }
+
+    private long[] summarize(ChunkAccess chunk, boolean exact) {
+        long[] summary = new long[LONGS_PER_CHUNK];
+        int[] feet = new int[256];
+        ChunkPos chunkPos = chunk.getPos();
+        BlockPos.MutableBlockPos pos = new BlockPos.MutableBlockPos();
+        for (int lz = 0; lz < 16; lz++) {
+            for (int lx = 0; lx < 16; lx++) {
+                int feetY = chunk.getHeight(Heightmap.Types.MOTION_BLOCKING_NO_LEAVES, lx, lz) + 1;
+                int column = (lz << 4) | lx;
+                feet[column] = feetY;
+                int worldX = chunkPos.getBlockX(lx);
+                int worldZ = chunkPos.getBlockZ(lz);
+                boolean water = chunk.getFluidState(pos.set(worldX, feetY, worldZ)).is(FluidTags.WATER)
+                        || chunk.getFluidState(pos.set(worldX, feetY + 1, worldZ)).is(FluidTags.WATER);
+                if (water) {
+                    summary[WATER_OFFSET + (column >> 6)] |= 1L << (column & 63);
+                }
+                boolean standable = chunk.getBlockState(pos.set(worldX, feetY - 1, worldZ)).isFaceSturdy(chunk, pos, Direction.UP)
+                        && chunk.getBlockState(pos.set(worldX, feetY, worldZ)).getCollisionShape(chunk, pos).isEmpty()
+                        && chunk.getBlockState(pos.set(worldX, feetY + 1, worldZ)).getCollisionShape(chunk, pos).isEmpty();
+                if (standable) {
+                    summary[STANDABLE_OFFSET + (column >> 6)] |= 1L << (column & 63);
+                }
+            }
+        }
+        packCells(summary, feet, exact);
+        return summary;
+    }
+
+    /** 列ごとの足元の Y からセルの高さ範囲を求めて要約に詰め、フラグを設定する */
+    private void packCells(long[] summary, int[] feetY, boolean exact) {
+        int[] cellMin = new int[16];
+        int[] cellMax = new int[16];
+        Arrays.fill(cellMin, Integer.MAX_VALUE);
+        for (int column = 0; column < 256; column++) {
+            int cell = ((column >> 6) << 2) | ((column & 15) >> 2);
+            int relative = feetY[column] - minY;
+            cellMin[cell] = Math.min(cellMin[cell], relative);
+            cellMax[cell] = Math.max(cellMax[cell], relative);
+        }
+        for (int cell = 0; cell < 16; cell++) {
+            long range = (cellMin[cell] & 0xFFFFL) | ((cellMax[cell] & 0xFFFFL) << 16);
+            summary[cell >> 1] |= range << ((cell & 1) << 5);
+        }
+        summary[FLAGS_OFFSET] = exact ? FLAG_EXACT : 0L;
+    }
+
+    @SubscribeEvent
+    public static void onChunkLoad(ChunkEvent.Load event) {
+        // 生成途中のチャンクは探索時に SpawnChunkLoader 側で登録する
+        if (!(event.getLevel() instanceof ServerLevel level) || level.dimension() != Level.OVERWORLD
+                || !(event.getChunk() instanceof LevelChunk)) {
+            return;
+        }
+        ChunkPos pos = event.getChunk().getPos();
+        BlockPos center = level.getSharedSpawnPos();
+        int range = SpawnSettings.get().spawnRange() + 3;
+        if (Math.abs(pos.getMiddleBlockX() - center.getX()) > range || Math.abs(pos.getMiddleBlockZ() - center.getZ()) > range) {
+            return;
+        }
+        get(level).index(event.getChunk());
+    }
+
+    @SubscribeEvent
+    public static void onNeighborNotify(BlockEvent.NeighborNotifyEvent event) {
+        if (!(event.getLevel() instanceof ServerLevel level) || level.dimension() != Level.OVERWORLD) {
+            return;
+        }
+        BlockPos pos = event.getPos();
+        get(level).invalidate(SectionPos.blockToSectionCoord(pos.getX()), SectionPos.blockToSectionCoord(pos.getZ()));
+    }
+}
@@ -0,0 +1,145 @@
+package com.minecraft.randomspawn.tool;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 1.18 以降のチャンク NBT から、スポーン判定に使う部分 (高さマップ、セクションのブロックとバイオーム) だけを引く。
+ * ブロックとバイオームのパレット付き配列は、問い合わせのあった要素だけを展開する。
+ */
+final class ChunkView {
+    private static final int HEIGHTMAP_SIZE = 16 * 16;
+
+    private final int chunkX;
+    private final int chunkZ;
+    private final int minY;
+    private final int maxY;
+    /** 列ごとの足元の Y (地表の 1 つ上) */
+    private final int[] feetY;
+    private final Map<Integer, Map<String, Object>> sections;
+
+    private ChunkView(int chunkX, int chunkZ, int minY, int maxY, int[] feetY, Map<Integer, Map<String, Object>> sections) {
+        this.chunkX = chunkX;
+        this.chunkZ = chunkZ;
+        this.minY = minY;
+        this.maxY = maxY;
+        this.feetY = feetY;
+        this.sections = sections;
+    }
+
+    /** 生成が終わっていない (FULL でない) か、高さマップがなければ null */
+    static ChunkView of(Map<String, Object> chunk) {
+        String status = Nbt.getString(chunk, "Status");
+        if (status == null || !(status.equals("full") || status.equals("minecraft:full"))) {
+            return null;
+        }
+        Map<String, Object> heightmaps = Nbt.compound(chunk, "Heightmaps");
+        long[] packed = heightmaps != null ? Nbt.getLongs(heightmaps, "MOTION_BLOCKING_NO_LEAVES") : null;
+        List<Object> sectionList = Nbt.list(chunk, "sections");
+        if (packed == null || packed.length == 0 || sectionList == null) {
+            return null;
+        }
+        Map<Integer, Map<String, Object>> sections = new HashMap<>();
+        int maxSection = Integer.MIN_VALUE;
+        for (Object element : sectionList) {
+            if (element instanceof Map) {
+                @SuppressWarnings("unchecked")
+                Map<String, Object> section = (Map<String, Object>) element;
+                int y = Nbt.getInt(section, "Y", Integer.MIN_VALUE);
+                if (y != Integer.MIN_VALUE) {
+                    sections.put(y, section);
+                    maxSection = Math.max(maxSection, y);
+                }
+            }
+        }
+        int minY = Nbt.getInt(chunk, "yPos", -4) * 16;
+        int maxY = (maxSection + 1) * 16;
+        // 高さマップは minY からの相対値で、1 要素のビット数は世界の高さで決まる (要素は long をまたがない)
+        int perLong = (HEIGHTMAP_SIZE + packed.length - 1) / packed.length;
+        int bits = 64 / perLong;
+        int[] feetY = new int[HEIGHTMAP_SIZE];
+        for (int i = 0; i < HEIGHTMAP_SIZE; i++) {
+            feetY[i] = (int) unpack(packed, bits, i) + minY;
+        }
+        return new ChunkView(Nbt.getInt(chunk, "xPos", 0), Nbt.getInt(chunk, "zPos", 0), minY, maxY, feetY, sections);
+    }
+
+    int x(int localX) {
+        return chunkX * 16 + localX;
+    }
+
+    int z(int localZ) {
+        return chunkZ * 16 + localZ;
+    }
+
+    int minY() {
+        return minY;
+    }
+
+    int maxY() {
+        return maxY;
+    }
+
+    /** 地表の 1 つ上の Y。SpawnChunkLoader#height と同じ値 */
+    int feetY(int localX, int localZ) {
+        return feetY[localZ * 16 + localX];
+    }
+
+    /** ブロック状態のコンパウンド ({Name, Properties})。セクションがなければ null */
+    Map<String, Object> block(int localX, int y, int localZ) {
+        Map<String, Object> section = sections.get(Math.floorDiv(y, 16));
+        Map<String, Object> states = section != null ? Nbt.compound(section, "block_states") : null;
+        if (states == null) {
+            return null;
+        }
+        int index = ((y & 15) << 8) | (localZ << 4) | localX;
+        Object entry = paletteEntry(states, index, 4);
+        if (entry instanceof Map) {
+            @SuppressWarnings("unchecked")
+            Map<String, Object> state = (Map<String, Object>) entry;
+            return state;
+        }
+        return null;
+    }
+
+    /** 4x4x4 単位のバイオーム ID。セクションがなければ null */
+    String biome(int localX, int y, int localZ) {
+        Map<String, Object> section = sections.get(Math.floorDiv(y, 16));
+        Map<String, Object> biomes = section != null ? Nbt.compound(section, "biomes") : null;
+        if (biomes == null) {
+            return null;
+        }
+        int index = (((y & 15) >> 2) << 4) | ((localZ >> 2) << 2) | (localX >> 2);
+        Object entry = paletteEntry(biomes, index, 0);
+        return entry instanceof String name ? name : null;
+    }
+
+    /**
+     * パレット付き配列の index 番目のパレット要素。
+     * 1 要素のビット数はパレットの大きさから決まり (ブロックは最低 4)、パレットが 1 つなら data はない。
+     */
+    private static Object paletteEntry(Map<String, Object> container, int index, int minBits) {
+        List<Object> palette = Nbt.list(container, "palette");
+        if (palette == null || palette.isEmpty()) {
+            return null;
+        }
+        long[] data = Nbt.getLongs(container, "data");
+        if (palette.size() == 1 || data == null) {
+            return palette.get(0);
+        }
+        int bits = Math.max(minBits, 32 - Integer.numberOfLeadingZeros(palette.size() - 1));
+        int id = (int) unpack(data, bits, index);
+        return id < palette.size() ? palette.get(id) : null;
+    }
+
+    private static long unpack(long[] data, int bits, int index) {
+        int perLong = 64 / bits;
+        int word = index / perLong;
+        if (word >= data.length) {
+            return 0L;
+        }
+        int shift = (index % perLong) * bits;
+        return (data[word] >>> shift) & ((1L << bits) - 1L);
+    }
+}
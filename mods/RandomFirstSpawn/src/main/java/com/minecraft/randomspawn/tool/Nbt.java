@@ -0,0 +1,146 @@
+package com.minecraft.randomspawn.tool;
+
+import java.io.DataInput;
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * オフラインツール用の最小限の NBT リーダー。Minecraft のクラスに依存せず、JDK だけで動く。
+ * コンパウンドは {@code Map<String, Object>}、リストは {@code List<Object>}、
+ * 数値は対応するボックス型、配列は byte[] / int[] / long[] として返す。
+ */
+final class Nbt {
+    private static final int END = 0;
+    private static final int BYTE = 1;
+    private static final int SHORT = 2;
+    private static final int INT = 3;
+    private static final int LONG = 4;
+    private static final int FLOAT = 5;
+    private static final int DOUBLE = 6;
+    private static final int BYTE_ARRAY = 7;
+    private static final int STRING = 8;
+    private static final int LIST = 9;
+    private static final int COMPOUND = 10;
+    private static final int INT_ARRAY = 11;
+    private static final int LONG_ARRAY = 12;
+
+    /** 入れ子の上限 (壊れたデータで無限に潜らないため。バニラと同じ値) */
+    private static final int MAX_DEPTH = 512;
+
+    private Nbt() {}
+
+    /** 名前付きのルートコンパウンドを読む */
+    static Map<String, Object> readRoot(InputStream in) throws IOException {
+        DataInputStream data = new DataInputStream(in);
+        int type = data.readUnsignedByte();
+        if (type != COMPOUND) {
+            throw new IOException("root tag is not a compound: " + type);
+        }
+        data.readUTF();
+        return readCompound(data, 0);
+    }
+
+    private static Map<String, Object> readCompound(DataInput in, int depth) throws IOException {
+        Map<String, Object> compound = new HashMap<>();
+        int type;
+        while ((type = in.readUnsignedByte()) != END) {
+            String name = in.readUTF();
+            compound.put(name, readPayload(in, type, depth + 1));
+        }
+        return compound;
+    }
+
+    private static Object readPayload(DataInput in, int type, int depth) throws IOException {
+        if (depth > MAX_DEPTH) {
+            throw new IOException("NBT nested too deeply");
+        }
+        switch (type) {
+            case BYTE:
+                return in.readByte();
+            case SHORT:
+                return in.readShort();
+            case INT:
+                return in.readInt();
+            case LONG:
+                return in.readLong();
+            case FLOAT:
+                return in.readFloat();
+            case DOUBLE:
+                return in.readDouble();
+            case BYTE_ARRAY: {
+                byte[] bytes = new byte[length(in)];
+                in.readFully(bytes);
+                return bytes;
+            }
+            case STRING:
+                return in.readUTF();
+            case LIST: {
+                int elementType = in.readUnsignedByte();
+                int size = in.readInt();
+                List<Object> list = new ArrayList<>(Math.max(0, Math.min(size, 1024)));
+                for (int i = 0; i < size; i++) {
+                    list.add(readPayload(in, elementType, depth + 1));
+                }
+                return list;
+            }
+            case COMPOUND:
+                return readCompound(in, depth);
+            case INT_ARRAY: {
+                int[] ints = new int[length(in)];
+                for (int i = 0; i < ints.length; i++) {
+                    ints[i] = in.readInt();
+                }
+                return ints;
+            }
+            case LONG_ARRAY: {
+                long[] longs = new long[length(in)];
+                for (int i = 0; i < longs.length; i++) {
+                    longs[i] = in.readLong();
+                }
+                return longs;
+            }
+            default:
+                throw new IOException("unknown NBT tag type " + type);
+        }
+    }
+
+    private static int length(DataInput in) throws IOException {
+        int length = in.readInt();
+        if (length < 0 || length > (1 << 24)) {
+            throw new IOException("bad NBT array length " + length);
+        }
+        return length;
+    }
+
+    @SuppressWarnings("unchecked")
+    static Map<String, Object> compound(Map<String, Object> parent, String key) {
+        Object value = parent.get(key);
+        return value instanceof Map ? (Map<String, Object>) value : null;
+    }
+
+    @SuppressWarnings("unchecked")
+    static List<Object> list(Map<String, Object> parent, String key) {
+        Object value = parent.get(key);
+        return value instanceof List ? (List<Object>) value : null;
+    }
+
+    static int getInt(Map<String, Object> parent, String key, int fallback) {
+        Object value = parent.get(key);
+        return value instanceof Number number ? number.intValue() : fallback;
+    }
+
+    static String getString(Map<String, Object> parent, String key) {
+        Object value = parent.get(key);
+        return value instanceof String string ? string : null;
+    }
+
+    static long[] getLongs(Map<String, Object> parent, String key) {
+        Object value = parent.get(key);
+        return value instanceof long[] longs ? longs : null;
+    }
+}
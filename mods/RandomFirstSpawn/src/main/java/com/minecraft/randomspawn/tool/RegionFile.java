@@ -0,0 +1,112 @@
+package com.minecraft.randomspawn.tool;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Map;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.InflaterInputStream;
+
+/**
+ * Anvil 形式のリージョンファイル (r.X.Z.mca) を読み取り専用でメモリマップし、チャンクを 1 つずつ取り出す。
+ * 先頭 4KiB が 1024 チャンク分の位置表 (3 バイトのセクタ位置 + 1 バイトのセクタ数)、
+ * 各チャンクは 4 バイトの長さ + 1 バイトの圧縮形式 + 本体。
+ * 外部ファイル (.mcc) に逃がされた巨大チャンクは読まない。
+ */
+final class RegionFile implements AutoCloseable {
+    static final int CHUNKS = 32 * 32;
+    private static final int SECTOR = 4096;
+    private static final int GZIP = 1;
+    private static final int ZLIB = 2;
+    private static final int NONE = 3;
+    private static final int EXTERNAL_FLAG = 0x80;
+
+    private final FileChannel channel;
+    private final MappedByteBuffer map;
+    private final int size;
+
+    RegionFile(Path path) throws IOException {
+        this.channel = FileChannel.open(path, StandardOpenOption.READ);
+        long length = channel.size();
+        if (length > Integer.MAX_VALUE) {
+            channel.close();
+            throw new IOException("region file too large: " + path);
+        }
+        this.size = (int) length;
+        this.map = channel.map(FileChannel.MapMode.READ_ONLY, 0, length);
+    }
+
+    /**
+     * リージョン内の index 番目 (x + z * 32) のチャンク。未生成、外部ファイル、壊れている場合は null。
+     */
+    Map<String, Object> chunk(int index) throws IOException {
+        if (size < SECTOR * 2) {
+            return null;
+        }
+        int location = map.getInt(index * 4);
+        int sectorOffset = location >>> 8;
+        if (sectorOffset < 2) {
+            return null;
+        }
+        long start = (long) sectorOffset * SECTOR;
+        if (start + 5 > size) {
+            return null;
+        }
+        int length = map.getInt((int) start);
+        int type = map.get((int) start + 4) & 0xFF;
+        if (length <= 1 || start + 4 + length > size || (type & EXTERNAL_FLAG) != 0) {
+            return null;
+        }
+        ByteBuffer body = map.slice((int) start + 5, length - 1);
+        try (InputStream in = decompress(type, new ByteBufferInputStream(body))) {
+            return in != null ? Nbt.readRoot(in) : null;
+        }
+    }
+
+    private static InputStream decompress(int type, InputStream raw) throws IOException {
+        return switch (type) {
+            case GZIP -> new GZIPInputStream(raw, 8192);
+            case ZLIB -> new InflaterInputStream(raw);
+            case NONE -> raw;
+            default -> null;
+        };
+    }
+
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+
+    /** マップした領域をコピーせずに読む */
+    private static final class ByteBufferInputStream extends InputStream {
+        private final ByteBuffer buffer;
+
+        ByteBufferInputStream(ByteBuffer buffer) {
+            this.buffer = buffer;
+        }
+
+        @Override
+        public int read() {
+            return buffer.hasRemaining() ? buffer.get() & 0xFF : -1;
+        }
+
+        @Override
+        public int read(byte[] bytes, int offset, int length) {
+            if (!buffer.hasRemaining()) {
+                return -1;
+            }
+            int n = Math.min(length, buffer.remaining());
+            buffer.get(bytes, offset, n);
+            return n;
+        }
+
+        @Override
+        public int available() {
+            return buffer.remaining();
+        }
+    }
+}
@@ -0,0 +1,416 @@
+package com.minecraft.randomspawn.tool;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.stream.Stream;
+import java.util.zip.GZIPInputStream;
+
+/**
+ * サーバーを起動せずに、生成済みワールドのリージョンファイルからスポーン候補を求めるコマンドラインツール。
+ * JDK だけで動き、Minecraft/Forge のクラスは使わない (ワールドをコピーした素の Linux 機で実行できる)。
+ * <pre>
+ *   java -cp randomspawn-&lt;version&gt;.jar com.minecraft.randomspawn.tool.RegionScanner &lt;world&gt; [options]
+ * </pre>
+ * リージョンファイル単位で全コアに振り分け、各ファイルはメモリマップして必要なチャンクだけ展開する。
+ * チャンクごとに高さマップ (MOTION_BLOCKING_NO_LEAVES)、地表付近のセクションのブロックとバイオームだけを見て、
+ * {@code RandomSpawnHandler} と同じ規則 (海/川でない、足元と頭上に流体がない、足場が上面を支える、
+ * 7x7 の高低差が heightDiff 以内) を当てはめる。足場の判定はブロック名による近似で、
+ * 実際の衝突形状はサーバーが候補を使う前に再検証する。
+ * <p>
+ * 結果は {@code <world>/serverconfig/randomspawn/randomspawn_candidates.txt} に 1 行 1 地点 ("x y z") で書き、
+ * Mod は起動時にこれを読んでスポーン地点プールの補充に使う。
+ */
+public final class RegionScanner {
+    /** 出力ファイル名。Mod 側 ({@code SpawnCandidates}) も同じ名前を読む */
+    public static final String OUTPUT_FILE = "randomspawn_candidates.txt";
+
+    private static final Pattern REGION_NAME = Pattern.compile("r\\.(-?\\d+)\\.(-?\\d+)\\.mca");
+
+    /** BiomeTags.IS_OCEAN / IS_RIVER のバニラ分 */
+    private static final Set<String> DENIED_BIOMES = Set.of(
+            "minecraft:ocean", "minecraft:deep_ocean", "minecraft:warm_ocean", "minecraft:lukewarm_ocean",
+            "minecraft:deep_lukewarm_ocean", "minecraft:cold_ocean", "minecraft:deep_cold_ocean",
+            "minecraft:frozen_ocean", "minecraft:deep_frozen_ocean", "minecraft:river", "minecraft:frozen_river");
+
+    private static final Set<String> FLUIDS = Set.of("minecraft:water", "minecraft:lava", "minecraft:bubble_column");
+
+    /** 上面が平らでない (isFaceSturdy(UP) を満たさない) 代表的なブロック名の一部 */
+    private static final String[] NOT_STURDY = {
+            "air", "fence", "_wall", "pane", "iron_bars", "chain", "lantern", "campfire", "cactus", "magma_block",
+            "powder_snow", "scaffolding", "_bed", "door", "carpet", "_sign", "_head", "_skull", "flower_pot",
+            "candle", "rail", "pressure_plate", "button", "lever", "torch", "bamboo", "pointed_dripstone",
+            "dripleaf", "hopper", "anvil", "cauldron", "composter", "lectern", "bell", "grindstone", "stonecutter",
+            "enchanting_table", "end_portal_frame", "daylight_detector", "sea_pickle", "turtle_egg", "sniffer_egg"};
+
+    /** 7x7 の平坦判定がチャンク内に収まる列だけを試す (中心に近い順) */
+    private static final int[] OFFSETS = {7, 3, 11};
+
+    private enum Reject { NOT_FULL, OUT_OF_RANGE, HEIGHT, NOT_FLAT, BIOME, FLUID, GROUND }
+
+    record Options(Path world, Path out, int heightDiff, int spacing, int centerX, int centerZ, int range,
+                   int threads, Set<String> deniedBiomes, long seed) {}
+
+    /** リージョンファイル 1 つ分の結果 */
+    private record RegionResult(List<int[]> candidates, int chunks, int columns, long[] rejects) {}
+
+    private RegionScanner() {}
+
+    public static void main(String[] args) {
+        Options options;
+        try {
+            options = parse(args);
+        } catch (IllegalArgumentException | IOException e) {
+            System.err.println(e.getMessage());
+            System.err.println(usage());
+            System.exit(2);
+            return;
+        }
+        try {
+            run(options);
+        } catch (IOException | InterruptedException | ExecutionException e) {
+            System.err.println("scan failed: " + e);
+            System.exit(1);
+        }
+    }
+
+    private static String usage() {
+        return String.join(System.lineSeparator(),
+                "usage: java -cp <randomspawn jar> com.minecraft.randomspawn.tool.RegionScanner <world> [options]",
+                "  --out <file>          output file (default <world>/serverconfig/randomspawn/" + OUTPUT_FILE + ")",
+                "  --height-diff <n>     max height difference in the 7x7 area (default 4, same as heightDiff)",
+                "  --spacing <n>         min horizontal distance between candidates (default 300, same as minDistance)",
+                "  --center <x>,<z>      search center (default: spawn from level.dat)",
+                "  --range <n>           half size of the search square, 0 = whole map (default 4000, same as spawnRange)",
+                "  --threads <n>         worker threads (default: all cores)",
+                "  --deny-biome <id>     extra biome to reject, repeatable (e.g. a modded ocean)",
+                "  --seed <n>            seed for the order in which candidates are thinned (default 0)");
+    }
+
+    static Options parse(String[] args) throws IOException {
+        if (args.length == 0) {
+            throw new IllegalArgumentException("missing world directory");
+        }
+        Path world = Paths.get(args[0]);
+        if (!Files.isDirectory(world.resolve("region"))) {
+            throw new IllegalArgumentException("no region directory in " + world);
+        }
+        Path out = world.resolve("serverconfig").resolve("randomspawn").resolve(OUTPUT_FILE);
+        int heightDiff = 4;
+        int spacing = 300;
+        int[] center = null;
+        int range = 4000;
+        int threads = Runtime.getRuntime().availableProcessors();
+        Set<String> denied = new HashSet<>(DENIED_BIOMES);
+        long seed = 0L;
+        for (int i = 1; i < args.length; i++) {
+            String arg = args[i];
+            if (i + 1 >= args.length) {
+                throw new IllegalArgumentException("missing value for " + arg);
+            }
+            String value = args[++i];
+            try {
+                switch (arg) {
+                    case "--out" -> out = Paths.get(value);
+                    case "--height-diff" -> heightDiff = Integer.parseInt(value);
+                    case "--spacing" -> spacing = Integer.parseInt(value);
+                    case "--center" -> {
+                        String[] parts = value.split(",");
+                        if (parts.length != 2) {
+                            throw new IllegalArgumentException("--center expects <x>,<z>");
+                        }
+                        center = new int[]{Integer.parseInt(parts[0].trim()), Integer.parseInt(parts[1].trim())};
+                    }
+                    case "--range" -> range = Integer.parseInt(value);
+                    case "--threads" -> threads = Math.max(1, Integer.parseInt(value));
+                    case "--deny-biome" -> denied.add(value.contains(":") ? value : "minecraft:" + value);
+                    case "--seed" -> seed = Long.parseLong(value);
+                    default -> throw new IllegalArgumentException("unknown option " + arg);
+                }
+            } catch (NumberFormatException e) {
+                throw new IllegalArgumentException("bad number for " + arg + ": " + value);
+            }
+        }
+        if (center == null) {
+            center = levelSpawn(world);
+        }
+        return new Options(world, out, heightDiff, spacing, center[0], center[1], range, threads, Set.copyOf(denied), seed);
+    }
+
+    /** level.dat の Data.SpawnX / SpawnZ。読めなければ原点 */
+    private static int[] levelSpawn(Path world) throws IOException {
+        Path levelDat = world.resolve("level.dat");
+        if (!Files.exists(levelDat)) {
+            return new int[]{0, 0};
+        }
+        try (InputStream in = new GZIPInputStream(Files.newInputStream(levelDat))) {
+            Map<String, Object> data = Nbt.compound(Nbt.readRoot(in), "Data");
+            if (data == null) {
+                return new int[]{0, 0};
+            }
+            return new int[]{Nbt.getInt(data, "SpawnX", 0), Nbt.getInt(data, "SpawnZ", 0)};
+        }
+    }
+
+    static void run(Options options) throws IOException, InterruptedException, ExecutionException {
+        long start = System.nanoTime();
+        List<Path> regions = new ArrayList<>();
+        try (Stream<Path> files = Files.list(options.world().resolve("region"))) {
+            files.filter(path -> overlaps(path, options)).sorted().forEach(regions::add);
+        }
+        System.out.printf(Locale.ROOT, "scanning %d region files in %s with %d threads (center %d,%d range %d heightDiff %d)%n",
+                regions.size(), options.world(), options.threads(), options.centerX(), options.centerZ(),
+                options.range(), options.heightDiff());
+
+        ExecutorService pool = Executors.newFixedThreadPool(options.threads(), runnable -> {
+            Thread thread = new Thread(runnable, "RegionScanner");
+            thread.setDaemon(true);
+            return thread;
+        });
+        List<Future<RegionResult>> futures = new ArrayList<>(regions.size());
+        for (Path region : regions) {
+            futures.add(pool.submit(() -> scanRegion(region, options)));
+        }
+        List<int[]> candidates = new ArrayList<>();
+        long[] rejects = new long[Reject.values().length];
+        long chunks = 0;
+        long columns = 0;
+        int done = 0;
+        for (Future<RegionResult> future : futures) {
+            RegionResult result = future.get();
+            candidates.addAll(result.candidates());
+            chunks += result.chunks();
+            columns += result.columns();
+            for (int i = 0; i < rejects.length; i++) {
+                rejects[i] += result.rejects()[i];
+            }
+            if (++done % 64 == 0) {
+                System.out.printf(Locale.ROOT, "  %d/%d regions, %d candidates%n", done, regions.size(), candidates.size());
+            }
+        }
+        pool.shutdown();
+
+        int found = candidates.size();
+        List<int[]> accepted = thin(candidates, options.spacing(), options.seed());
+        write(options, accepted);
+
+        double seconds = (System.nanoTime() - start) / 1.0E9;
+        StringBuilder reasons = new StringBuilder();
+        for (Reject reject : Reject.values()) {
+            reasons.append(' ').append(reject.name().toLowerCase(Locale.ROOT)).append('=').append(rejects[reject.ordinal()]);
+        }
+        System.out.printf(Locale.ROOT, "chunks=%d columns=%d rejects:%s%n", chunks, columns, reasons);
+        System.out.printf(Locale.ROOT, "candidates=%d after spacing %d: %d -> %s%n", found, options.spacing(), accepted.size(), options.out());
+        System.out.printf(Locale.ROOT, "done in %.1fs (%.0f chunks/s)%n", seconds, chunks / Math.max(seconds, 1.0E-3));
+    }
+
+    /** 範囲外のリージョンファイルは開かない */
+    private static boolean overlaps(Path path, Options options) {
+        Matcher matcher = REGION_NAME.matcher(path.getFileName().toString());
+        if (!matcher.matches()) {
+            return false;
+        }
+        if (options.range() <= 0) {
+            return true;
+        }
+        int minX = Integer.parseInt(matcher.group(1)) * 512;
+        int minZ = Integer.parseInt(matcher.group(2)) * 512;
+        return minX + 511 >= options.centerX() - options.range() && minX <= options.centerX() + options.range()
+                && minZ + 511 >= options.centerZ() - options.range() && minZ <= options.centerZ() + options.range();
+    }
+
+    private static RegionResult scanRegion(Path path, Options options) throws IOException {
+        List<int[]> candidates = new ArrayList<>();
+        long[] rejects = new long[Reject.values().length];
+        int chunks = 0;
+        int columns = 0;
+        try (RegionFile region = new RegionFile(path)) {
+            for (int index = 0; index < RegionFile.CHUNKS; index++) {
+                Map<String, Object> chunk;
+                try {
+                    chunk = region.chunk(index);
+                } catch (IOException e) {
+                    System.err.printf(Locale.ROOT, "skipping corrupt chunk %d in %s: %s%n", index, path.getFileName(), e.getMessage());
+                    continue;
+                }
+                if (chunk == null) {
+                    continue;
+                }
+                chunks++;
+                ChunkView view = ChunkView.of(chunk);
+                if (view == null) {
+                    rejects[Reject.NOT_FULL.ordinal()]++;
+                    continue;
+                }
+                for (int lx : OFFSETS) {
+                    int[] hit = null;
+                    for (int lz : OFFSETS) {
+                        columns++;
+                        Reject reject = check(view, lx, lz, options);
+                        if (reject == null) {
+                            hit = new int[]{view.x(lx), view.feetY(lx, lz), view.z(lz)};
+                            break;
+                        }
+                        rejects[reject.ordinal()]++;
+                    }
+                    // 1 チャンクにつき候補は 1 つまで (どうせ spacing で間引かれる)
+                    if (hit != null) {
+                        candidates.add(hit);
+                        break;
+                    }
+                }
+            }
+        }
+        return new RegionResult(candidates, chunks, columns, rejects);
+    }
+
+    /** 安い判定から順に行う。通れば null */
+    private static Reject check(ChunkView view, int lx, int lz, Options options) {
+        int x = view.x(lx);
+        int z = view.z(lz);
+        if (options.range() > 0 && (Math.abs(x - options.centerX()) > options.range() || Math.abs(z - options.centerZ()) > options.range())) {
+            return Reject.OUT_OF_RANGE;
+        }
+        int y = view.feetY(lx, lz);
+        if (y - 1 <= view.minY() || y + 1 >= view.maxY()) {
+            return Reject.HEIGHT;
+        }
+        for (int dx = -3; dx <= 3; dx++) {
+            for (int dz = -3; dz <= 3; dz++) {
+                if (Math.abs(view.feetY(lx + dx, lz + dz) - y) > options.heightDiff()) {
+                    return Reject.NOT_FLAT;
+                }
+            }
+        }
+        String biome = view.biome(lx, y, lz);
+        if (biome == null || options.deniedBiomes().contains(biome)) {
+            return Reject.BIOME;
+        }
+        if (isFluid(view.block(lx, y, lz)) || isFluid(view.block(lx, y + 1, lz))) {
+            return Reject.FLUID;
+        }
+        Map<String, Object> ground = view.block(lx, y - 1, lz);
+        if (ground == null || isFluid(ground) || !isSturdyTop(ground)) {
+            return Reject.GROUND;
+        }
+        return null;
+    }
+
+    private static boolean isFluid(Map<String, Object> state) {
+        if (state == null) {
+            return false;
+        }
+        if (FLUIDS.contains(Nbt.getString(state, "Name"))) {
+            return true;
+        }
+        Map<String, Object> properties = Nbt.compound(state, "Properties");
+        return properties != null && "true".equals(Nbt.getString(properties, "waterlogged"));
+    }
+
+    private static boolean isSturdyTop(Map<String, Object> state) {
+        String name = Nbt.getString(state, "Name");
+        if (name == null) {
+            return false;
+        }
+        Map<String, Object> properties = Nbt.compound(state, "Properties");
+        String type = properties != null ? Nbt.getString(properties, "type") : null;
+        String half = properties != null ? Nbt.getString(properties, "half") : null;
+        if (name.endsWith("_slab")) {
+            return !"bottom".equals(type);
+        }
+        if (name.endsWith("_stairs")) {
+            return "top".equals(half);
+        }
+        if (name.equals("minecraft:snow")) {
+            return properties != null && "8".equals(Nbt.getString(properties, "layers"));
+        }
+        for (String part : NOT_STURDY) {
+            if (name.contains(part)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * 候補同士の水平距離を spacing 以上空ける。走査順の偏りが出ないよう、シード付きで混ぜてから先着順に採る。
+     */
+    static List<int[]> thin(List<int[]> candidates, int spacing, long seed) {
+        Collections.shuffle(candidates, new Random(seed));
+        if (spacing <= 0) {
+            return candidates;
+        }
+        long spacingSq = (long) spacing * spacing;
+        Map<Long, List<int[]>> grid = new HashMap<>();
+        List<int[]> accepted = new ArrayList<>();
+        for (int[] candidate : candidates) {
+            int cellX = Math.floorDiv(candidate[0], spacing);
+            int cellZ = Math.floorDiv(candidate[2], spacing);
+            boolean near = false;
+            for (int dx = -1; dx <= 1 && !near; dx++) {
+                for (int dz = -1; dz <= 1 && !near; dz++) {
+                    List<int[]> cell = grid.get(cellKey(cellX + dx, cellZ + dz));
+                    if (cell == null) {
+                        continue;
+                    }
+                    for (int[] other : cell) {
+                        long ddx = candidate[0] - other[0];
+                        long ddz = candidate[2] - other[2];
+                        if (ddx * ddx + ddz * ddz < spacingSq) {
+                            near = true;
+                            break;
+                        }
+                    }
+                }
+            }
+            if (!near) {
+                grid.computeIfAbsent(cellKey(cellX, cellZ), key -> new ArrayList<>(1)).add(candidate);
+                accepted.add(candidate);
+            }
+        }
+        return accepted;
+    }
+
+    private static long cellKey(int cellX, int cellZ) {
+        return ((long) cellX << 32) | (cellZ & 0xFFFFFFFFL);
+    }
+
+    /** 一時ファイルに書いてから置き換える */
+    private static void write(Options options, List<int[]> candidates) throws IOException {
+        Path out = options.out().toAbsolutePath();
+        Files.createDirectories(out.getParent());
+        Path tmp = out.resolveSibling(out.getFileName() + ".tmp");
+        try (BufferedWriter writer = Files.newBufferedWriter(tmp, StandardCharsets.UTF_8)) {
+            writer.write(String.format(Locale.ROOT, "# RandomFirstSpawn region scan %s center=%d,%d range=%d heightDiff=%d spacing=%d%n",
+                    Instant.now(), options.centerX(), options.centerZ(), options.range(), options.heightDiff(), options.spacing()));
+            writer.write("# x y z (feet position)");
+            writer.newLine();
+            for (int[] candidate : candidates) {
+                writer.write(candidate[0] + " " + candidate[1] + " " + candidate[2]);
+                writer.newLine();
+            }
+        }
+        Files.move(tmp, out, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+}